@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.Callback;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous requests of a {@link Guardian} as {@link CompletableFuture}s, for Java 8+.
+ * <p>
+ * The futures are completed on one of the threads of the HTTP client's dispatcher, so run blocking work that depends
+ * on them with the {@code *Async} methods of the future and an executor. Cancelling a future doesn't cancel its
+ * requests.
+ */
+public final class GuardianFutures {
+
+    private GuardianFutures() {
+    }
+
+    /**
+     * Request to create an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#requestEnrollAsync(String, EnrollmentType, Callback)}, completing a future instead of
+     * calling a callback.
+     *
+     * @param guardian the Guardian instance that runs the requests
+     * @param ticket   the enrollment ticket
+     * @param type     the enrollment type to request
+     * @return the future of the enrollment Transaction, completed exceptionally with an
+     * {@link java.io.IOException} when there's a connection issue or a {@link GuardianException} when there's a
+     * Guardian specific issue
+     * @throws IllegalArgumentException when the Guardian instance is null
+     */
+    public static CompletableFuture<Transaction> requestEnroll(Guardian guardian, String ticket, EnrollmentType type)
+            throws IllegalArgumentException {
+        if (guardian == null) {
+            throw new IllegalArgumentException("Invalid Guardian instance");
+        }
+        CompletableFuture<Transaction> future = new CompletableFuture<>();
+        guardian.requestEnrollAsync(ticket, type, complete(future));
+        return future;
+    }
+
+    /**
+     * Confirms an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#confirmEnrollAsync(Transaction, String, Callback)}, completing a future instead of
+     * calling a callback.
+     *
+     * @param guardian    the Guardian instance that runs the request
+     * @param transaction the enrollment transaction
+     * @param otp         the code obtained from the TOTP app or delivered to the phone number by SMS
+     * @return the future of the Enrollment, completed exceptionally with an {@link java.io.IOException} when there's a
+     * connection issue or a {@link GuardianException} when there's a Guardian specific issue
+     * @throws IllegalArgumentException when the Guardian instance is null or the transaction is not valid
+     */
+    public static CompletableFuture<Enrollment> confirmEnroll(Guardian guardian, Transaction transaction, String otp)
+            throws IllegalArgumentException {
+        if (guardian == null) {
+            throw new IllegalArgumentException("Invalid Guardian instance");
+        }
+        CompletableFuture<Enrollment> future = new CompletableFuture<>();
+        guardian.confirmEnrollAsync(transaction, otp, complete(future));
+        return future;
+    }
+
+    /**
+     * Confirms an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#confirmEnrollAsync(String, String, Callback)}, completing a future instead of calling a
+     * callback.
+     *
+     * @param guardian         the Guardian instance that runs the request
+     * @param transactionToken the token associated with the transaction to confirm.
+     * @param otp              the code obtained from the TOTP app or delivered to the phone number by SMS
+     * @return the future of the completion, completed exceptionally with an {@link java.io.IOException} when there's a
+     * connection issue or a {@link GuardianException} when there's a Guardian specific issue
+     * @throws IllegalArgumentException when the Guardian instance is null or the transaction is not valid
+     */
+    public static CompletableFuture<Void> confirmEnroll(Guardian guardian, String transactionToken, String otp)
+            throws IllegalArgumentException {
+        if (guardian == null) {
+            throw new IllegalArgumentException("Invalid Guardian instance");
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        guardian.confirmEnrollAsync(transactionToken, otp, complete(future));
+        return future;
+    }
+
+    private static <T> Callback<T> complete(final CompletableFuture<T> future) {
+        return new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                future.completeExceptionally(error);
+            }
+        };
+    }
+}
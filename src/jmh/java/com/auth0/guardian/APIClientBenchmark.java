@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.BenchmarkAccess;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of preparing the requests of each endpoint up to the OkHttp call (no network involved)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class APIClientBenchmark {
+
+    private APIClient apiClient;
+
+    @Setup
+    public void setUp() {
+        apiClient = new APIClient(HttpUrl.parse("https://tenant.guardian.auth0.com/"), new OkHttpClient());
+    }
+
+    @Benchmark
+    public Call startFlow() {
+        return BenchmarkAccess.buildCall(apiClient.startFlow("Ag1qX7vZVBvyTKhFwrkzaCH2M8vn5b6c"));
+    }
+
+    @Benchmark
+    public Call sendEnrollSMS() {
+        return BenchmarkAccess.buildCall(apiClient.sendEnrollSMS("TRANSACTION_TOKEN", "dev_0000000000000000", "+549XXXXXXXX58"));
+    }
+
+    @Benchmark
+    public Call verifyOTP() {
+        return BenchmarkAccess.buildCall(apiClient.verifyOTP("TRANSACTION_TOKEN", "123456"));
+    }
+}
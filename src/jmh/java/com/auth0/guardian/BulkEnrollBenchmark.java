@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enrollments per second of {@link Guardian#requestEnrollAll(java.util.Collection, BulkOptions)} against an
+ * in-process server that takes 5ms per request, as the max in flight grows. With a single enrollment in flight it's
+ * the same as calling {@link Guardian#requestEnroll(String, EnrollmentType)} in a loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkEnrollBenchmark {
+
+    private static final int BATCH_SIZE = 200;
+    private static final String START_FLOW_RESPONSE = "{\"device_account\":{\"id\":\"THE_ENROLLMENT_ID\","
+            + "\"status\":\"confirmation_pending\",\"otp_secret\":\"THE_OTP_SECRET\","
+            + "\"recovery_code\":\"THE_RECOVERY_CODE\"},\"transaction_token\":\"THE_TRANSACTION_TOKEN\"}";
+
+    @Param({"1", "8", "32"})
+    public int maxInFlight;
+
+    private MockWebServer server;
+    private Guardian guardian;
+    private BulkOptions options;
+    private List<EnrollmentRequest> requests;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().endsWith("/start-flow")) {
+                    return new MockResponse()
+                            .setResponseCode(201)
+                            .addHeader("Content-Type", "application/json")
+                            .setBody(START_FLOW_RESPONSE)
+                            .setHeadersDelay(5, TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse()
+                        .setResponseCode(200)
+                        .addHeader("Content-Type", "application/json")
+                        .setBody("{\"phone_number\":\"54911234567\"}")
+                        .setHeadersDelay(5, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+
+        guardian = new Guardian.Builder(server.url("/").toString())
+                .maxRequests(maxInFlight)
+                .maxRequestsPerHost(maxInFlight)
+                .build();
+        options = BulkOptions.newBuilder()
+                .maxInFlight(maxInFlight)
+                .build();
+        requests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            requests.add(new EnrollmentRequest("ENROLLMENT_TICKET_" + i, EnrollmentType.SMS("+549XXXXXXXX58")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<EnrollmentResult> requestEnrollAll() throws InterruptedException {
+        return guardian.requestEnrollAll(requests, options);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full enrollment round trips (start-flow, sms-enroll and verify-otp) against an in-process server, over HTTP/1.1 and
+ * cleartext HTTP/2. Run with several threads the HTTP/2 variant multiplexes the requests over a single connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class GuardianBenchmark {
+
+    private static final String START_FLOW_RESPONSE = "{\"device_account\":{\"id\":\"THE_ENROLLMENT_ID\","
+            + "\"status\":\"confirmation_pending\",\"otp_secret\":\"THE_OTP_SECRET\","
+            + "\"recovery_code\":\"THE_RECOVERY_CODE\"},\"transaction_token\":\"THE_TRANSACTION_TOKEN\"}";
+
+    @Param({"http/1.1", "h2_prior_knowledge"})
+    public String protocol;
+
+    private MockWebServer server;
+    private Guardian guardian;
+
+    @Setup
+    public void setUp() throws IOException {
+        Protocol selectedProtocol = Protocol.get(protocol);
+
+        server = new MockWebServer();
+        server.setProtocols(Collections.singletonList(selectedProtocol));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().endsWith("/start-flow")) {
+                    return new MockResponse()
+                            .setResponseCode(201)
+                            .addHeader("Content-Type", "application/json")
+                            .setBody(START_FLOW_RESPONSE);
+                }
+                if (request.getPath().endsWith("/sms-enroll")) {
+                    return new MockResponse()
+                            .setResponseCode(200)
+                            .addHeader("Content-Type", "application/json")
+                            .setBody("{\"phone_number\":\"54911234567\"}");
+                }
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+        server.start();
+
+        guardian = new Guardian.Builder(server.url("/").toString())
+                .client(new OkHttpClient())
+                .protocols(Collections.singletonList(selectedProtocol))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Transaction requestEnrollTOTP() throws IOException {
+        return guardian.requestEnroll("ENROLLMENT_TICKET", EnrollmentType.TOTP());
+    }
+
+    @Benchmark
+    public Transaction requestEnrollSMS() throws IOException {
+        return guardian.requestEnroll("ENROLLMENT_TICKET", EnrollmentType.SMS("+549XXXXXXXX58"));
+    }
+
+    @Benchmark
+    public Enrollment requestAndConfirmEnroll() throws IOException {
+        Transaction transaction = guardian.requestEnroll("ENROLLMENT_TICKET", EnrollmentType.TOTP());
+        return guardian.confirmEnroll(transaction, "123456");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders per second of the QR code of a TOTP enrollment URI on a single thread, encoding every time and from the
+ * cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+public class QrCodeBenchmark {
+
+    private String uri;
+    private QrCodeRenderer renderer;
+    private QrCodeRenderer cachedRenderer;
+
+    @Setup
+    public void setUp() {
+        uri = new Transaction("TRANSACTION_TOKEN", "RECOVERY_CODE", "JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP")
+                .totpURI("john.doe@example.com", "Example Company");
+        renderer = QrCodeRenderer.newBuilder().build();
+        cachedRenderer = QrCodeRenderer.newBuilder().cacheSize(16).build();
+    }
+
+    @Benchmark
+    public QrCode encode() {
+        return QrCode.encode(uri, QrCode.ErrorCorrection.M);
+    }
+
+    @Benchmark
+    public byte[] png() {
+        return renderer.png(uri);
+    }
+
+    @Benchmark
+    public String svg() {
+        return renderer.svg(uri);
+    }
+
+    @Benchmark
+    public byte[] cachedPng() {
+        return cachedRenderer.png(uri);
+    }
+
+    @Benchmark
+    public String cachedSvg() {
+        return cachedRenderer.svg(uri);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.HttpUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionBenchmark {
+
+    private Transaction transaction;
+    private OtpAuthUri otpAuthUri;
+    private String uri;
+    private StringBuilder builder;
+
+    @Setup
+    public void setUp() {
+        transaction = new Transaction("TRANSACTION_TOKEN", "RECOVERY_CODE", "JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP");
+        otpAuthUri = OtpAuthUri.newBuilder()
+                .issuer("Example Company")
+                .accountName("john.doe@example.com")
+                .secret("JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP")
+                .build();
+        uri = otpAuthUri.toString();
+        builder = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public String totpURI() {
+        return transaction.totpURI("john.doe@example.com", "Example Company");
+    }
+
+    /**
+     * The way totpURI used to build the URI, as the baseline
+     */
+    @Benchmark
+    public String totpURIWithHttpUrl() {
+        return new HttpUrl.Builder()
+                .scheme("https")
+                .host("totp")
+                .addPathSegment(String.format("%s:%s", "Example Company", "john.doe@example.com"))
+                .addQueryParameter("secret", transaction.getTotpSecret())
+                .addQueryParameter("issuer", "Example Company")
+                .build()
+                .toString()
+                .replaceFirst("https", "otpauth");
+    }
+
+    @Benchmark
+    public StringBuilder appendOtpAuthUri() throws IOException {
+        builder.setLength(0);
+        return otpAuthUri.appendTo(builder);
+    }
+
+    @Benchmark
+    public OtpAuthUri parseOtpAuthUri() {
+        return OtpAuthUri.parse(uri);
+    }
+}
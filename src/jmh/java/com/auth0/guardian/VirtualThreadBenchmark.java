@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.Callback;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enrollments per second of {@link Guardian#requestEnrollAsync(String, EnrollmentType, Callback)} with a batch of
+ * requests in flight against an in-process server that takes 10ms per request, running the calls on platform threads
+ * or, on JDK 21+, on virtual threads through {@link Guardian.Builder#executorService(ExecutorService)}.
+ * <p>
+ * The {@code carrierThreads} counter is the number of platform threads that ran the calls of a batch: one per call in
+ * flight with platform threads, and the carrier threads of the virtual threads otherwise, summed by JMH over the
+ * measurement iterations. The virtual variant fails on older JDKs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VirtualThreadBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+    private static final String START_FLOW_RESPONSE = "{\"device_account\":{\"id\":\"THE_ENROLLMENT_ID\","
+            + "\"status\":\"confirmation_pending\",\"otp_secret\":\"THE_OTP_SECRET\","
+            + "\"recovery_code\":\"THE_RECOVERY_CODE\"},\"transaction_token\":\"THE_TRANSACTION_TOKEN\"}";
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private MockWebServer server;
+    private ExecutorService executorService;
+    private Guardian guardian;
+
+    /**
+     * The platform threads of the last batch
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public int carrierThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            carrierThreads = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setResponseCode(201)
+                        .addHeader("Content-Type", "application/json")
+                        .setBody(START_FLOW_RESPONSE)
+                        .setHeadersDelay(10, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+
+        if (threads.equals("virtual")) {
+            // referenced reflectively, the benchmarks also build on JDK 8
+            executorService = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } else {
+            // the same pool as the default dispatcher of OkHttp
+            executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "guardian-call-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        guardian = new Guardian.Builder(server.url("/").toString())
+                .executorService(executorService)
+                .connectionPool(BATCH_SIZE, 5, TimeUnit.MINUTES)
+                .maxRequests(BATCH_SIZE)
+                .maxRequestsPerHost(BATCH_SIZE)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executorService.shutdownNow();
+        server.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void requestEnrollAsync(Counters counters) throws Exception {
+        final CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final Set<String> platformThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Callback<Transaction> callback = new Callback<Transaction>() {
+            @Override
+            public void onSuccess(Transaction result) {
+                platformThreads.add(platformThread());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                failure.compareAndSet(null, error);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            guardian.requestEnrollAsync("ENROLLMENT_TICKET_" + i, EnrollmentType.TOTP(), callback);
+        }
+        done.await();
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        counters.carrierThreads = platformThreads.size();
+    }
+
+    /**
+     * Returns the platform thread running the current thread: its carrier, e.g. "ForkJoinPool-1-worker-3" for a
+     * virtual thread printed as "VirtualThread[#42,...]/runnable@ForkJoinPool-1-worker-3", or its id otherwise, as
+     * OkHttp renames the threads of the calls after their url
+     */
+    private static String platformThread() {
+        String thread = Thread.currentThread().toString();
+        int carrier = thread.indexOf('@');
+        return carrier >= 0 ? thread.substring(carrier + 1) : "#" + Thread.currentThread().getId();
+    }
+}
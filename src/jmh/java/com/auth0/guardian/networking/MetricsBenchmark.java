@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a request in the metrics, shared by several threads like in a busy client
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private final HistogramMetrics metrics = new HistogramMetrics();
+    private final GuardianMetrics none = GuardianMetrics.NONE;
+    private final CallStats call = completed(204, null);
+    private final CallStats failedCall = completed(403, "invalid_otp");
+
+    private static CallStats completed(int statusCode, String errorCode) {
+        CallStats stats = new CallStats(Endpoint.VERIFY_OTP, 0);
+        stats.complete(statusCode, errorCode, 12345678);
+        return stats;
+    }
+
+    @Benchmark
+    public void recordCall() {
+        metrics.onCall(call);
+    }
+
+    @Benchmark
+    public void recordCallWithErrorCode() {
+        metrics.onCall(failedCall);
+    }
+
+    @Benchmark
+    public void recordPhase() {
+        metrics.onPhase(Endpoint.VERIFY_OTP, GuardianMetrics.Phase.TIME_TO_FIRST_BYTE, 2345678);
+    }
+
+    @Benchmark
+    public void recordNone() {
+        none.onCall(call);
+    }
+}
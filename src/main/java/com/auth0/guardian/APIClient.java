@@ -22,14 +22,21 @@
 
 package com.auth0.guardian;
 
+import com.auth0.guardian.networking.Endpoint;
+import com.auth0.guardian.networking.Priority;
 import com.auth0.guardian.networking.Request;
 import com.auth0.guardian.networking.RequestFactory;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 
+import java.util.Map;
+
 class APIClient {
 
     private final HttpUrl baseUrl;
+    private final HttpUrl startFlowUrl;
+    private final HttpUrl deviceAccountsUrl;
+    private final HttpUrl verifyOtpUrl;
     private final RequestFactory requestFactory;
 
     APIClient(HttpUrl baseUrl) {
@@ -41,29 +48,51 @@ class APIClient {
     }
 
     APIClient(HttpUrl baseUrl, RequestFactory requestFactory) {
-        this.baseUrl = baseUrl;
         this.requestFactory = requestFactory;
+        this.baseUrl = baseUrl;
+
+        // fixed endpoints are resolved once instead of on every call
+        this.startFlowUrl = baseUrl.resolve("api/start-flow");
+        this.deviceAccountsUrl = baseUrl.resolve("api/device-accounts/");
+        this.verifyOtpUrl = baseUrl.resolve("api/verify-otp");
     }
 
     Request<StartFlowResponse> startFlow(String ticket) {
         return requestFactory
-                .newRequest("POST", baseUrl.resolve("api/start-flow"), StartFlowResponse.class)
-                .setHeader("Authorization", String.format("Ticket id=\"%s\"", ticket))
+                .newRequest("POST", startFlowUrl, StartFlowResponse.class)
+                .setEndpoint(Endpoint.START_FLOW)
+                .setPriority(Priority.LOW)
+                .setHeader("Authorization", "Ticket id=\"" + ticket + "\"")
                 .setParameter("state_transport", "polling");
     }
 
     Request<Void> sendEnrollSMS(String transactionToken, String deviceAccountId, String phoneNumber) {
         return requestFactory
-                .newRequest("POST", baseUrl.resolve(String.format("api/device-accounts/%s/sms-enroll", deviceAccountId)), Void.class)
-                .setHeader("Authorization", String.format("Bearer %s", transactionToken))
+                .newRequest("POST", deviceAccountUrl(deviceAccountId, "sms-enroll"), Void.class)
+                .setEndpoint(Endpoint.SMS_ENROLL)
+                .setPriority(Priority.LOW)
+                .setHeader("Authorization", "Bearer " + transactionToken)
                 .setParameter("phone_number", phoneNumber);
     }
 
     Request<Void> verifyOTP(String transactionToken, String otp) {
         return requestFactory
-                .newRequest("POST", baseUrl.resolve("api/verify-otp"), Void.class)
-                .setHeader("Authorization", String.format("Bearer %s", transactionToken))
+                .newRequest("POST", verifyOtpUrl, Void.class)
+                .setEndpoint(Endpoint.VERIFY_OTP)
+                .setPriority(Priority.HIGH)
+                .setHeader("Authorization", "Bearer " + transactionToken)
                 .setParameter("type", "manual_input")
                 .setParameter("code", otp);
     }
+
+    int warmUp(int connections) throws InterruptedException {
+        return requestFactory.warmUp(baseUrl, connections, StartFlowResponse.class, Map.class);
+    }
+
+    private HttpUrl deviceAccountUrl(String deviceAccountId, String action) {
+        return deviceAccountsUrl.newBuilder()
+                .addPathSegment(deviceAccountId)
+                .addPathSegment(action)
+                .build();
+    }
 }
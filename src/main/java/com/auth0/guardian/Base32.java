@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import java.util.Arrays;
+
+/**
+ * Decodes the RFC 4648 Base32 of the TOTP secrets into a buffer supplied by the caller, so no memory is allocated
+ */
+final class Base32 {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET.charAt(i))] = (byte) i;
+        }
+    }
+
+    private Base32() {
+    }
+
+    /**
+     * Returns the maximum number of bytes decoded from a Base32 string of the given length
+     *
+     * @param length the length of the string
+     * @return the maximum number of decoded bytes
+     */
+    static int maxDecodedLength(int length) {
+        return (int) (length * 5L / 8);
+    }
+
+    /**
+     * Decodes a Base32 string, in upper or lower case and with or without padding. The spaces and dashes that group
+     * the characters for reading are ignored.
+     *
+     * @param encoded the Base32 string
+     * @param out     the buffer to decode into, of at least {@link #maxDecodedLength(int)} bytes
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException when the string is not valid Base32
+     */
+    static int decode(CharSequence encoded, byte[] out) throws IllegalArgumentException {
+        int length = encoded.length();
+        while (length > 0 && encoded.charAt(length - 1) == '=') {
+            length--;
+        }
+
+        int buffer = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = encoded.charAt(i);
+            if (c == ' ' || c == '-') {
+                continue;
+            }
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid Base32 character: " + c);
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[count++] = (byte) (buffer >> bits);
+            }
+        }
+        return count;
+    }
+}
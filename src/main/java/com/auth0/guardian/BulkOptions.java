@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+/**
+ * Options of the bulk operations of {@link Guardian}, like
+ * {@link Guardian#requestEnrollAll(java.util.Collection, BulkOptions)}
+ * <p>
+ * The requests are executed asynchronously, so they are also limited by the dispatcher of the client: raise
+ * {@link Guardian.Builder#maxRequestsPerHost(int)} (5 by default) to at least the max in flight.
+ */
+public class BulkOptions {
+
+    private final int maxInFlight;
+    private final ProgressListener progressListener;
+
+    private BulkOptions(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.progressListener = builder.progressListener;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Receives the progress of a bulk operation
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called every time an item of the operation completes, on the thread that completed it. The calls are not
+         * concurrent, but they must be fast, as the next item waits for them.
+         *
+         * @param completed the number of items completed so far, including the failed ones
+         * @param failed    the number of items that failed so far
+         * @param total     the number of items of the operation
+         */
+        void onProgress(int completed, int failed, int total);
+    }
+
+    public static class Builder {
+
+        private int maxInFlight = 16;
+        private ProgressListener progressListener;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of items in flight at the same time. An enrollment with SMS is a single item, even
+         * though it sends two requests one after the other. Defaults to 16.
+         *
+         * @param maxInFlight the maximum number of items in flight
+         * @return this builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("Invalid max in flight: " + maxInFlight);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets the listener of the progress of the operation
+         *
+         * @param progressListener the progress listener
+         * @return this builder
+         */
+        public Builder progressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public BulkOptions build() {
+            return new BulkOptions(this);
+        }
+    }
+}
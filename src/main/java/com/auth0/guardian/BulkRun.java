@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.Callback;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs an asynchronous operation for every item of a collection, with at most a number of them in flight, and waits
+ * for all of them to complete. A failed item doesn't stop the others.
+ *
+ * @param <I> the type of the items
+ * @param <R> the type of the results of the operation
+ */
+abstract class BulkRun<I, R> {
+
+    private final Collection<? extends I> items;
+    private final Semaphore permits;
+    private final BulkOptions.ProgressListener progressListener;
+    private final CountDownLatch done;
+
+    // guarded by this
+    private int completed;
+    private int failed;
+
+    BulkRun(Collection<? extends I> items, BulkOptions options) {
+        this.items = items;
+        this.permits = new Semaphore(options.getMaxInFlight());
+        this.progressListener = options.getProgressListener();
+        this.done = new CountDownLatch(items.size());
+    }
+
+    /**
+     * Starts the operation for an item, delivering its result to the callback
+     */
+    abstract void execute(I item, Callback<R> callback);
+
+    /**
+     * Receives the result of the item at the given position, and the time it took since it was started. Called once
+     * for every item, possibly concurrently.
+     */
+    abstract void onResult(int index, I item, R result, Exception error, long durationNanos);
+
+    /**
+     * Runs the operation for all the items and waits for them to complete. When interrupted, the items in flight still
+     * complete but no more are started.
+     */
+    final void run() throws InterruptedException {
+        int index = 0;
+        for (I item : items) {
+            permits.acquire();
+            start(index++, item);
+        }
+        done.await();
+    }
+
+    private void start(final int index, final I item) {
+        final long startNanos = System.nanoTime();
+        try {
+            execute(item, new Callback<R>() {
+                @Override
+                public void onSuccess(R result) {
+                    complete(index, item, result, null, System.nanoTime() - startNanos);
+                }
+
+                @Override
+                public void onFailure(Exception error) {
+                    complete(index, item, null, error, System.nanoTime() - startNanos);
+                }
+            });
+        } catch (RuntimeException e) {
+            complete(index, item, null, e, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void complete(int index, I item, R result, Exception error, long durationNanos) {
+        try {
+            onResult(index, item, result, error, durationNanos);
+        } finally {
+            permits.release();
+            try {
+                reportProgress(error != null);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private synchronized void reportProgress(boolean itemFailed) {
+        completed++;
+        if (itemFailed) {
+            failed++;
+        }
+        if (progressListener != null) {
+            progressListener.onProgress(completed, failed, items.size());
+        }
+    }
+}
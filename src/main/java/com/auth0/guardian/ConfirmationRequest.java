@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+/**
+ * A request to confirm an enrollment, for {@link Guardian#confirmEnrollAll(java.util.Collection, BulkOptions)}
+ */
+public class ConfirmationRequest {
+
+    private final String transactionToken;
+    private final String otp;
+
+    /**
+     * Creates a request to confirm an enrollment
+     *
+     * @param transactionToken the token associated with the transaction to confirm
+     * @param otp              the code obtained from the TOTP secret or delivered to the phone number by SMS
+     * @throws IllegalArgumentException when the transaction token or the otp are null
+     */
+    public ConfirmationRequest(String transactionToken, String otp) throws IllegalArgumentException {
+        if (transactionToken == null) {
+            throw new IllegalArgumentException("Invalid enrollment transaction");
+        }
+        if (otp == null) {
+            throw new IllegalArgumentException("Invalid OTP");
+        }
+        this.transactionToken = transactionToken;
+        this.otp = otp;
+    }
+
+    /**
+     * Returns the token associated with the transaction to confirm
+     *
+     * @return the transaction token
+     */
+    public String getTransactionToken() {
+        return transactionToken;
+    }
+
+    /**
+     * Returns the code to confirm the enrollment with
+     *
+     * @return the otp
+     */
+    public String getOtp() {
+        return otp;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+/**
+ * The result of one of the requests of {@link Guardian#confirmEnrollAll(java.util.Collection, BulkOptions)}
+ */
+public class ConfirmationResult {
+
+    private final ConfirmationRequest request;
+    private final Exception error;
+    private final long durationNanos;
+
+    ConfirmationResult(ConfirmationRequest request, Exception error, long durationNanos) {
+        this.request = request;
+        this.error = error;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Returns the request this is the result of
+     *
+     * @return the confirmation request
+     */
+    public ConfirmationRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns whether the enrollment was confirmed
+     *
+     * @return true when the enrollment was confirmed, false when there's an error
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns the error the request failed with
+     *
+     * @return a {@link GuardianException} when there's a Guardian specific issue (invalid otp for example), an
+     * {@link java.io.IOException} when there's a connection issue, or null when the request succeeded
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Returns the Guardian error code of the error the request failed with, e.g. {@code invalid_otp}
+     *
+     * @return the error code, or null when the request succeeded or failed without a Guardian error code
+     */
+    public String getErrorCode() {
+        return error instanceof GuardianException ? ((GuardianException) error).getErrorCode() : null;
+    }
+
+    /**
+     * Returns the time from sending the request to getting its result
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+}
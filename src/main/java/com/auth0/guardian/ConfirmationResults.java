@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of {@link Guardian#confirmEnrollAll(java.util.Collection, BulkOptions)}: the result of every request,
+ * the failures grouped by Guardian error code, the wall time of the operation and the latency of the requests
+ */
+public class ConfirmationResults {
+
+    private final List<ConfirmationResult> results;
+    private final Map<String, List<ConfirmationResult>> failuresByErrorCode;
+    private final int successCount;
+    private final long wallTimeNanos;
+    private final LatencyHistogram latency;
+
+    ConfirmationResults(List<ConfirmationResult> results, long wallTimeNanos, LatencyHistogram latency) {
+        Map<String, List<ConfirmationResult>> failures = new LinkedHashMap<>();
+        int successCount = 0;
+        for (ConfirmationResult result : results) {
+            if (result.isSuccessful()) {
+                successCount++;
+                continue;
+            }
+            List<ConfirmationResult> group = failures.get(result.getErrorCode());
+            if (group == null) {
+                group = new ArrayList<>();
+                failures.put(result.getErrorCode(), group);
+            }
+            group.add(result);
+        }
+        for (Map.Entry<String, List<ConfirmationResult>> entry : failures.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        this.results = Collections.unmodifiableList(results);
+        this.failuresByErrorCode = Collections.unmodifiableMap(failures);
+        this.successCount = successCount;
+        this.wallTimeNanos = wallTimeNanos;
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the result of every request
+     *
+     * @return the results, in the same order as the requests
+     */
+    public List<ConfirmationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the number of enrollments confirmed
+     *
+     * @return the number of successful results
+     */
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Returns the number of requests that failed
+     *
+     * @return the number of failed results
+     */
+    public int getFailureCount() {
+        return results.size() - successCount;
+    }
+
+    /**
+     * Returns the failed results grouped by the Guardian error code of their error, like {@code invalid_otp} (see
+     * {@link GuardianException#isInvalidOTP()}) or {@code transaction_not_found} (see
+     * {@link GuardianException#isTransactionNotFound()}). The failures without a Guardian error code, like connection
+     * issues, are under the null key.
+     *
+     * @return the failed results by error code, in the order the error codes were first found
+     */
+    public Map<String, List<ConfirmationResult>> getFailuresByErrorCode() {
+        return failuresByErrorCode;
+    }
+
+    /**
+     * Returns the failed results with a Guardian error code
+     *
+     * @param errorCode the Guardian error code, or null for the failures without one
+     * @return the failed results, empty when there are none
+     */
+    public List<ConfirmationResult> getFailures(String errorCode) {
+        List<ConfirmationResult> failures = failuresByErrorCode.get(errorCode);
+        return failures != null ? failures : Collections.<ConfirmationResult>emptyList();
+    }
+
+    /**
+     * Returns the time the whole operation took, from the first request sent to the last result
+     *
+     * @return the wall time in nanoseconds
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * Returns the distribution of the latency of the requests
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
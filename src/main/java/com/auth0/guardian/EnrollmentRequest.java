@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+/**
+ * A request to create an enrollment, for {@link Guardian#requestEnrollAll(java.util.Collection, BulkOptions)}
+ */
+public class EnrollmentRequest {
+
+    private final String ticket;
+    private final EnrollmentType type;
+
+    /**
+     * Creates a request to create an enrollment
+     *
+     * @param ticket the enrollment ticket
+     * @param type   the enrollment type to request
+     * @throws IllegalArgumentException when the ticket or the type are null
+     */
+    public EnrollmentRequest(String ticket, EnrollmentType type) throws IllegalArgumentException {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Invalid enrollment ticket");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Invalid enrollment type");
+        }
+        this.ticket = ticket;
+        this.type = type;
+    }
+
+    /**
+     * Returns the enrollment ticket
+     *
+     * @return the enrollment ticket
+     */
+    public String getTicket() {
+        return ticket;
+    }
+
+    /**
+     * Returns the enrollment type to request
+     *
+     * @return the enrollment type
+     */
+    public EnrollmentType getType() {
+        return type;
+    }
+}
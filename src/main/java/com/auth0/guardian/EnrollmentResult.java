@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+/**
+ * The result of one of the requests of {@link Guardian#requestEnrollAll(java.util.Collection, BulkOptions)}: the
+ * enrollment Transaction, or the error that request failed with
+ */
+public class EnrollmentResult {
+
+    private final EnrollmentRequest request;
+    private final Transaction transaction;
+    private final Exception error;
+
+    EnrollmentResult(EnrollmentRequest request, Transaction transaction, Exception error) {
+        this.request = request;
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    /**
+     * Returns the request this is the result of
+     *
+     * @return the enrollment request
+     */
+    public EnrollmentRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns whether the enrollment was created
+     *
+     * @return true when there's a Transaction, false when there's an error
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns the enrollment Transaction
+     *
+     * @return the enrollment Transaction, or null when the request failed
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Returns the error the request failed with
+     *
+     * @return a {@link GuardianException} when there's a Guardian specific issue, an {@link java.io.IOException} when
+     * there's a connection issue, or null when the request succeeded
+     */
+    public Exception getError() {
+        return error;
+    }
+}
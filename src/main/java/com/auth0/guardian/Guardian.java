@@ -22,13 +22,44 @@
 
 package com.auth0.guardian;
 
+import com.auth0.guardian.networking.AdaptiveConcurrencyLimiter;
+import com.auth0.guardian.networking.Callback;
+import com.auth0.guardian.networking.CircuitBreaker;
+import com.auth0.guardian.networking.GuardianMetrics;
+import com.auth0.guardian.networking.GuardianTracer;
+import com.auth0.guardian.networking.KeepWarm;
+import com.auth0.guardian.networking.LatencyHistogram;
+import com.auth0.guardian.networking.PriorityDispatcher;
+import com.auth0.guardian.networking.RateLimiter;
+import com.auth0.guardian.networking.RequestFactory;
+import com.auth0.guardian.networking.RetryPolicy;
+import com.auth0.guardian.networking.TlsSessionCache;
+import okhttp3.ConnectionPool;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
 import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Guardian {
 
+    private static final String REQUEST_ENROLL_SPAN = "request-enroll";
+
     private final APIClient apiClient;
+    private final GuardianTracer tracer;
+    private final KeepWarm keepWarm;
 
     /**
      * Creates an instance for a specific Guardian server URL
@@ -36,12 +67,50 @@ public class Guardian {
      * @param baseUrl the Guardian server URL
      */
     public Guardian(String baseUrl) {
+        this(new APIClient(parseBaseUrl(baseUrl)), GuardianTracer.NONE, null);
+    }
+
+    private Guardian(APIClient apiClient, GuardianTracer tracer, KeepWarm keepWarm) {
+        this.apiClient = apiClient;
+        this.tracer = tracer;
+        this.keepWarm = keepWarm;
+    }
+
+    private static HttpUrl parseBaseUrl(String baseUrl) {
         HttpUrl url = HttpUrl.parse(baseUrl);
         if (url == null) {
             throw new IllegalArgumentException("Invalid base URL: " + baseUrl);
         }
+        return url;
+    }
 
-        this.apiClient = new APIClient(url);
+    /**
+     * Prepares this instance for the first requests, so they run at steady-state latency. Call it at startup, before
+     * the first enrollment.
+     * <p>
+     * It opens connections to the Guardian server, resolving the host and doing the TLS handshakes, that stay in the
+     * connection pool, and it prepares the parsing of the responses. The connections are opened with concurrent
+     * {@code HEAD} requests, so at most {@link Builder#maxRequestsPerHost(int)} (5 by default) are opened, and the
+     * idle ones above the limit of the connection pool (5 by default) are closed. With HTTP/2 a single connection is
+     * opened. The duration is reported to the {@link GuardianMetrics}.
+     *
+     * @param connections the number of connections to open
+     * @return the number of warm-up requests that got a response, one per connection opened over HTTP/1.1
+     * @throws IllegalArgumentException when the number of connections is negative
+     * @throws InterruptedException     when the calling thread is interrupted while waiting for the connections
+     */
+    public int warmUp(int connections) throws IllegalArgumentException, InterruptedException {
+        return apiClient.warmUp(connections);
+    }
+
+    /**
+     * Stops the rounds of the {@link Builder#keepWarm(KeepWarm)} keep-warm, if one was set. Call it when this instance
+     * is no longer used.
+     */
+    public void stopKeepWarm() {
+        if (keepWarm != null) {
+            keepWarm.stop();
+        }
     }
 
     /**
@@ -55,13 +124,25 @@ public class Guardian {
      */
     public Transaction requestEnroll(String ticket, EnrollmentType type)
             throws IOException, GuardianException {
+        GuardianTracer.Span span = tracer.startSpan(REQUEST_ENROLL_SPAN, null, null);
+        try {
+            Transaction transaction = requestEnroll(ticket, type, span);
+            endSpan(span, null);
+            return transaction;
+        } catch (IOException | RuntimeException e) {
+            endSpan(span, e);
+            throw e;
+        }
+    }
+
+    private Transaction requestEnroll(String ticket, EnrollmentType type, GuardianTracer.Span span)
+            throws IOException, GuardianException {
         StartFlowResponse startFlowResponse = apiClient
                 .startFlow(ticket)
+                .setParentSpan(span)
                 .execute();
 
-        if (!"confirmation_pending".equals(startFlowResponse.getDeviceAccount().getStatus())) {
-            throw GuardianException.alreadyEnrolled();
-        }
+        Transaction transaction = transactionFrom(startFlowResponse);
 
         if (type instanceof EnrollmentType.SMS) {
             EnrollmentType.SMS smsEnrollmentRequest = (EnrollmentType.SMS) type;
@@ -70,9 +151,140 @@ public class Guardian {
                             startFlowResponse.getTransactionToken(),
                             startFlowResponse.getDeviceAccount().getId(),
                             smsEnrollmentRequest.getPhoneNumber())
+                    .setParentSpan(span)
                     .execute();
         }
 
+        return transaction;
+    }
+
+    /**
+     * Request to create an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#requestEnroll(String, EnrollmentType)}, but the requests are executed asynchronously and
+     * the result is delivered to the callback on one of the threads of the HTTP client's dispatcher.
+     *
+     * @param ticket   the enrollment ticket
+     * @param type     the enrollment type to request
+     * @param callback the callback that will receive the enrollment Transaction, or the error
+     */
+    public void requestEnrollAsync(String ticket, final EnrollmentType type, Callback<Transaction> callback) {
+        final GuardianTracer.Span span = tracer.startSpan(REQUEST_ENROLL_SPAN, null, null);
+        final Callback<Transaction> tracedCallback = span != null ? tracedCallback(callback, span) : callback;
+        apiClient
+                .startFlow(ticket)
+                .setParentSpan(span)
+                .executeAsync(new Callback<StartFlowResponse>() {
+                    @Override
+                    public void onSuccess(StartFlowResponse startFlowResponse) {
+                        final Transaction transaction;
+                        try {
+                            transaction = transactionFrom(startFlowResponse);
+                        } catch (RuntimeException e) {
+                            // e.g. a response without the device account
+                            tracedCallback.onFailure(e);
+                            return;
+                        }
+
+                        if (!(type instanceof EnrollmentType.SMS)) {
+                            tracedCallback.onSuccess(transaction);
+                            return;
+                        }
+
+                        EnrollmentType.SMS smsEnrollmentRequest = (EnrollmentType.SMS) type;
+                        apiClient
+                                .sendEnrollSMS(
+                                        startFlowResponse.getTransactionToken(),
+                                        startFlowResponse.getDeviceAccount().getId(),
+                                        smsEnrollmentRequest.getPhoneNumber())
+                                .setParentSpan(span)
+                                .executeAsync(new Callback<Void>() {
+                                    @Override
+                                    public void onSuccess(Void result) {
+                                        tracedCallback.onSuccess(transaction);
+                                    }
+
+                                    @Override
+                                    public void onFailure(Exception error) {
+                                        tracedCallback.onFailure(error);
+                                    }
+                                });
+                    }
+
+                    @Override
+                    public void onFailure(Exception error) {
+                        tracedCallback.onFailure(error);
+                    }
+                });
+    }
+
+    /**
+     * Requests to create many enrollments, like {@link Guardian#requestEnroll(String, EnrollmentType)} for each one of
+     * them, but with several requests in flight at the same time.
+     * <p>
+     * The requests are executed asynchronously over the client of this instance, with at most
+     * {@link BulkOptions.Builder#maxInFlight(int)} enrollments in flight. A failed enrollment doesn't stop the others:
+     * every request gets its result, with the Transaction or the error.
+     *
+     * @param requests the enrollments to request
+     * @param options  the options of the operation, like the max in flight and the progress listener
+     * @return the results, in the same order as the requests
+     * @throws IllegalArgumentException when the requests or the options are null
+     * @throws InterruptedException     when the calling thread is interrupted while waiting for the results
+     */
+    public List<EnrollmentResult> requestEnrollAll(Collection<EnrollmentRequest> requests, BulkOptions options)
+            throws IllegalArgumentException, InterruptedException {
+        if (requests == null) {
+            throw new IllegalArgumentException("Invalid enrollment requests");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Invalid bulk options");
+        }
+
+        final EnrollmentResult[] results = new EnrollmentResult[requests.size()];
+        new BulkRun<EnrollmentRequest, Transaction>(requests, options) {
+            @Override
+            void execute(EnrollmentRequest request, Callback<Transaction> callback) {
+                requestEnrollAsync(request.getTicket(), request.getType(), callback);
+            }
+
+            @Override
+            void onResult(int index, EnrollmentRequest request, Transaction transaction, Exception error,
+                          long durationNanos) {
+                results[index] = new EnrollmentResult(request, transaction, error);
+            }
+        }.run();
+
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private static <T> Callback<T> tracedCallback(final Callback<T> callback, final GuardianTracer.Span span) {
+        return new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                endSpan(span, null);
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                endSpan(span, error);
+                callback.onFailure(error);
+            }
+        };
+    }
+
+    private static void endSpan(GuardianTracer.Span span, Exception error) {
+        if (span != null) {
+            span.end(-1, error);
+        }
+    }
+
+    private static Transaction transactionFrom(StartFlowResponse startFlowResponse) throws GuardianException {
+        if (!"confirmation_pending".equals(startFlowResponse.getDeviceAccount().getStatus())) {
+            throw GuardianException.alreadyEnrolled();
+        }
+
         return new Transaction(
                 startFlowResponse.getTransactionToken(),
                 startFlowResponse.getDeviceAccount().getRecoveryCode(),
@@ -138,4 +350,560 @@ public class Guardian {
                 .verifyOTP(transactionToken, otp)
                 .execute();
     }
+
+    /**
+     * Confirms many enrollments, like {@link Guardian#confirmEnroll(String, String)} for each one of them, but with
+     * several requests in flight at the same time.
+     * <p>
+     * Use it in provisioning pipelines that hold the TOTP secrets of the enrollments. The requests are executed
+     * asynchronously over the client of this instance, with at most {@link BulkOptions.Builder#maxInFlight(int)} in
+     * flight. A failed confirmation doesn't stop the others.
+     *
+     * @param requests the enrollments to confirm
+     * @param options  the options of the operation, like the max in flight and the progress listener
+     * @return the results in the same order as the requests, the failures grouped by error code, and the wall time
+     * and latency distribution of the requests
+     * @throws IllegalArgumentException when the requests or the options are null
+     * @throws InterruptedException     when the calling thread is interrupted while waiting for the results
+     */
+    public ConfirmationResults confirmEnrollAll(Collection<ConfirmationRequest> requests, BulkOptions options)
+            throws IllegalArgumentException, InterruptedException {
+        if (requests == null) {
+            throw new IllegalArgumentException("Invalid confirmation requests");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Invalid bulk options");
+        }
+
+        final ConfirmationResult[] results = new ConfirmationResult[requests.size()];
+        final LatencyHistogram latency = new LatencyHistogram();
+        long startNanos = System.nanoTime();
+        new BulkRun<ConfirmationRequest, Void>(requests, options) {
+            @Override
+            void execute(ConfirmationRequest request, Callback<Void> callback) {
+                confirmEnrollAsync(request.getTransactionToken(), request.getOtp(), callback);
+            }
+
+            @Override
+            void onResult(int index, ConfirmationRequest request, Void result, Exception error, long durationNanos) {
+                latency.record(durationNanos);
+                results[index] = new ConfirmationResult(request, error, durationNanos);
+            }
+        }.run();
+
+        return new ConfirmationResults(Arrays.asList(results), System.nanoTime() - startNanos, latency);
+    }
+
+    /**
+     * Confirms an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#confirmEnroll(Transaction, String)}, but the request is executed asynchronously and the
+     * result is delivered to the callback on one of the threads of the HTTP client's dispatcher.
+     *
+     * @param transaction the enrollment transaction
+     * @param otp         the code obtained from the TOTP app or delivered to the phone number by SMS
+     * @param callback    the callback that will receive the Enrollment, or the error
+     * @throws IllegalArgumentException when the transaction is not valid
+     */
+    public void confirmEnrollAsync(final Transaction transaction, String otp, final Callback<Enrollment> callback)
+            throws IllegalArgumentException {
+        if (transaction == null || transaction.getTransactionToken() == null) {
+            throw new IllegalArgumentException("Invalid enrollment transaction");
+        }
+        if (otp == null) {
+            throw new IllegalArgumentException("Invalid OTP");
+        }
+
+        apiClient
+                .verifyOTP(transaction.getTransactionToken(), otp)
+                .executeAsync(new Callback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        callback.onSuccess(new Enrollment(transaction.getRecoveryCode()));
+                    }
+
+                    @Override
+                    public void onFailure(Exception error) {
+                        callback.onFailure(error);
+                    }
+                });
+    }
+
+    /**
+     * Confirms an enrollment without blocking the calling thread.
+     * <p>
+     * Same as {@link Guardian#confirmEnroll(String, String)}, but the request is executed asynchronously and the
+     * result is delivered to the callback on one of the threads of the HTTP client's dispatcher.
+     *
+     * @param transactionToken the token associated with the transaction to confirm.
+     * @param otp              the code obtained from the TOTP app or delivered to the phone number by SMS
+     * @param callback         the callback that will be notified of the completion, or the error
+     * @throws IllegalArgumentException when the transaction is not valid
+     */
+    public void confirmEnrollAsync(String transactionToken, String otp, Callback<Void> callback)
+            throws IllegalArgumentException {
+        if (transactionToken == null) {
+            throw new IllegalArgumentException("Invalid enrollment transaction");
+        }
+        if (otp == null) {
+            throw new IllegalArgumentException("Invalid OTP");
+        }
+
+        apiClient
+                .verifyOTP(transactionToken, otp)
+                .executeAsync(callback);
+    }
+
+    /**
+     * Builder for {@link Guardian} instances that need control over the underlying HTTP client.
+     * <p>
+     * Passing the same {@link OkHttpClient} to every builder lets all the Guardian instances share a single connection
+     * pool and dispatcher, so connections (and their TLS sessions) are reused instead of being opened for each instance.
+     * Any setting configured on the builder is applied on top of that client without affecting it.
+     */
+    public static class Builder {
+
+        private final HttpUrl baseUrl;
+
+        private OkHttpClient client;
+        private ConnectionPool connectionPool;
+        private Long connectTimeoutMillis;
+        private Long readTimeoutMillis;
+        private Long writeTimeoutMillis;
+        private Long callTimeoutMillis;
+        private ExecutorService executorService;
+        private Integer maxRequests;
+        private Integer maxRequestsPerHost;
+        private List<Protocol> protocols;
+        private Dns dns;
+        private SSLSocketFactory sslSocketFactory;
+        private X509TrustManager trustManager;
+        private List<ConnectionSpec> connectionSpecs;
+        private PriorityDispatcher priorityDispatcher;
+        private RetryPolicy retryPolicy;
+        private CircuitBreaker circuitBreaker;
+        private RateLimiter rateLimiter;
+        private AdaptiveConcurrencyLimiter concurrencyLimiter;
+        private KeepWarm keepWarm;
+        private GuardianMetrics metrics = GuardianMetrics.NONE;
+        private GuardianTracer tracer = GuardianTracer.NONE;
+
+        /**
+         * Creates a builder for a specific Guardian server URL
+         *
+         * @param baseUrl the Guardian server URL
+         */
+        public Builder(String baseUrl) {
+            this.baseUrl = parseBaseUrl(baseUrl);
+        }
+
+        /**
+         * Sets the client used to execute the requests. Its connection pool, dispatcher and settings are shared.
+         *
+         * @param client the client to use
+         * @return this builder
+         */
+        public Builder client(OkHttpClient client) {
+            if (client == null) {
+                throw new IllegalArgumentException("Invalid client");
+            }
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Uses a dedicated connection pool instead of the one of the client
+         *
+         * @param maxIdleConnections the maximum number of idle connections to keep in the pool
+         * @param keepAliveDuration  the time to keep an idle connection alive in the pool
+         * @param timeUnit           the unit of the keep alive duration
+         * @return this builder
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit) {
+            this.connectionPool = new ConnectionPool(maxIdleConnections, keepAliveDuration, timeUnit);
+            return this;
+        }
+
+        /**
+         * Sets the connect timeout. A value of 0 means no timeout.
+         *
+         * @param timeout the timeout
+         * @param unit    the unit of the timeout
+         * @return this builder
+         */
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the read timeout. A value of 0 means no timeout.
+         *
+         * @param timeout the timeout
+         * @param unit    the unit of the timeout
+         * @return this builder
+         */
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            this.readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the write timeout. A value of 0 means no timeout.
+         *
+         * @param timeout the timeout
+         * @param unit    the unit of the timeout
+         * @return this builder
+         */
+        public Builder writeTimeout(long timeout, TimeUnit unit) {
+            this.writeTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the timeout for the complete call, from the connection to reading the response. A value of 0 means no
+         * timeout.
+         *
+         * @param timeout the timeout
+         * @param unit    the unit of the timeout
+         * @return this builder
+         */
+        public Builder callTimeout(long timeout, TimeUnit unit) {
+            this.callTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs the asynchronous requests, instead of the thread pool of the client's dispatcher.
+         * <p>
+         * On Java 21+ use {@code Executors.newVirtualThreadPerTaskExecutor()} to run every asynchronous request on its
+         * own virtual thread, so a large number of concurrent enrollments doesn't need the same number of platform
+         * threads. The blocking methods always run on the calling thread, so they run on a virtual thread when called
+         * from one.
+         *
+         * @param executorService the executor for asynchronous requests
+         * @return this builder
+         */
+        public Builder executorService(ExecutorService executorService) {
+            if (executorService == null) {
+                throw new IllegalArgumentException("Invalid executor service");
+            }
+            this.executorService = executorService;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of asynchronous requests to execute concurrently. Above this requests queue in memory
+         * waiting for the running calls to complete.
+         *
+         * @param maxRequests the maximum number of concurrent requests
+         * @return this builder
+         */
+        public Builder maxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of asynchronous requests for the Guardian server to execute concurrently.
+         *
+         * @param maxRequestsPerHost the maximum number of concurrent requests to the Guardian server
+         * @return this builder
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the protocols used to communicate with the Guardian server, in order of preference.
+         * <p>
+         * With HTTP/2 ({@link Protocol#HTTP_2} negotiated over TLS, or {@link Protocol#H2_PRIOR_KNOWLEDGE} for cleartext
+         * HTTP/2 to a local proxy) concurrent requests are multiplexed over a single connection. Prior knowledge can't
+         * be combined with other protocols.
+         *
+         * @param protocols the protocols to use
+         * @return this builder
+         */
+        public Builder protocols(List<Protocol> protocols) {
+            if (protocols == null || protocols.isEmpty()) {
+                throw new IllegalArgumentException("Invalid protocols");
+            }
+            this.protocols = new ArrayList<>(protocols);
+            return this;
+        }
+
+        /**
+         * Sets the resolver of the host name of the Guardian server, e.g. a
+         * {@link com.auth0.guardian.networking.CachingDns} so the requests don't wait for the system resolver. By
+         * default the resolver of the client is used.
+         *
+         * @param dns the resolver
+         * @return this builder
+         */
+        public Builder dns(Dns dns) {
+            if (dns == null) {
+                throw new IllegalArgumentException("Invalid dns");
+            }
+            this.dns = dns;
+            return this;
+        }
+
+        /**
+         * Sets the factory of the TLS sockets and the trust manager that verifies the certificate of the Guardian
+         * server, e.g. to pin a custom trust store. By default the ones of the client are used.
+         *
+         * @param sslSocketFactory the factory of the TLS sockets
+         * @param trustManager     the trust manager of the factory
+         * @return this builder
+         */
+        public Builder sslSocketFactory(SSLSocketFactory sslSocketFactory, X509TrustManager trustManager) {
+            if (sslSocketFactory == null || trustManager == null) {
+                throw new IllegalArgumentException("Invalid SSL socket factory");
+            }
+            this.sslSocketFactory = sslSocketFactory;
+            this.trustManager = trustManager;
+            return this;
+        }
+
+        /**
+         * Uses the socket factory of a cache of TLS sessions, so the connections opened again after the pool evicted
+         * the idle ones resume their TLS session instead of doing a full handshake. Pass the same cache to several
+         * builders to share the sessions between their instances.
+         *
+         * @param tlsSessionCache the cache of TLS sessions
+         * @return this builder
+         */
+        public Builder tlsSessionCache(TlsSessionCache tlsSessionCache) {
+            if (tlsSessionCache == null) {
+                throw new IllegalArgumentException("Invalid TLS session cache");
+            }
+            return sslSocketFactory(tlsSessionCache.getSslSocketFactory(), tlsSessionCache.getTrustManager());
+        }
+
+        /**
+         * Sets the TLS versions and cipher suites to negotiate with the Guardian server, e.g.
+         * {@link ConnectionSpec#RESTRICTED_TLS} to only allow the strongest ones. By default the ones of the client
+         * are used, {@link ConnectionSpec#MODERN_TLS} unless configured.
+         *
+         * @param connectionSpecs the connection specs, in order of preference
+         * @return this builder
+         */
+        public Builder connectionSpecs(List<ConnectionSpec> connectionSpecs) {
+            if (connectionSpecs == null || connectionSpecs.isEmpty()) {
+                throw new IllegalArgumentException("Invalid connection specs");
+            }
+            this.connectionSpecs = new ArrayList<>(connectionSpecs);
+            return this;
+        }
+
+        /**
+         * Sets the dispatcher that limits the requests in flight and, under overload, serves the requests that confirm
+         * enrollments before the ones that request new enrollments. It's installed first, so a request keeps its slot
+         * while it's retried. By default requests are not queued by priority.
+         *
+         * @param priorityDispatcher the priority dispatcher
+         * @return this builder
+         */
+        public Builder priorityDispatcher(PriorityDispatcher priorityDispatcher) {
+            if (priorityDispatcher == null) {
+                throw new IllegalArgumentException("Invalid priority dispatcher");
+            }
+            this.priorityDispatcher = priorityDispatcher;
+            return this;
+        }
+
+        /**
+         * Sets the policy to retry the requests that failed in a way that is safe to retry, like connection failures
+         * or 503 responses. By default requests are not retried.
+         *
+         * @param retryPolicy the retry policy
+         * @return this builder
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            if (retryPolicy == null) {
+                throw new IllegalArgumentException("Invalid retry policy");
+            }
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the circuit breaker that rejects the requests to a failing endpoint without sending them, instead of
+         * waiting for the timeouts. It's installed after the retry policy, so each attempt is recorded and a rejected
+         * request is not retried. By default there is no circuit breaker.
+         *
+         * @param circuitBreaker the circuit breaker
+         * @return this builder
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            if (circuitBreaker == null) {
+                throw new IllegalArgumentException("Invalid circuit breaker");
+            }
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter that limits the requests sent to each endpoint. It's installed after the retry policy
+         * and the circuit breaker, so every attempt that reaches the server takes a permit. By default requests are not
+         * limited.
+         *
+         * @param rateLimiter the rate limiter
+         * @return this builder
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            if (rateLimiter == null) {
+                throw new IllegalArgumentException("Invalid rate limiter");
+            }
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the limiter of the requests in flight, whose limit adapts to the latency of the server. It's installed
+         * last, right before the request is sent, so it only measures the round trip of the request. By default the
+         * requests in flight are only limited by the dispatcher.
+         *
+         * @param concurrencyLimiter the concurrency limiter
+         * @return this builder
+         */
+        public Builder concurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+            if (concurrencyLimiter == null) {
+                throw new IllegalArgumentException("Invalid concurrency limiter");
+            }
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the keep-warm that holds a minimum number of connections to the Guardian server warm between bursts of
+         * requests. It's started when the instance is built; stop it with {@link Guardian#stopKeepWarm()} when the
+         * instance is no longer used.
+         *
+         * @param keepWarm the keep-warm, which can't be shared by several instances nor built into more than one
+         * @return this builder
+         */
+        public Builder keepWarm(KeepWarm keepWarm) {
+            if (keepWarm == null) {
+                throw new IllegalArgumentException("Invalid keep warm");
+            }
+            this.keepWarm = keepWarm;
+            return this;
+        }
+
+        /**
+         * Sets the metrics that receive the count, status code, error code and latency of every request, and the
+         * latency of its phases. By default nothing is measured.
+         *
+         * @param metrics the metrics, e.g. a {@link com.auth0.guardian.networking.HistogramMetrics}
+         * @return this builder
+         */
+        public Builder metrics(GuardianMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Invalid metrics");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the tracer that starts a span for every request, and for the enrollment requests as a whole, and adds
+         * the W3C {@code traceparent} and {@code tracestate} headers of the span to the requests. By default nothing
+         * is traced.
+         *
+         * @param tracer the tracer, adapting the tracing library of the application
+         * @return this builder
+         */
+        public Builder tracer(GuardianTracer tracer) {
+            if (tracer == null) {
+                throw new IllegalArgumentException("Invalid tracer");
+            }
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Creates the Guardian instance, and starts its keep-warm if one was set
+         *
+         * @return a Guardian instance
+         * @throws IllegalStateException when the keep-warm was already started, e.g. by a previous call; set a new
+         *                               keep-warm to build another instance
+         */
+        public Guardian build() {
+            if (keepWarm != null && keepWarm.isStarted()) {
+                throw new IllegalStateException(
+                        "The keep-warm was already started by another instance, set a new one to build again");
+            }
+            OkHttpClient client = buildClient();
+            if (keepWarm != null) {
+                keepWarm.start(client, baseUrl);
+            }
+            return new Guardian(new APIClient(baseUrl, new RequestFactory(client, metrics, tracer)), tracer, keepWarm);
+        }
+
+        OkHttpClient buildClient() {
+            OkHttpClient.Builder builder = client != null ? client.newBuilder() : new OkHttpClient.Builder();
+
+            if (connectionPool != null) {
+                builder.connectionPool(connectionPool);
+            }
+            if (executorService != null || maxRequests != null || maxRequestsPerHost != null) {
+                // a dedicated dispatcher, so the one of a shared client is not modified
+                Dispatcher dispatcher = executorService != null ? new Dispatcher(executorService) : new Dispatcher();
+                if (maxRequests != null) {
+                    dispatcher.setMaxRequests(maxRequests);
+                }
+                if (maxRequestsPerHost != null) {
+                    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+                }
+                builder.dispatcher(dispatcher);
+            }
+            if (protocols != null) {
+                builder.protocols(protocols);
+            }
+            if (dns != null) {
+                builder.dns(dns);
+            }
+            if (sslSocketFactory != null) {
+                builder.sslSocketFactory(sslSocketFactory, trustManager);
+            }
+            if (connectionSpecs != null) {
+                builder.connectionSpecs(connectionSpecs);
+            }
+            if (priorityDispatcher != null) {
+                builder.addInterceptor(priorityDispatcher);
+            }
+            if (retryPolicy != null) {
+                builder.addInterceptor(retryPolicy);
+                builder.addNetworkInterceptor(retryPolicy.networkInterceptor());
+            }
+            if (circuitBreaker != null) {
+                builder.addInterceptor(circuitBreaker);
+            }
+            if (rateLimiter != null) {
+                builder.addInterceptor(rateLimiter);
+            }
+            if (concurrencyLimiter != null) {
+                builder.addInterceptor(concurrencyLimiter);
+            }
+            if (keepWarm != null) {
+                builder.addInterceptor(keepWarm);
+            }
+            if (connectTimeoutMillis != null) {
+                builder.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            if (readTimeoutMillis != null) {
+                builder.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            if (writeTimeoutMillis != null) {
+                builder.writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            if (callTimeoutMillis != null) {
+                builder.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+
+            return builder.build();
+        }
+    }
 }
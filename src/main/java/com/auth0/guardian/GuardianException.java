@@ -39,6 +39,26 @@ public class GuardianException extends RuntimeException {
 
     private static final String ERROR_ALREADY_ENROLLED = "already_enrolled";
 
+    /**
+     * The error code of the requests rejected by an open circuit breaker, see {@link #isCircuitOpen()}
+     */
+    public static final String ERROR_CIRCUIT_OPEN = "circuit_open";
+
+    /**
+     * The error code of the requests rejected by the client-side rate limiter, see {@link #isRateLimited()}
+     */
+    public static final String ERROR_RATE_LIMITED = "rate_limited";
+
+    /**
+     * The error code of the requests rejected by the concurrency limiter, see {@link #isConcurrencyLimited()}
+     */
+    public static final String ERROR_CONCURRENCY_LIMITED = "concurrency_limited";
+
+    /**
+     * The error code of the requests shed by the priority dispatcher, see {@link #isLoadShed()}
+     */
+    public static final String ERROR_LOAD_SHED = "load_shed";
+
     private final Map<String, Object> errorResponse;
     private final String errorCode;
 
@@ -125,6 +145,45 @@ public class GuardianException extends RuntimeException {
         return ERROR_ALREADY_ENROLLED.equals(errorCode);
     }
 
+    /**
+     * Whether the request was rejected without being sent because the circuit breaker of its endpoint is open
+     *
+     * @return true if the request was rejected by an open circuit breaker
+     */
+    public boolean isCircuitOpen() {
+        return ERROR_CIRCUIT_OPEN.equals(errorCode);
+    }
+
+    /**
+     * Whether the request was rejected without being sent because it exceeded the client-side rate limit of its
+     * endpoint
+     *
+     * @return true if the request was rejected by the rate limiter
+     */
+    public boolean isRateLimited() {
+        return ERROR_RATE_LIMITED.equals(errorCode);
+    }
+
+    /**
+     * Whether the request was rejected without being sent because the client already had as many requests in flight
+     * as its concurrency limit allows
+     *
+     * @return true if the request was rejected by the concurrency limiter
+     */
+    public boolean isConcurrencyLimited() {
+        return ERROR_CONCURRENCY_LIMITED.equals(errorCode);
+    }
+
+    /**
+     * Whether the request was shed without being sent because the client was overloaded, to serve higher priority
+     * requests first
+     *
+     * @return true if the request was shed by the priority dispatcher
+     */
+    public boolean isLoadShed() {
+        return ERROR_LOAD_SHED.equals(errorCode);
+    }
+
     @Override
     public String toString() {
         if (errorResponse != null) {
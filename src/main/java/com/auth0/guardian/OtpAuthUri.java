@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@code otpauth://} key URI, the format of the QR codes scanned by authenticator apps to add an account, e.g.
+ * {@code otpauth://totp/Issuer:user?secret=JBSWY3DPEHPK3PXP&issuer=Issuer&digits=8}
+ * <p>
+ * The URI is written in a single pass into any {@link Appendable}, percent-encoding the label and the parameters like
+ * {@code okhttp3.HttpUrl} does, and can be parsed back from the URIs of other providers. The algorithm, digits and
+ * period are only written when they are not the defaults of the format, because some apps ignore the URIs with
+ * parameters they don't know. Instances are immutable.
+ */
+public final class OtpAuthUri {
+
+    private static final String SCHEME = "otpauth://";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    // the characters HttpUrl encodes in a path segment and in a query component, besides controls and non-ASCII
+    private static final boolean[] PATH_SEGMENT_ENCODE_SET = encodeSet(" \"<>^`{}|/\\?#%");
+    private static final boolean[] QUERY_COMPONENT_ENCODE_SET = encodeSet(" !\"#$&'(),/:;<=>?@[]\\^`{|}~%+");
+
+    private static final Totp.Algorithm DEFAULT_ALGORITHM = Totp.Algorithm.SHA1;
+    private static final int DEFAULT_DIGITS = 6;
+    private static final long DEFAULT_PERIOD_SECONDS = 30;
+
+    /**
+     * The types of one-time passwords
+     */
+    public enum Type {
+        TOTP("totp"),
+        HOTP("hotp");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+    }
+
+    private final Type type;
+    private final String issuer;
+    private final String accountName;
+    private final String secret;
+    private final Totp.Algorithm algorithm;
+    private final int digits;
+    private final long periodSeconds;
+    private final long counter;
+
+    private OtpAuthUri(Builder builder) {
+        this.type = builder.type;
+        this.issuer = builder.issuer;
+        this.accountName = builder.accountName;
+        this.secret = builder.secret;
+        this.algorithm = builder.algorithm;
+        this.digits = builder.digits;
+        this.periodSeconds = builder.periodSeconds;
+        this.counter = builder.counter;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the issuer of the account, or null when the URI doesn't have one
+     *
+     * @return the issuer
+     */
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public String getAccountName() {
+        return accountName;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public Totp.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    /**
+     * Returns the period of the TOTP codes
+     *
+     * @param unit the unit of the period
+     * @return the period in the unit
+     */
+    public long getPeriod(TimeUnit unit) {
+        return unit.convert(periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the initial counter of the HOTP codes, 0 for TOTP
+     *
+     * @return the counter
+     */
+    public long getCounter() {
+        return counter;
+    }
+
+    /**
+     * Writes the URI
+     *
+     * @param appendable where to write the URI
+     * @param <A>        the type of the appendable
+     * @return the appendable
+     * @throws IOException when the appendable fails to write
+     */
+    public <A extends Appendable> A appendTo(A appendable) throws IOException {
+        appendable.append(SCHEME).append(type.value).append('/');
+        if (issuer != null) {
+            encode(issuer, PATH_SEGMENT_ENCODE_SET, appendable);
+            appendable.append(':');
+        }
+        encode(accountName, PATH_SEGMENT_ENCODE_SET, appendable);
+
+        appendable.append("?secret=");
+        encode(secret, QUERY_COMPONENT_ENCODE_SET, appendable);
+        if (issuer != null) {
+            appendable.append("&issuer=");
+            encode(issuer, QUERY_COMPONENT_ENCODE_SET, appendable);
+        }
+        if (algorithm != DEFAULT_ALGORITHM) {
+            appendable.append("&algorithm=").append(algorithm.name());
+        }
+        if (digits != DEFAULT_DIGITS) {
+            appendable.append("&digits=").append((char) ('0' + digits));
+        }
+        if (type == Type.TOTP && periodSeconds != DEFAULT_PERIOD_SECONDS) {
+            appendable.append("&period=").append(Long.toString(periodSeconds));
+        }
+        if (type == Type.HOTP) {
+            appendable.append("&counter=").append(Long.toString(counter));
+        }
+        return appendable;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(SCHEME.length() + 64 + 2 * (secret.length() + accountName.length()
+                + (issuer != null ? 2 * issuer.length() : 0)));
+        try {
+            return appendTo(builder).toString();
+        } catch (IOException e) {
+            // a StringBuilder doesn't throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses an {@code otpauth://} URI. The issuer parameter takes precedence over the issuer of the label, the
+     * parameters the format doesn't define (e.g. {@code image}) are ignored and {@code +} is decoded as a space.
+     * <p>
+     * The messages of the exceptions never include the URI, since it contains the secret.
+     *
+     * @param uri the URI
+     * @return the parsed URI
+     * @throws IllegalArgumentException when the URI is not a valid {@code otpauth://} URI
+     */
+    public static OtpAuthUri parse(String uri) throws IllegalArgumentException {
+        if (uri == null || !uri.regionMatches(true, 0, SCHEME, 0, SCHEME.length())) {
+            throw new IllegalArgumentException("Invalid otpauth URI: not an otpauth URI");
+        }
+
+        int typeEnd = uri.indexOf('/', SCHEME.length());
+        if (typeEnd == -1) {
+            throw new IllegalArgumentException("Invalid otpauth URI: missing label");
+        }
+        Builder builder = new Builder();
+        builder.type = parseType(uri.substring(SCHEME.length(), typeEnd));
+
+        int end = uri.indexOf('#', typeEnd);
+        if (end == -1) {
+            end = uri.length();
+        }
+        int labelEnd = uri.indexOf('?', typeEnd);
+        if (labelEnd == -1 || labelEnd > end) {
+            labelEnd = end;
+        }
+        String label = decode(uri, typeEnd + 1, labelEnd, false);
+        int colon = label.indexOf(':');
+        if (colon != -1) {
+            builder.issuer(label.substring(0, colon));
+        }
+        // the format allows spaces between the issuer and the account name
+        int accountStart = colon + 1;
+        while (accountStart < label.length() && label.charAt(accountStart) == ' ') {
+            accountStart++;
+        }
+        builder.accountName(label.substring(accountStart));
+
+        boolean hasCounter = false;
+        int start = labelEnd + 1;
+        while (start < end) {
+            int parameterEnd = uri.indexOf('&', start);
+            if (parameterEnd == -1 || parameterEnd > end) {
+                parameterEnd = end;
+            }
+            int equals = uri.indexOf('=', start);
+            if (equals == -1 || equals > parameterEnd) {
+                equals = parameterEnd;
+            }
+            String name = decode(uri, start, equals, true);
+            String value = decode(uri, Math.min(equals + 1, parameterEnd), parameterEnd, true);
+            switch (name) {
+                case "secret":
+                    builder.secret = value;
+                    break;
+                case "issuer":
+                    builder.issuer(value);
+                    break;
+                case "algorithm":
+                    builder.algorithm(parseAlgorithm(value));
+                    break;
+                case "digits":
+                    long digits = parseNumber(name, value);
+                    if (digits < 6 || digits > 9) {
+                        throw new IllegalArgumentException("Invalid otpauth URI: invalid digits " + value);
+                    }
+                    builder.digits((int) digits);
+                    break;
+                case "period":
+                    builder.period(parseNumber(name, value), TimeUnit.SECONDS);
+                    break;
+                case "counter":
+                    builder.counter(parseNumber(name, value));
+                    hasCounter = true;
+                    break;
+                default:
+                    break;
+            }
+            start = parameterEnd + 1;
+        }
+
+        if (builder.secret == null || builder.secret.isEmpty()) {
+            throw new IllegalArgumentException("Invalid otpauth URI: missing secret");
+        }
+        if (builder.type == Type.HOTP && !hasCounter) {
+            throw new IllegalArgumentException("Invalid otpauth URI: missing counter");
+        }
+        return builder.build();
+    }
+
+    private static Type parseType(String value) {
+        for (Type type : Type.values()) {
+            if (type.value.equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Invalid otpauth URI: unknown type " + value);
+    }
+
+    private static Totp.Algorithm parseAlgorithm(String value) {
+        for (Totp.Algorithm algorithm : Totp.Algorithm.values()) {
+            if (algorithm.name().equalsIgnoreCase(value)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Invalid otpauth URI: unknown algorithm " + value);
+    }
+
+    private static long parseNumber(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid otpauth URI: invalid " + name + " " + value);
+        }
+    }
+
+    private static boolean[] encodeSet(String characters) {
+        boolean[] set = new boolean[128];
+        for (int i = 0; i < 0x20; i++) {
+            set[i] = true;
+        }
+        set[0x7F] = true;
+        for (int i = 0; i < characters.length(); i++) {
+            set[characters.charAt(i)] = true;
+        }
+        return set;
+    }
+
+    /**
+     * Writes the text percent-encoding the characters of the set and the UTF-8 bytes of the non-ASCII ones, appending
+     * the runs of characters that don't need it at once
+     */
+    private static void encode(String text, boolean[] encodeSet, Appendable out) throws IOException {
+        int length = text.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && !encodeSet[c]) {
+                continue;
+            }
+            if (runStart < i) {
+                out.append(text, runStart, i);
+            }
+            if (c < 0x80) {
+                appendPercentEncoded(c, out);
+            } else if (c < 0x800) {
+                appendPercentEncoded(0xC0 | c >> 6, out);
+                appendPercentEncoded(0x80 | c & 0x3F, out);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                appendPercentEncoded(0xF0 | codePoint >> 18, out);
+                appendPercentEncoded(0x80 | codePoint >> 12 & 0x3F, out);
+                appendPercentEncoded(0x80 | codePoint >> 6 & 0x3F, out);
+                appendPercentEncoded(0x80 | codePoint & 0x3F, out);
+            } else if (Character.isSurrogate(c)) {
+                // like HttpUrl, an unpaired surrogate is written as an encoded '?'
+                appendPercentEncoded('?', out);
+            } else {
+                appendPercentEncoded(0xE0 | c >> 12, out);
+                appendPercentEncoded(0x80 | c >> 6 & 0x3F, out);
+                appendPercentEncoded(0x80 | c & 0x3F, out);
+            }
+            runStart = i + 1;
+        }
+        if (runStart == 0) {
+            out.append(text);
+        } else if (runStart < length) {
+            out.append(text, runStart, length);
+        }
+    }
+
+    private static void appendPercentEncoded(int b, Appendable out) throws IOException {
+        out.append('%').append(HEX_DIGITS[b >> 4 & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    private static String decode(String text, int start, int end, boolean plusIsSpace) {
+        int i = start;
+        while (i < end && text.charAt(i) != '%' && !(plusIsSpace && text.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return text.substring(start, end);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(end - start);
+        byte[] prefix = text.substring(start, i).getBytes(StandardCharsets.UTF_8);
+        bytes.write(prefix, 0, prefix.length);
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? Character.digit(text.charAt(i + 1), 16) : -1;
+                int low = high != -1 ? Character.digit(text.charAt(i + 2), 16) : -1;
+                if (low == -1) {
+                    throw new IllegalArgumentException("Invalid otpauth URI: invalid percent-encoding");
+                }
+                bytes.write(high << 4 | low);
+                i += 2;
+            } else if (c == '+' && plusIsSpace) {
+                bytes.write(' ');
+            } else if (c < 0x80) {
+                bytes.write(c);
+            } else {
+                int next = Character.isHighSurrogate(c) && i + 1 < end ? i + 2 : i + 1;
+                byte[] encoded = text.substring(i, next).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                i = next - 1;
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public static class Builder {
+
+        private Type type;
+        private String issuer;
+        private String accountName;
+        private String secret;
+        private Totp.Algorithm algorithm;
+        private int digits;
+        private long periodSeconds;
+        private long counter;
+
+        private Builder() {
+            this.type = Type.TOTP;
+            this.algorithm = DEFAULT_ALGORITHM;
+            this.digits = DEFAULT_DIGITS;
+            this.periodSeconds = DEFAULT_PERIOD_SECONDS;
+        }
+
+        /**
+         * Sets the type of the one-time passwords. Defaults to {@link Type#TOTP}.
+         *
+         * @param type the type
+         * @return this builder
+         */
+        public Builder type(Type type) {
+            if (type == null) {
+                throw new IllegalArgumentException("Invalid type");
+            }
+            this.type = type;
+            return this;
+        }
+
+        /**
+         * Sets the issuer of the account, written as the prefix of the label and as the issuer parameter
+         *
+         * @param issuer the issuer, usually the company or service name, or null for none
+         * @return this builder
+         */
+        public Builder issuer(String issuer) {
+            this.issuer = issuer;
+            return this;
+        }
+
+        /**
+         * Sets the name of the account, required
+         *
+         * @param accountName the user name or email of the account
+         * @return this builder
+         */
+        public Builder accountName(String accountName) {
+            if (accountName == null) {
+                throw new IllegalArgumentException("Invalid account name");
+            }
+            this.accountName = accountName;
+            return this;
+        }
+
+        /**
+         * Sets the Base32 secret, required
+         *
+         * @param secret the secret
+         * @return this builder
+         */
+        public Builder secret(String secret) {
+            if (secret == null || secret.isEmpty()) {
+                throw new IllegalArgumentException("Invalid secret");
+            }
+            this.secret = secret;
+            return this;
+        }
+
+        /**
+         * Sets the HMAC algorithm of the codes. Defaults to {@link Totp.Algorithm#SHA1}.
+         *
+         * @param algorithm the algorithm
+         * @return this builder
+         */
+        public Builder algorithm(Totp.Algorithm algorithm) {
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Invalid algorithm");
+            }
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * Sets the number of digits of the codes, from 6 to 9. Defaults to 6.
+         *
+         * @param digits the number of digits
+         * @return this builder
+         */
+        public Builder digits(int digits) {
+            if (digits < 6 || digits > 9) {
+                throw new IllegalArgumentException("Invalid digits: " + digits);
+            }
+            this.digits = digits;
+            return this;
+        }
+
+        /**
+         * Sets the period of the TOTP codes, a whole number of seconds. Defaults to 30 seconds.
+         *
+         * @param period the period
+         * @param unit   the unit of the period
+         * @return this builder
+         */
+        public Builder period(long period, TimeUnit unit) {
+            long millis = unit.toMillis(period);
+            if (millis < 1000 || millis % 1000 != 0) {
+                throw new IllegalArgumentException("Invalid period: " + period);
+            }
+            this.periodSeconds = millis / 1000;
+            return this;
+        }
+
+        /**
+         * Sets the initial counter of the HOTP codes. Defaults to 0.
+         *
+         * @param counter the counter
+         * @return this builder
+         */
+        public Builder counter(long counter) {
+            if (counter < 0) {
+                throw new IllegalArgumentException("Invalid counter: " + counter);
+            }
+            this.counter = counter;
+            return this;
+        }
+
+        public OtpAuthUri build() {
+            if (accountName == null) {
+                throw new IllegalArgumentException("Invalid account name");
+            }
+            if (secret == null) {
+                throw new IllegalArgumentException("Invalid secret");
+            }
+            return new OtpAuthUri(this);
+        }
+    }
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * The encoder is based on the QR Code generator library (Java), with this notice:
+ *
+ * Copyright (c) Project Nayuki. (MIT License)
+ * https://www.nayuki.io/page/qr-code-generator-library
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * - The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ * - The Software is provided "as is", without warranty of any kind, express or
+ *   implied, including but not limited to the warranties of merchantability,
+ *   fitness for a particular purpose and noninfringement. In no event shall the
+ *   authors or copyright holders be liable for any claim, damages or other
+ *   liability, whether in an action of contract, tort or otherwise, arising from,
+ *   out of or in connection with the Software or the use or other dealings in the
+ *   Software.
+ */
+
+package com.auth0.guardian;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The modules of a QR code (ISO/IEC 18004) encoding a text in byte mode, e.g. the URI of
+ * {@link Transaction#totpURI(String, String)}. The smallest version that fits the text at the error correction level
+ * is used, with the mask of the lowest penalty.
+ * <p>
+ * Render it with a {@link QrCodeRenderer}.
+ */
+public final class QrCode {
+
+    private static final int MIN_VERSION = 1;
+    private static final int MAX_VERSION = 40;
+
+    // indexed by the ordinal of the error correction level and by version
+    private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+            {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28,
+                    30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28,
+                    28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+            {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28,
+                    30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30,
+                    30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30}
+    };
+    private static final byte[][] NUM_ERROR_CORRECTION_BLOCKS = {
+            {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17,
+                    18, 19, 19, 20, 21, 22, 24, 25},
+            {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29,
+                    31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+            {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38,
+                    40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+            {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45,
+                    48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81}
+    };
+
+    private static final int PENALTY_N1 = 3;
+    private static final int PENALTY_N2 = 3;
+    private static final int PENALTY_N3 = 40;
+    private static final int PENALTY_N4 = 10;
+
+    // exponents and logarithms of GF(2^8) with the polynomial 0x11D, the exponents doubled to skip a modulo
+    private static final int[] GF_EXP = new int[512];
+    private static final int[] GF_LOG = new int[256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            GF_EXP[i] = x;
+            GF_LOG[x] = i;
+            x <<= 1;
+            if (x >= 0x100) {
+                x ^= 0x11D;
+            }
+        }
+        for (int i = 255; i < GF_EXP.length; i++) {
+            GF_EXP[i] = GF_EXP[i - 255];
+        }
+    }
+
+    /**
+     * The error correction levels, from the lowest to the highest share of damaged modules that can be recovered
+     */
+    public enum ErrorCorrection {
+        /**
+         * About 7% of the codewords can be recovered
+         */
+        L(1),
+        /**
+         * About 15% of the codewords can be recovered
+         */
+        M(0),
+        /**
+         * About 25% of the codewords can be recovered
+         */
+        Q(3),
+        /**
+         * About 30% of the codewords can be recovered
+         */
+        H(2);
+
+        private final int formatBits;
+
+        ErrorCorrection(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+
+    private final int version;
+    private final int size;
+    private final ErrorCorrection errorCorrection;
+    private final boolean[][] modules;
+    private final boolean[][] isFunction;
+    private final int mask;
+
+    private QrCode(int version, ErrorCorrection errorCorrection, byte[] dataCodewords, int mask) {
+        this.version = version;
+        this.size = version * 4 + 17;
+        this.errorCorrection = errorCorrection;
+        this.modules = new boolean[size][size];
+        this.isFunction = new boolean[size][size];
+
+        drawFunctionPatterns();
+        drawCodewords(addEccAndInterleave(dataCodewords));
+        this.mask = mask >= 0 ? mask : bestMask();
+        applyMask(this.mask);
+        drawFormatBits(this.mask);
+    }
+
+    /**
+     * Encodes a text in UTF-8
+     *
+     * @param text            the text to encode
+     * @param errorCorrection the error correction level
+     * @return the QR code
+     * @throws IllegalArgumentException when the text doesn't fit in a QR code at the error correction level
+     */
+    public static QrCode encode(String text, ErrorCorrection errorCorrection) throws IllegalArgumentException {
+        return encode(text, errorCorrection, -1);
+    }
+
+    static QrCode encode(String text, ErrorCorrection errorCorrection, int mask) {
+        if (text == null) {
+            throw new IllegalArgumentException("Invalid text");
+        }
+        if (errorCorrection == null) {
+            throw new IllegalArgumentException("Invalid error correction");
+        }
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        int version = MIN_VERSION;
+        while (dataBits(data.length, version) > numDataCodewords(version, errorCorrection) * 8) {
+            if (++version > MAX_VERSION) {
+                throw new IllegalArgumentException("Text too long for a QR code: " + data.length + " bytes");
+            }
+        }
+
+        // byte mode indicator, character count, data, terminator and padding
+        int capacity = numDataCodewords(version, errorCorrection);
+        BitBuffer bits = new BitBuffer(capacity);
+        bits.append(0x4, 4);
+        bits.append(data.length, characterCountBits(version));
+        for (byte b : data) {
+            bits.append(b & 0xFF, 8);
+        }
+        bits.append(0, Math.min(4, capacity * 8 - bits.length));
+        bits.append(0, (8 - bits.length % 8) % 8);
+        for (int pad = 0xEC; bits.length < capacity * 8; pad ^= 0xEC ^ 0x11) {
+            bits.append(pad, 8);
+        }
+        return new QrCode(version, errorCorrection, bits.bytes, mask);
+    }
+
+    private static int dataBits(int length, int version) {
+        return 4 + characterCountBits(version) + length * 8;
+    }
+
+    private static int characterCountBits(int version) {
+        return version <= 9 ? 8 : 16;
+    }
+
+    /**
+     * Returns the version, from 1 to 40
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of modules of a side, without a quiet zone
+     *
+     * @return the size, from 21 to 177
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public ErrorCorrection getErrorCorrection() {
+        return errorCorrection;
+    }
+
+    /**
+     * Returns the mask applied to the data modules, from 0 to 7
+     *
+     * @return the mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns whether a module is dark
+     *
+     * @param x the column, from the left
+     * @param y the row, from the top
+     * @return whether the module is dark, false outside of the code
+     */
+    public boolean isDark(int x, int y) {
+        return x >= 0 && x < size && y >= 0 && y < size && modules[y][x];
+    }
+
+    private void drawFunctionPatterns() {
+        for (int i = 0; i < size; i++) {
+            setFunctionModule(6, i, i % 2 == 0);
+            setFunctionModule(i, 6, i % 2 == 0);
+        }
+
+        drawFinderPattern(3, 3);
+        drawFinderPattern(size - 4, 3);
+        drawFinderPattern(3, size - 4);
+
+        int[] positions = alignmentPatternPositions();
+        int count = positions.length;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                // not over the finder patterns
+                if (!(i == 0 && j == 0 || i == 0 && j == count - 1 || i == count - 1 && j == 0)) {
+                    drawAlignmentPattern(positions[i], positions[j]);
+                }
+            }
+        }
+
+        // reserves the format modules, drawn again with the mask
+        drawFormatBits(0);
+        drawVersion();
+    }
+
+    private void drawFinderPattern(int x, int y) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                int xx = x + dx;
+                int yy = y + dy;
+                if (xx >= 0 && xx < size && yy >= 0 && yy < size) {
+                    setFunctionModule(xx, yy, distance != 2 && distance != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignmentPattern(int x, int y) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunctionModule(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private int[] alignmentPatternPositions() {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = (version * 8 + count * 3 + 5) / (count * 4 - 4) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = size - 7; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    private void drawFormatBits(int mask) {
+        // BCH(15, 5) code of the level and the mask
+        int data = errorCorrection.formatBits << 3 | mask;
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        int bits = (data << 10 | remainder) ^ 0x5412;
+
+        for (int i = 0; i <= 5; i++) {
+            setFunctionModule(8, i, bit(bits, i));
+        }
+        setFunctionModule(8, 7, bit(bits, 6));
+        setFunctionModule(8, 8, bit(bits, 7));
+        setFunctionModule(7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            setFunctionModule(14 - i, 8, bit(bits, i));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            setFunctionModule(size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunctionModule(8, size - 15 + i, bit(bits, i));
+        }
+        setFunctionModule(8, size - 8, true);
+    }
+
+    private void drawVersion() {
+        if (version < 7) {
+            return;
+        }
+        // BCH(18, 6) code of the version
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+        }
+        int bits = version << 12 | remainder;
+
+        for (int i = 0; i < 18; i++) {
+            boolean dark = bit(bits, i);
+            int a = size - 11 + i % 3;
+            int b = i / 3;
+            setFunctionModule(a, b, dark);
+            setFunctionModule(b, a, dark);
+        }
+    }
+
+    private void setFunctionModule(int x, int y, boolean dark) {
+        modules[y][x] = dark;
+        isFunction[y][x] = true;
+    }
+
+    private byte[] addEccAndInterleave(byte[] data) {
+        int numBlocks = NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+        int blockEccLength = ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version];
+        int rawCodewords = numRawDataModules(version) / 8;
+        int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+        int shortBlockLength = rawCodewords / numBlocks;
+
+        byte[] divisor = reedSolomonDivisor(blockEccLength);
+        byte[][] blocks = new byte[numBlocks][];
+        for (int i = 0, k = 0; i < numBlocks; i++) {
+            int dataLength = shortBlockLength - blockEccLength + (i < numShortBlocks ? 0 : 1);
+            // the short blocks get a placeholder byte, skipped when interleaving
+            byte[] block = new byte[shortBlockLength + 1];
+            System.arraycopy(data, k, block, 0, dataLength);
+            reedSolomonRemainder(data, k, dataLength, divisor, block, block.length - blockEccLength);
+            k += dataLength;
+            blocks[i] = block;
+        }
+
+        byte[] result = new byte[rawCodewords];
+        int index = 0;
+        for (int i = 0; i < shortBlockLength + 1; i++) {
+            for (int j = 0; j < numBlocks; j++) {
+                if (i != shortBlockLength - blockEccLength || j >= numShortBlocks) {
+                    result[index++] = blocks[j][i];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonDivisor(int degree) {
+        // the coefficients of (x - 2^0)(x - 2^1)...(x - 2^(degree - 1)), from the highest power, without the leading 1
+        byte[] result = new byte[degree];
+        result[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                int product = multiply(result[j] & 0xFF, root);
+                result[j] = (byte) (j + 1 < degree ? product ^ result[j + 1] : product);
+            }
+            root = multiply(root, 0x02);
+        }
+        return result;
+    }
+
+    private static void reedSolomonRemainder(byte[] data, int offset, int length, byte[] divisor,
+                                             byte[] out, int outOffset) {
+        int degree = divisor.length;
+        byte[] result = new byte[degree];
+        for (int i = offset; i < offset + length; i++) {
+            int factor = (data[i] ^ result[0]) & 0xFF;
+            System.arraycopy(result, 1, result, 0, degree - 1);
+            result[degree - 1] = 0;
+            if (factor != 0) {
+                int logFactor = GF_LOG[factor];
+                for (int j = 0; j < degree; j++) {
+                    int coefficient = divisor[j] & 0xFF;
+                    if (coefficient != 0) {
+                        result[j] ^= GF_EXP[GF_LOG[coefficient] + logFactor];
+                    }
+                }
+            }
+        }
+        System.arraycopy(result, 0, out, outOffset, degree);
+    }
+
+    private static int multiply(int x, int y) {
+        return x == 0 || y == 0 ? 0 : GF_EXP[GF_LOG[x] + GF_LOG[y]];
+    }
+
+    private void drawCodewords(byte[] data) {
+        int i = 0;
+        // zigzag in columns of two, from the bottom right, skipping the vertical timing pattern
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    if (!isFunction[y][x] && i < data.length * 8) {
+                        modules[y][x] = bit(data[i >>> 3], 7 - (i & 7));
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyMask(int mask) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean invert;
+                switch (mask) {
+                    case 0:
+                        invert = (x + y) % 2 == 0;
+                        break;
+                    case 1:
+                        invert = y % 2 == 0;
+                        break;
+                    case 2:
+                        invert = x % 3 == 0;
+                        break;
+                    case 3:
+                        invert = (x + y) % 3 == 0;
+                        break;
+                    case 4:
+                        invert = (x / 3 + y / 2) % 2 == 0;
+                        break;
+                    case 5:
+                        invert = x * y % 2 + x * y % 3 == 0;
+                        break;
+                    case 6:
+                        invert = (x * y % 2 + x * y % 3) % 2 == 0;
+                        break;
+                    default:
+                        invert = ((x + y) % 2 + x * y % 3) % 2 == 0;
+                        break;
+                }
+                modules[y][x] ^= invert & !isFunction[y][x];
+            }
+        }
+    }
+
+    private int bestMask() {
+        boolean[][] unmasked = new boolean[size][];
+        for (int y = 0; y < size; y++) {
+            unmasked[y] = modules[y].clone();
+        }
+
+        int best = 0;
+        int minPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            applyMask(mask);
+            drawFormatBits(mask);
+            int penalty = penaltyScore();
+            if (penalty < minPenalty) {
+                best = mask;
+                minPenalty = penalty;
+            }
+            // restoring is cheaper than masking again to undo it
+            for (int y = 0; y < size; y++) {
+                System.arraycopy(unmasked[y], 0, modules[y], 0, size);
+            }
+        }
+        return best;
+    }
+
+    private int penaltyScore() {
+        int result = 0;
+        int[] runHistory = new int[7];
+
+        for (int y = 0; y < size; y++) {
+            boolean runColor = false;
+            int run = 0;
+            Arrays.fill(runHistory, 0);
+            for (int x = 0; x < size; x++) {
+                if (modules[y][x] == runColor) {
+                    run++;
+                    if (run == 5) {
+                        result += PENALTY_N1;
+                    } else if (run > 5) {
+                        result++;
+                    }
+                } else {
+                    addRunToHistory(run, runHistory);
+                    if (!runColor) {
+                        result += countFinderLikePatterns(runHistory) * PENALTY_N3;
+                    }
+                    runColor = modules[y][x];
+                    run = 1;
+                }
+            }
+            result += terminateAndCountFinderLikePatterns(runColor, run, runHistory) * PENALTY_N3;
+        }
+
+        for (int x = 0; x < size; x++) {
+            boolean runColor = false;
+            int run = 0;
+            Arrays.fill(runHistory, 0);
+            for (int y = 0; y < size; y++) {
+                if (modules[y][x] == runColor) {
+                    run++;
+                    if (run == 5) {
+                        result += PENALTY_N1;
+                    } else if (run > 5) {
+                        result++;
+                    }
+                } else {
+                    addRunToHistory(run, runHistory);
+                    if (!runColor) {
+                        result += countFinderLikePatterns(runHistory) * PENALTY_N3;
+                    }
+                    runColor = modules[y][x];
+                    run = 1;
+                }
+            }
+            result += terminateAndCountFinderLikePatterns(runColor, run, runHistory) * PENALTY_N3;
+        }
+
+        for (int y = 0; y < size - 1; y++) {
+            for (int x = 0; x < size - 1; x++) {
+                boolean color = modules[y][x];
+                if (color == modules[y][x + 1] && color == modules[y + 1][x] && color == modules[y + 1][x + 1]) {
+                    result += PENALTY_N2;
+                }
+            }
+        }
+
+        int dark = 0;
+        for (boolean[] row : modules) {
+            for (boolean module : row) {
+                if (module) {
+                    dark++;
+                }
+            }
+        }
+        int total = size * size;
+        // the smallest k such that the dark share is within (45 - 5k)% and (55 + 5k)%
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        result += k * PENALTY_N4;
+        return result;
+    }
+
+    private int countFinderLikePatterns(int[] runHistory) {
+        int n = runHistory[1];
+        boolean core = n > 0 && runHistory[2] == n && runHistory[3] == n * 3 && runHistory[4] == n
+                && runHistory[5] == n;
+        return (core && runHistory[0] >= n * 4 && runHistory[6] >= n ? 1 : 0)
+                + (core && runHistory[6] >= n * 4 && runHistory[0] >= n ? 1 : 0);
+    }
+
+    private int terminateAndCountFinderLikePatterns(boolean runColor, int run, int[] runHistory) {
+        // the quiet zone is light
+        if (runColor) {
+            addRunToHistory(run, runHistory);
+            run = 0;
+        }
+        addRunToHistory(run + size, runHistory);
+        return countFinderLikePatterns(runHistory);
+    }
+
+    private void addRunToHistory(int run, int[] runHistory) {
+        if (runHistory[0] == 0) {
+            // the quiet zone is light
+            run += size;
+        }
+        // a loop is cheaper than an array copy for 7 elements, shifted once per run
+        for (int i = runHistory.length - 1; i > 0; i--) {
+            runHistory[i] = runHistory[i - 1];
+        }
+        runHistory[0] = run;
+    }
+
+    private static int numRawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            result -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    private static int numDataCodewords(int version, ErrorCorrection errorCorrection) {
+        return numRawDataModules(version) / 8
+                - ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version]
+                * NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+    }
+
+    private static boolean bit(int value, int index) {
+        return ((value >>> index) & 1) != 0;
+    }
+
+    /**
+     * Appends bits into the bytes of the data codewords, from the most significant
+     */
+    private static final class BitBuffer {
+
+        private final byte[] bytes;
+        private int length;
+
+        private BitBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void append(int value, int count) {
+            for (int i = count - 1; i >= 0; i--, length++) {
+                if (((value >>> i) & 1) != 0) {
+                    bytes[length >>> 3] |= 0x80 >>> (length & 7);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders QR codes, e.g. of the URI of {@link Transaction#totpURI(String, String)}, to PNG images or SVG documents
+ * without a separate service.
+ * <p>
+ * The PNG images are black and white with 1 bit per pixel, and the SVG documents draw the dark modules as a single
+ * path. Both have a light quiet zone around the code. An instance is thread-safe and meant to be shared.
+ * <p>
+ * The renders of the last texts can be kept in a bounded cache, so showing the same enrollment again doesn't encode it
+ * again; see {@link Builder#cacheSize(int)}. The cache is keyed by the SHA-256 digest of the text, but the renders
+ * encode the text, e.g. the TOTP secret of the URI, so it's disabled by default.
+ */
+public class QrCodeRenderer {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final QrCode.ErrorCorrection errorCorrection;
+    private final int moduleSize;
+    private final int quietZone;
+    private final LruCache<byte[]> pngs;
+    private final LruCache<String> svgs;
+
+    private QrCodeRenderer(Builder builder) {
+        this.errorCorrection = builder.errorCorrection;
+        this.moduleSize = builder.moduleSize;
+        this.quietZone = builder.quietZone;
+        this.pngs = new LruCache<>(builder.cacheSize);
+        this.svgs = new LruCache<>(builder.cacheSize);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Renders the QR code of a text to a PNG image
+     *
+     * @param text the text to encode
+     * @return the bytes of the PNG image
+     * @throws IllegalArgumentException when the text doesn't fit in a QR code at the error correction level
+     */
+    public byte[] png(String text) throws IllegalArgumentException {
+        ByteBuffer key = pngs.isEnabled() ? digest(text) : null;
+        byte[] png = key != null ? pngs.get(key) : null;
+        if (png == null) {
+            png = renderPng(QrCode.encode(text, errorCorrection));
+            if (key != null) {
+                pngs.put(key, png);
+            }
+        }
+        // the cached bytes are not exposed to changes
+        return png.clone();
+    }
+
+    /**
+     * Renders the QR code of a text to an SVG document
+     *
+     * @param text the text to encode
+     * @return the SVG document
+     * @throws IllegalArgumentException when the text doesn't fit in a QR code at the error correction level
+     */
+    public String svg(String text) throws IllegalArgumentException {
+        ByteBuffer key = svgs.isEnabled() ? digest(text) : null;
+        String svg = key != null ? svgs.get(key) : null;
+        if (svg == null) {
+            svg = renderSvg(QrCode.encode(text, errorCorrection));
+            if (key != null) {
+                svgs.put(key, svg);
+            }
+        }
+        return svg;
+    }
+
+    private static ByteBuffer digest(String text) {
+        if (text == null) {
+            // encoding fails with the usual message
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    byte[] renderPng(QrCode qrCode) {
+        int modules = qrCode.getSize() + quietZone * 2;
+        int width = modules * moduleSize;
+        int rowLength = 1 + (width + 7) / 8;
+
+        // a filter type byte and 1 bit per pixel, set when light; each module row is repeated for its height
+        byte[] pixels = new byte[rowLength * width];
+        byte[] row = new byte[rowLength];
+        for (int y = 0; y < modules; y++) {
+            for (int i = 1; i < rowLength; i++) {
+                row[i] = (byte) 0xFF;
+            }
+            for (int x = 0; x < modules; x++) {
+                if (qrCode.isDark(x - quietZone, y - quietZone)) {
+                    for (int px = x * moduleSize; px < (x + 1) * moduleSize; px++) {
+                        row[1 + (px >>> 3)] &= ~(0x80 >>> (px & 7));
+                    }
+                }
+            }
+            for (int i = 0; i < moduleSize; i++) {
+                System.arraycopy(row, 0, pixels, (y * moduleSize + i) * rowLength, rowLength);
+            }
+        }
+
+        // the native memory of zlib is released right away, not when the deflater is finalized
+        Deflater deflater = new Deflater();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(pixels.length / 8 + 64);
+        try {
+            deflater.setInput(pixels);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, width);
+        // bit depth 1, grayscale, deflate, no filter, no interlace
+        header[8] = 1;
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(compressed.size() + 64);
+        png.write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+        writeChunk(png, "IHDR", header);
+        writeChunk(png, "IDAT", compressed.toByteArray());
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        byte[] number = new byte[4];
+        writeInt(number, 0, data.length);
+        out.write(number, 0, 4);
+        out.write(typeBytes, 0, 4);
+        out.write(data, 0, data.length);
+        writeInt(number, 0, (int) crc.getValue());
+        out.write(number, 0, 4);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    String renderSvg(QrCode qrCode) {
+        int modules = qrCode.getSize() + quietZone * 2;
+        int width = modules * moduleSize;
+        StringBuilder svg = new StringBuilder(qrCode.getSize() * qrCode.getSize() * 4 + 256)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 ")
+                .append(modules).append(' ').append(modules)
+                .append("\" width=\"").append(width).append("\" height=\"").append(width)
+                .append("\" shape-rendering=\"crispEdges\">\n")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n")
+                .append("<path fill=\"#000000\" d=\"");
+
+        // a rectangle for each horizontal run of dark modules
+        boolean first = true;
+        for (int y = 0; y < qrCode.getSize(); y++) {
+            for (int x = 0; x < qrCode.getSize(); x++) {
+                if (!qrCode.isDark(x, y)) {
+                    continue;
+                }
+                int run = 1;
+                while (qrCode.isDark(x + run, y)) {
+                    run++;
+                }
+                if (!first) {
+                    svg.append(' ');
+                }
+                first = false;
+                svg.append('M').append(x + quietZone).append(',').append(y + quietZone)
+                        .append('h').append(run).append("v1h-").append(run).append('z');
+                x += run;
+            }
+        }
+        return svg.append("\"/>\n</svg>\n").toString();
+    }
+
+    /**
+     * Keeps the values of the most recently used text digests
+     */
+    private static final class LruCache<V> {
+
+        private final int capacity;
+        private final Map<ByteBuffer, V> values;
+
+        private LruCache(final int capacity) {
+            this.capacity = capacity;
+            this.values = new LinkedHashMap<ByteBuffer, V>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, V> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private boolean isEnabled() {
+            return capacity > 0;
+        }
+
+        private synchronized V get(ByteBuffer digest) {
+            return values.get(digest);
+        }
+
+        private synchronized void put(ByteBuffer digest, V value) {
+            values.put(digest, value);
+        }
+    }
+
+    public static class Builder {
+
+        private QrCode.ErrorCorrection errorCorrection = QrCode.ErrorCorrection.M;
+        private int moduleSize = 4;
+        private int quietZone = 4;
+        private int cacheSize = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the error correction level. Defaults to {@link QrCode.ErrorCorrection#M}.
+         *
+         * @param errorCorrection the error correction level
+         * @return this builder
+         */
+        public Builder errorCorrection(QrCode.ErrorCorrection errorCorrection) {
+            if (errorCorrection == null) {
+                throw new IllegalArgumentException("Invalid error correction");
+            }
+            this.errorCorrection = errorCorrection;
+            return this;
+        }
+
+        /**
+         * Sets the width and height of a module, in pixels of the PNG image and of the SVG document. Defaults to 4.
+         *
+         * @param moduleSize the size of a module
+         * @return this builder
+         */
+        public Builder moduleSize(int moduleSize) {
+            if (moduleSize < 1 || moduleSize > 64) {
+                throw new IllegalArgumentException("Invalid module size: " + moduleSize);
+            }
+            this.moduleSize = moduleSize;
+            return this;
+        }
+
+        /**
+         * Sets the width of the light border around the code, in modules. Defaults to 4, the minimum of the standard.
+         *
+         * @param quietZone the width of the border
+         * @return this builder
+         */
+        public Builder quietZone(int quietZone) {
+            if (quietZone < 0 || quietZone > 64) {
+                throw new IllegalArgumentException("Invalid quiet zone: " + quietZone);
+            }
+            this.quietZone = quietZone;
+            return this;
+        }
+
+        /**
+         * Sets how many renders of each format are cached, the least recently used are dropped. Defaults to 0, no
+         * cache. The cached renders encode their texts, e.g. the TOTP secrets of the URIs, and stay in memory until
+         * they're dropped, while only the SHA-256 digests of the texts are kept as keys.
+         *
+         * @param cacheSize the number of renders
+         * @return this builder
+         */
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize < 0) {
+                throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        public QrCodeRenderer build() {
+            return new QrCodeRenderer(this);
+        }
+    }
+}
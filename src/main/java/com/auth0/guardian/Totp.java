@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates and verifies the RFC 6238 time-based one-time passwords of a TOTP enrollment, from the Base32 secret of
+ * {@link Transaction#getTotpSecret()}, e.g. to confirm enrollments from provisioning tools or to check the format and
+ * value of a code before sending it to the Guardian server.
+ * <p>
+ * Each thread reuses its own {@link Mac}, initialized again only when the secret changes, and decodes the secret into
+ * its own buffer, so generating codes for the same secret doesn't allocate besides the returned string. An instance
+ * is thread-safe and meant to be shared.
+ */
+public class Totp {
+
+    private static final int[] POWERS_OF_TEN = {
+            1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000
+    };
+
+    /**
+     * The HMAC algorithms of the codes
+     */
+    public enum Algorithm {
+        SHA1("HmacSHA1"),
+        SHA256("HmacSHA256"),
+        SHA512("HmacSHA512");
+
+        private final String macAlgorithm;
+
+        Algorithm(String macAlgorithm) {
+            this.macAlgorithm = macAlgorithm;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final int digits;
+    private final long periodMillis;
+    private final int skew;
+    private final ThreadLocal<MacState> states;
+
+    private Totp(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.digits = builder.digits;
+        this.periodMillis = builder.periodMillis;
+        this.skew = builder.skew;
+        this.states = new ThreadLocal<MacState>() {
+            @Override
+            protected MacState initialValue() {
+                return new MacState(newMac());
+            }
+        };
+        // fails now when the platform doesn't have the algorithm
+        states.get();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private Mac newMac() {
+        try {
+            return Mac.getInstance(algorithm.macAlgorithm);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("The platform doesn't support " + algorithm.macAlgorithm, e);
+        }
+    }
+
+    /**
+     * Generates the code for the current time
+     *
+     * @param secret the Base32 secret
+     * @return the code, padded with zeros to the number of digits
+     * @throws IllegalArgumentException when the secret is not valid Base32
+     */
+    public String generate(String secret) throws IllegalArgumentException {
+        return generate(secret, System.currentTimeMillis());
+    }
+
+    /**
+     * Generates the code for a time
+     *
+     * @param secret     the Base32 secret
+     * @param timeMillis the time, in milliseconds since the epoch
+     * @return the code, padded with zeros to the number of digits
+     * @throws IllegalArgumentException when the secret is not valid Base32 or the time is negative
+     */
+    public String generate(String secret, long timeMillis) throws IllegalArgumentException {
+        int code = generateCode(secret, timeMillis);
+        char[] chars = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + code % 10);
+            code /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Generates the code for a time as a number, without the allocation of the string
+     *
+     * @param secret     the Base32 secret
+     * @param timeMillis the time, in milliseconds since the epoch
+     * @return the code
+     * @throws IllegalArgumentException when the secret is not valid Base32 or the time is negative
+     */
+    public int generateCode(String secret, long timeMillis) throws IllegalArgumentException {
+        return generateCode(states.get().init(secret), counter(timeMillis));
+    }
+
+    /**
+     * Verifies a code for the current time, accepting the codes of the steps within the skew
+     *
+     * @param secret the Base32 secret
+     * @param code   the code to verify
+     * @return whether the code is valid
+     * @throws IllegalArgumentException when the secret is not valid Base32
+     */
+    public boolean verify(String secret, String code) throws IllegalArgumentException {
+        return verify(secret, code, System.currentTimeMillis());
+    }
+
+    /**
+     * Verifies a code for a time, accepting the codes of the steps within the skew
+     *
+     * @param secret     the Base32 secret
+     * @param code       the code to verify
+     * @param timeMillis the time, in milliseconds since the epoch
+     * @return whether the code is valid, false when it doesn't have the number of digits
+     * @throws IllegalArgumentException when the secret is not valid Base32 or the time is negative
+     */
+    public boolean verify(String secret, String code, long timeMillis) throws IllegalArgumentException {
+        long counter = counter(timeMillis);
+        MacState state = states.get().init(secret);
+
+        int expected = parseCode(code);
+        if (expected < 0) {
+            return false;
+        }
+        for (int step = -skew; step <= skew; step++) {
+            if (counter + step >= 0 && generateCode(state, counter + step) == expected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long counter(long timeMillis) {
+        if (timeMillis < 0) {
+            throw new IllegalArgumentException("Invalid time: " + timeMillis);
+        }
+        return timeMillis / periodMillis;
+    }
+
+    private int parseCode(String code) {
+        if (code == null || code.length() != digits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private int generateCode(MacState state, long counter) {
+        byte[] message = state.message;
+        for (int i = 7; i >= 0; i--) {
+            message[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        byte[] hash = state.hash;
+        try {
+            state.mac.update(message);
+            state.mac.doFinal(hash, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // dynamic truncation of RFC 4226
+        int offset = hash[hash.length - 1] & 0xf;
+        int binary = ((hash[offset] & 0x7f) << 24)
+                | ((hash[offset + 1] & 0xff) << 16)
+                | ((hash[offset + 2] & 0xff) << 8)
+                | (hash[offset + 3] & 0xff);
+        return binary % POWERS_OF_TEN[digits];
+    }
+
+    /**
+     * The {@link Mac} of a thread, with the buffers of its messages and hashes and the secret it was initialized with
+     */
+    private static final class MacState {
+
+        private final Mac mac;
+        private final byte[] message = new byte[8];
+        private final byte[] hash;
+        private byte[] key = new byte[32];
+        private String secret;
+
+        private MacState(Mac mac) {
+            this.mac = mac;
+            this.hash = new byte[mac.getMacLength()];
+        }
+
+        private MacState init(String secret) {
+            if (secret == null) {
+                throw new IllegalArgumentException("Invalid secret");
+            }
+            if (secret.equals(this.secret)) {
+                return this;
+            }
+
+            int maxLength = Base32.maxDecodedLength(secret.length());
+            if (key.length < maxLength) {
+                key = new byte[maxLength];
+            }
+            int length = Base32.decode(secret, key);
+            if (length == 0) {
+                throw new IllegalArgumentException("Invalid secret");
+            }
+            try {
+                mac.init(new SecretKeySpec(key, 0, length, mac.getAlgorithm()));
+            } catch (InvalidKeyException e) {
+                throw new IllegalArgumentException("Invalid secret", e);
+            }
+            this.secret = secret;
+            return this;
+        }
+    }
+
+    public static class Builder {
+
+        private Algorithm algorithm = Algorithm.SHA1;
+        private int digits = 6;
+        private long periodMillis = TimeUnit.SECONDS.toMillis(30);
+        private int skew = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the HMAC algorithm. Defaults to {@link Algorithm#SHA1}, the one of the Guardian enrollments.
+         *
+         * @param algorithm the algorithm
+         * @return this builder
+         */
+        public Builder algorithm(Algorithm algorithm) {
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Invalid algorithm");
+            }
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * Sets the number of digits of the codes, from 6 to 9. Defaults to 6.
+         *
+         * @param digits the number of digits
+         * @return this builder
+         */
+        public Builder digits(int digits) {
+            if (digits < 6 || digits >= POWERS_OF_TEN.length) {
+                throw new IllegalArgumentException("Invalid digits: " + digits);
+            }
+            this.digits = digits;
+            return this;
+        }
+
+        /**
+         * Sets the time step of the codes, in whole seconds. Defaults to 30 seconds.
+         *
+         * @param period the time step
+         * @param unit   the unit of the time step
+         * @return this builder
+         */
+        public Builder period(long period, TimeUnit unit) {
+            long millis = unit.toMillis(period);
+            if (millis < 1000 || millis % 1000 != 0) {
+                throw new IllegalArgumentException("Invalid period: " + period);
+            }
+            this.periodMillis = millis;
+            return this;
+        }
+
+        /**
+         * Sets how many steps before and after the current one are also accepted when verifying, to tolerate the
+         * clock drift of the devices and the time to enter the code. Defaults to 1.
+         *
+         * @param skew the number of steps
+         * @return this builder
+         */
+        public Builder skew(int skew) {
+            if (skew < 0) {
+                throw new IllegalArgumentException("Invalid skew: " + skew);
+            }
+            this.skew = skew;
+            return this;
+        }
+
+        public Totp build() {
+            return new Totp(this);
+        }
+    }
+}
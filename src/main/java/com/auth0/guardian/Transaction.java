@@ -22,8 +22,6 @@
 
 package com.auth0.guardian;
 
-import okhttp3.HttpUrl;
-
 import java.io.Serializable;
 
 /**
@@ -77,18 +75,16 @@ public class Transaction implements Serializable {
      * @param user   the user name or email of the account
      * @param issuer the issuer of the account, usually the company or service name
      * @return the TOTP URI
-     * @throws IllegalStateException when there is no OTP secret
+     * @throws IllegalStateException    when there is no OTP secret
+     * @throws IllegalArgumentException when the user is null
+     * @see OtpAuthUri for the algorithm, digits and period parameters
      */
-    public String totpURI(String user, String issuer) throws IllegalStateException {
-        // use HttpUrl to build the URI, java.net.URL really sucks
-        return new HttpUrl.Builder()
-                .scheme("https") // HttpUrl only allows http/https so I replace it afterwards
-                .host("totp")
-                .addPathSegment(String.format("%s:%s", issuer, user))
-                .addQueryParameter("secret", getTotpSecret())
-                .addQueryParameter("issuer", issuer)
+    public String totpURI(String user, String issuer) throws IllegalStateException, IllegalArgumentException {
+        return OtpAuthUri.newBuilder()
+                .issuer(issuer)
+                .accountName(user)
+                .secret(getTotpSecret())
                 .build()
-                .toString()
-                .replaceFirst("https", "otpauth"); // replace scheme
+                .toString();
     }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight to a limit that adapts to the latency of the server, so a shared client gets
+ * the most throughput without building a queue on the server.
+ * <p>
+ * The limit follows a Vegas-style control: the lowest round trip time seen is the latency without queueing, and each
+ * response estimates how many requests are waiting in the server as {@code limit * (1 - minRtt / rtt)}. While that
+ * estimate is below {@code alpha} the limit grows by one, above {@code beta} it shrinks by one, and a dropped request
+ * (an {@link IOException}, 429 or 503) cuts it by 10%. The lowest round trip time is measured again every probe
+ * interval, so the limit follows the server when its latency changes for good. Samples taken while less than half of
+ * the limit is used don't grow it.
+ * <p>
+ * Requests over the limit are rejected right away with a {@code GuardianException} whose
+ * {@code isConcurrencyLimited()} returns true, or wait up to the max wait for a request to finish. Taking and
+ * releasing a slot is lock-free; the lock is only taken to wake up waiting requests.
+ * <p>
+ * Install it as an application interceptor (see {@code Guardian.Builder#concurrencyLimiter}). It applies to all the
+ * requests of the client. With asynchronous requests the wait happens on a thread of the dispatcher.
+ */
+public class AdaptiveConcurrencyLimiter implements Interceptor {
+
+    private static final double DROP_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int alpha;
+    private final int beta;
+    private final long maxWaitNanos;
+    private final long probeIntervalNanos;
+    private final Ticker ticker;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private volatile int limit;
+    // guarded by this
+    private long minRttNanos = Long.MAX_VALUE;
+    private long minRttMeasuredAtNanos;
+
+    private AdaptiveConcurrencyLimiter(Builder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.alpha = builder.alpha;
+        this.beta = builder.beta;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.probeIntervalNanos = builder.probeIntervalNanos;
+        this.ticker = builder.ticker;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+        this.minRttMeasuredAtNanos = ticker.nanoTime();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the current limit of requests in flight
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of requests in flight
+     *
+     * @return the requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (WarmingRequest.isWarming(chain.request())) {
+            // warm-up and keep-warm requests neither take a slot nor feed the latency samples of the limit
+            return chain.proceed(chain.request());
+        }
+        acquire();
+
+        int inFlightAtStart = inFlight.get();
+        long start = ticker.nanoTime();
+        boolean dropped = true;
+        try {
+            Response response = chain.proceed(chain.request());
+            int code = response.code();
+            dropped = code == 429 || code == 503;
+            return response;
+        } finally {
+            release();
+            onSample(ticker.nanoTime() - start, inFlightAtStart, dropped);
+        }
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        long now = ticker.nanoTime();
+        if (now - minRttMeasuredAtNanos >= probeIntervalNanos) {
+            minRttNanos = Long.MAX_VALUE;
+            minRttMeasuredAtNanos = now;
+        }
+
+        int current = limit;
+        int next;
+        if (dropped) {
+            next = (int) (current * DROP_FACTOR);
+        } else {
+            if (rttNanos < minRttNanos) {
+                minRttNanos = Math.max(1, rttNanos);
+            }
+            if (inFlightAtStart * 2 < current) {
+                // not enough load to tell whether the limit is too low
+                return;
+            }
+            double queue = Math.ceil(current * (1 - (double) minRttNanos / Math.max(rttNanos, minRttNanos)));
+            if (queue < alpha) {
+                next = current + 1;
+            } else if (queue > beta) {
+                next = current - 1;
+            } else {
+                return;
+            }
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void acquire() throws IOException {
+        if (tryAcquire()) {
+            return;
+        }
+        if (maxWaitNanos <= 0) {
+            throw rejected();
+        }
+
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            long remainingNanos = maxWaitNanos;
+            while (!tryAcquire()) {
+                if (remainingNanos <= 0) {
+                    throw rejected();
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private RejectedCallException rejected() {
+        return new RejectedCallException(GuardianException.ERROR_CONCURRENCY_LIMITED,
+                "Concurrency limit of " + limit + " requests in flight exceeded");
+    }
+
+    public static class Builder {
+
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private int alpha = 3;
+        private int beta = 6;
+        private long maxWaitNanos;
+        private long probeIntervalNanos = TimeUnit.SECONDS.toNanos(60);
+        private Ticker ticker = Ticker.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the limit used until the latency is measured. Defaults to 20.
+         *
+         * @param limit the initial limit
+         * @return this builder
+         */
+        public Builder initialLimit(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Invalid initial limit: " + limit);
+            }
+            this.initialLimit = limit;
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the limit. Defaults to 1 and 200.
+         *
+         * @param minLimit the lowest limit
+         * @param maxLimit the highest limit
+         * @return this builder
+         */
+        public Builder limitBounds(int minLimit, int maxLimit) {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("Invalid limit bounds: " + minLimit + ", " + maxLimit);
+            }
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets the estimated number of queued requests below which the limit grows ({@code alpha}) and above which it
+         * shrinks ({@code beta}). Defaults to 3 and 6.
+         *
+         * @param alpha the queue size below which the limit grows
+         * @param beta  the queue size above which the limit shrinks
+         * @return this builder
+         */
+        public Builder queueThresholds(int alpha, int beta) {
+            if (alpha < 0 || beta < alpha) {
+                throw new IllegalArgumentException("Invalid queue thresholds: " + alpha + ", " + beta);
+            }
+            this.alpha = alpha;
+            this.beta = beta;
+            return this;
+        }
+
+        /**
+         * Sets how long a request can wait for a slot before being rejected. Defaults to 0, so requests over the
+         * limit are rejected right away.
+         *
+         * @param maxWait the maximum wait
+         * @param unit    the unit of the wait
+         * @return this builder
+         */
+        public Builder maxWait(long maxWait, TimeUnit unit) {
+            if (maxWait < 0) {
+                throw new IllegalArgumentException("Invalid max wait: " + maxWait);
+            }
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        /**
+         * Sets how often the lowest round trip time is measured again. Defaults to 60 seconds.
+         *
+         * @param interval the probe interval
+         * @param unit     the unit of the interval
+         * @return this builder
+         */
+        public Builder probeInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("Invalid probe interval: " + interval);
+            }
+            this.probeIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimiter build() {
+            return new AdaptiveConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.Dns;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves host names through another {@link Dns} and caches the addresses, so the requests don't wait for the
+ * resolver. The addresses are resolved again in the background before they expire, so a host in use is never resolved
+ * on the path of a request; when the background resolution fails the cached addresses are kept until they expire.
+ * <p>
+ * OkHttp tries the addresses one after the other, in the order they are returned. With address racing, when a host
+ * has both IPv6 and IPv4 addresses the first address of each family is raced with a TCP connection, starting the
+ * second one after a short delay like Happy Eyeballs (RFC 8305), and the family that connects first goes first.
+ * The rest of the addresses are interleaved by family, so a broken family only costs one attempt. The race runs when
+ * the addresses are resolved, which is in the background once the host is cached.
+ * <p>
+ * Set it on the client with {@code Guardian.Builder#dns}.
+ */
+public class CachingDns implements Dns {
+
+    // past it the resolution is not delayed any longer, OkHttp still connects with its own timeout
+    private static final int RACE_CONNECT_TIMEOUT_MILLIS = 2000;
+
+    private final Dns delegate;
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final int racePort;
+    private final long raceDelayNanos;
+    private final Executor executor;
+    private final Ticker ticker;
+    private final ConcurrentMap<String, Entry> cache;
+
+    private CachingDns(Builder builder) {
+        this.delegate = builder.delegate;
+        this.ttlNanos = builder.ttlNanos;
+        this.refreshAheadNanos = builder.refreshAheadNanos;
+        this.racePort = builder.racePort;
+        this.raceDelayNanos = builder.raceDelayNanos;
+        this.executor = builder.executor != null ? builder.executor : defaultExecutor();
+        this.ticker = builder.ticker;
+        this.cache = new ConcurrentHashMap<>();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static Executor defaultExecutor() {
+        // threads are only created to refresh and race, and go away when idle
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Guardian CachingDns");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = ticker.nanoTime();
+        Entry entry = cache.get(hostname);
+        if (entry != null && now < entry.expiresAtNanos) {
+            if (now >= entry.expiresAtNanos - refreshAheadNanos && entry.refreshing.compareAndSet(false, true)) {
+                refreshInBackground(hostname, entry);
+            }
+            return entry.addresses;
+        }
+        return resolve(hostname);
+    }
+
+    /**
+     * Removes the cached addresses of all the hosts
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+        List<InetAddress> addresses = order(delegate.lookup(hostname));
+        cache.put(hostname, new Entry(addresses, ticker.nanoTime() + ttlNanos));
+        return addresses;
+    }
+
+    private void refreshInBackground(final String hostname, final Entry entry) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        resolve(hostname);
+                    } catch (UnknownHostException | RuntimeException e) {
+                        // keeps the cached addresses until they expire, a later lookup tries again
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected by the executor
+            entry.refreshing.set(false);
+        }
+    }
+
+    private List<InetAddress> order(List<InetAddress> addresses) {
+        if (racePort < 0) {
+            return Collections.unmodifiableList(new ArrayList<>(addresses));
+        }
+
+        List<InetAddress> ipv6 = new ArrayList<>();
+        List<InetAddress> ipv4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            (address instanceof Inet6Address ? ipv6 : ipv4).add(address);
+        }
+        if (ipv6.isEmpty() || ipv4.isEmpty()) {
+            return Collections.unmodifiableList(new ArrayList<>(addresses));
+        }
+
+        // the preferred family of the resolver goes first, unless the other one wins the race
+        boolean ipv6First = addresses.get(0) instanceof Inet6Address;
+        List<InetAddress> first = ipv6First ? ipv6 : ipv4;
+        List<InetAddress> second = ipv6First ? ipv4 : ipv6;
+        InetAddress winner = race(first.get(0), second.get(0));
+        if (winner == second.get(0)) {
+            List<InetAddress> swap = first;
+            first = second;
+            second = swap;
+        }
+
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                ordered.add(first.get(i));
+            }
+            if (i < second.size()) {
+                ordered.add(second.get(i));
+            }
+        }
+        return Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * Connects to both addresses, the second one after the race delay unless the first one already failed, and
+     * returns the first one that connects, or null when none does
+     */
+    InetAddress race(InetAddress first, InetAddress second) {
+        ExecutorCompletionService<InetAddress> race = new ExecutorCompletionService<>(executor);
+        List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>(2));
+        try {
+            race.submit(connect(first, sockets));
+            Future<InetAddress> done = race.poll(raceDelayNanos, TimeUnit.NANOSECONDS);
+            if (done != null && winnerOf(done) != null) {
+                return first;
+            }
+            race.submit(connect(second, sockets));
+            for (int pending = done != null ? 1 : 2; pending > 0; pending--) {
+                InetAddress winner = winnerOf(race.take());
+                if (winner != null) {
+                    return winner;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RuntimeException e) {
+            // rejected by the executor, the resolver order is kept
+            return null;
+        } finally {
+            // also aborts the attempt that is still connecting
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    closeQuietly(socket);
+                }
+            }
+        }
+    }
+
+    private Callable<InetAddress> connect(final InetAddress address, final List<Socket> sockets) {
+        return new Callable<InetAddress>() {
+            @Override
+            public InetAddress call() {
+                Socket socket = new Socket();
+                sockets.add(socket);
+                try {
+                    socket.connect(new InetSocketAddress(address, racePort), RACE_CONNECT_TIMEOUT_MILLIS);
+                    return address;
+                } catch (IOException e) {
+                    return null;
+                } finally {
+                    closeQuietly(socket);
+                }
+            }
+        };
+    }
+
+    private static InetAddress winnerOf(Future<InetAddress> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Entry {
+
+        final List<InetAddress> addresses;
+        final long expiresAtNanos;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<InetAddress> addresses, long expiresAtNanos) {
+            this.addresses = addresses;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    public static class Builder {
+
+        private Dns delegate = Dns.SYSTEM;
+        private long ttlNanos = TimeUnit.SECONDS.toNanos(60);
+        private long refreshAheadNanos = TimeUnit.SECONDS.toNanos(10);
+        private int racePort = -1;
+        private long raceDelayNanos;
+        private Executor executor;
+        private Ticker ticker = Ticker.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the resolver of the host names. Defaults to {@link Dns#SYSTEM}.
+         *
+         * @param delegate the resolver
+         * @return this builder
+         */
+        public Builder delegate(Dns delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Invalid delegate");
+            }
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets how long the addresses of a host are cached. Defaults to 60 seconds.
+         *
+         * @param ttl  the time to live of the addresses
+         * @param unit the unit of the time to live
+         * @return this builder
+         */
+        public Builder ttl(long ttl, TimeUnit unit) {
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("Invalid ttl: " + ttl);
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Sets how long before they expire the addresses of a host in use are resolved again in the background.
+         * Defaults to 10 seconds. Use 0 to only resolve them again after they expire.
+         *
+         * @param refreshAhead the time before the expiration
+         * @param unit         the unit of the time
+         * @return this builder
+         */
+        public Builder refreshAhead(long refreshAhead, TimeUnit unit) {
+            if (refreshAhead < 0) {
+                throw new IllegalArgumentException("Invalid refresh ahead: " + refreshAhead);
+            }
+            this.refreshAheadNanos = unit.toNanos(refreshAhead);
+            return this;
+        }
+
+        /**
+         * Races a connection to the first IPv6 and IPv4 addresses of a host to decide which family goes first. By
+         * default the order of the resolver is kept.
+         *
+         * @param port  the port to connect to, e.g. 443 for the Guardian server
+         * @param delay the delay before connecting to the second family, 250ms is the delay recommended by RFC 8305
+         * @param unit  the unit of the delay
+         * @return this builder
+         */
+        public Builder raceAddressFamilies(int port, long delay, TimeUnit unit) {
+            if (port < 1 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port: " + port);
+            }
+            if (delay < 0) {
+                throw new IllegalArgumentException("Invalid delay: " + delay);
+            }
+            this.racePort = port;
+            this.raceDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets the executor that resolves the hosts in the background and connects the races, which needs two threads
+         * at once. By default threads are created when needed and go away when idle.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Invalid executor");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CachingDns build() {
+            if (refreshAheadNanos >= ttlNanos) {
+                throw new IllegalArgumentException("Invalid refresh ahead: it must be less than the ttl");
+            }
+            return new CachingDns(this);
+        }
+    }
+}
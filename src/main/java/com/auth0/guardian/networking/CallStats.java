@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+/**
+ * The details of a completed Guardian request, reported to {@link GuardianMetrics#onCall(CallStats)}. An instance is
+ * only created for each request when metrics are enabled.
+ */
+public final class CallStats {
+
+    private final Endpoint endpoint;
+    private final long startNanos;
+
+    private int statusCode = -1;
+    private String errorCode;
+    private long durationNanos;
+    private long parseNanos;
+    private long bytesSent;
+    private long bytesReceived;
+    private boolean connectionReused;
+
+    CallStats(Endpoint endpoint, long startNanos) {
+        this.endpoint = endpoint;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Returns the endpoint of the request
+     *
+     * @return the endpoint, or null if the request wasn't tagged with one
+     */
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the status code of the response
+     *
+     * @return the status code, or -1 if there was no response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the error code of the {@code GuardianException} of the request
+     *
+     * @return the error code, or null
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the duration of the request, including its retries and the parsing of the response
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Returns the time spent parsing the JSON of the response
+     *
+     * @return the parse time in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Returns the time spent on the network, which is the duration of the request without the parse time
+     *
+     * @return the network time in nanoseconds
+     */
+    public long getNetworkNanos() {
+        return durationNanos - parseNanos;
+    }
+
+    /**
+     * Returns the number of bytes of the request body that were sent, in all the attempts
+     *
+     * @return the bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the number of bytes of the response body that were received
+     *
+     * @return the bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Whether the request was sent on a pooled connection instead of a new one
+     *
+     * @return true if the connection was reused
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    void addParseNanos(long nanos) {
+        parseNanos += nanos;
+    }
+
+    void addBytesSent(long bytes) {
+        bytesSent += bytes;
+    }
+
+    void addBytesReceived(long bytes) {
+        bytesReceived += bytes;
+    }
+
+    void setConnectionReused(boolean connectionReused) {
+        this.connectionReused = connectionReused;
+    }
+
+    void complete(int statusCode, String errorCode, long endNanos) {
+        this.statusCode = statusCode;
+        this.errorCode = errorCode;
+        this.durationNanos = endNanos - startNanos;
+    }
+}
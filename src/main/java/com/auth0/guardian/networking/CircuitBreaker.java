@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fails fast the requests to a Guardian endpoint that is failing, instead of waiting for the timeouts of every call.
+ * <p>
+ * Each {@link Endpoint} has its own circuit, which starts {@link State#CLOSED} and records the outcome of the last
+ * calls in a sliding window. A call fails when it throws an {@link IOException} or the server answers with a 5xx or
+ * 429 status, and it's slow when it takes longer than the slow call duration. Once the window has the minimum number
+ * of calls, the circuit opens when the failure rate or the slow call rate reaches its threshold.
+ * <p>
+ * While {@link State#OPEN} the calls are rejected without being sent with a {@code GuardianException} whose
+ * {@code isCircuitOpen()} returns true. After the wait duration the circuit goes {@link State#HALF_OPEN} and lets a
+ * few trial calls through: it closes again if they are below the thresholds, or opens for another wait duration if
+ * they are not.
+ * <p>
+ * The state of each circuit is an immutable snapshot replaced with compare-and-set, so no lock is taken on the
+ * request path. Transitions are reported to the {@link Listener}, on the thread of the call that caused them.
+ * <p>
+ * Install it as an application interceptor (see {@code Guardian.Builder#circuitBreaker}). Requests that are not
+ * tagged with an {@link Endpoint} go through untouched.
+ */
+public class CircuitBreaker implements Interceptor {
+
+    /**
+     * The states of the circuit of an endpoint
+     */
+    public enum State {
+        /**
+         * Calls go through and their outcomes are recorded
+         */
+        CLOSED,
+        /**
+         * Calls are rejected without being sent
+         */
+        OPEN,
+        /**
+         * A limited number of trial calls go through to decide whether to close the circuit again
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Receives the state transitions of the circuits, e.g. to alert when an endpoint is failing
+     */
+    public interface Listener {
+
+        /**
+         * Called after the circuit of an endpoint changed its state
+         *
+         * @param endpoint the endpoint of the circuit
+         * @param from     the previous state
+         * @param to       the new state
+         */
+        void onStateTransition(Endpoint endpoint, State from, State to);
+    }
+
+    private static final int FAILURE = 1;
+    private static final int SLOW = 2;
+    private static final int RECORDED = 4;
+
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final int slidingWindowSize;
+    private final int minimumNumberOfCalls;
+    private final long waitDurationInOpenStateNanos;
+    private final int permittedCallsInHalfOpenState;
+    private final Listener listener;
+    private final Ticker ticker;
+    private final Map<Endpoint, Circuit> circuits;
+
+    private CircuitBreaker(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDurationNanos = builder.slowCallDurationNanos;
+        this.slidingWindowSize = builder.slidingWindowSize;
+        this.minimumNumberOfCalls = Math.min(builder.minimumNumberOfCalls, builder.slidingWindowSize);
+        this.waitDurationInOpenStateNanos = builder.waitDurationInOpenStateNanos;
+        this.permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+        this.listener = builder.listener;
+        this.ticker = builder.ticker;
+
+        Map<Endpoint, Circuit> circuits = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            circuits.put(endpoint, new Circuit(endpoint));
+        }
+        this.circuits = circuits;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the current state of the circuit of an endpoint
+     *
+     * @param endpoint the endpoint
+     * @return the state of its circuit
+     */
+    public State getState(Endpoint endpoint) {
+        return circuits.get(endpoint).snapshot.get().state;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Endpoint endpoint = chain.request().tag(Endpoint.class);
+        if (endpoint == null) {
+            return chain.proceed(chain.request());
+        }
+
+        Circuit circuit = circuits.get(endpoint);
+        Snapshot snapshot = circuit.acquire();
+        if (snapshot == null) {
+            throw new RejectedCallException(GuardianException.ERROR_CIRCUIT_OPEN,
+                    "Circuit breaker is open for " + endpoint);
+        }
+
+        long start = ticker.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (RejectedCallException e) {
+            // rejected further down the chain, it never reached the server
+            circuit.release(snapshot);
+            throw e;
+        } catch (IOException e) {
+            circuit.record(snapshot, true, ticker.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            // a bug further down the chain, not an outcome of the endpoint, but the half-open permit must come back
+            circuit.release(snapshot);
+            throw e;
+        }
+        int code = response.code();
+        circuit.record(snapshot, code >= 500 || code == 429, ticker.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Immutable state of a circuit. A new instance (with a new window) is created on every transition, so the outcome
+     * of a call is always recorded in the window of the state the call started in.
+     */
+    private static final class Snapshot {
+
+        final State state;
+        final long openedAtNanos;
+        final Window window;
+        final AtomicInteger halfOpenPermits;
+
+        Snapshot(State state, long openedAtNanos, Window window, int halfOpenPermits) {
+            this.state = state;
+            this.openedAtNanos = openedAtNanos;
+            this.window = window;
+            this.halfOpenPermits = new AtomicInteger(halfOpenPermits);
+        }
+    }
+
+    /**
+     * Ring buffer with the outcomes of the last calls and the running counts of each outcome.
+     */
+    private static final class Window {
+
+        final AtomicIntegerArray outcomes;
+        final AtomicLong cursor = new AtomicLong();
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger slowCalls = new AtomicInteger();
+
+        Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        void record(int outcome) {
+            int index = (int) (cursor.getAndIncrement() % outcomes.length());
+            int previous = outcomes.getAndSet(index, outcome | RECORDED);
+            if (previous == 0) {
+                calls.incrementAndGet();
+            }
+            int failureDelta = (outcome & FAILURE) - (previous & FAILURE);
+            if (failureDelta != 0) {
+                failures.addAndGet(failureDelta);
+            }
+            int slowDelta = ((outcome & SLOW) - (previous & SLOW)) / SLOW;
+            if (slowDelta != 0) {
+                slowCalls.addAndGet(slowDelta);
+            }
+        }
+    }
+
+    private final class Circuit {
+
+        private final Endpoint endpoint;
+        private final AtomicReference<Snapshot> snapshot;
+
+        Circuit(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            this.snapshot = new AtomicReference<>(closed());
+        }
+
+        /**
+         * Returns the snapshot the call was admitted in, or null when the call is rejected
+         */
+        Snapshot acquire() {
+            while (true) {
+                Snapshot current = snapshot.get();
+                switch (current.state) {
+                    case CLOSED:
+                        return current;
+                    case OPEN:
+                        if (ticker.nanoTime() - current.openedAtNanos < waitDurationInOpenStateNanos) {
+                            return null;
+                        }
+                        transition(current, new Snapshot(State.HALF_OPEN, 0,
+                                new Window(permittedCallsInHalfOpenState), permittedCallsInHalfOpenState));
+                        // whoever won the transition, try again in the new state
+                        continue;
+                    default:
+                        return tryAcquireHalfOpen(current) ? current : null;
+                }
+            }
+        }
+
+        void release(Snapshot admitted) {
+            if (admitted.state == State.HALF_OPEN) {
+                admitted.halfOpenPermits.incrementAndGet();
+            }
+        }
+
+        void record(Snapshot admitted, boolean failed, long durationNanos) {
+            int outcome = 0;
+            if (failed) {
+                outcome |= FAILURE;
+            }
+            if (durationNanos >= slowCallDurationNanos) {
+                outcome |= SLOW;
+            }
+            Window window = admitted.window;
+            window.record(outcome);
+
+            int calls = window.calls.get();
+            if (admitted.state == State.CLOSED) {
+                if (calls >= minimumNumberOfCalls && exceedsThresholds(window, calls)) {
+                    transition(admitted, open());
+                }
+            } else if (admitted.state == State.HALF_OPEN && calls >= permittedCallsInHalfOpenState) {
+                transition(admitted, exceedsThresholds(window, calls) ? open() : closed());
+            }
+        }
+
+        private boolean tryAcquireHalfOpen(Snapshot current) {
+            AtomicInteger permits = current.halfOpenPermits;
+            while (true) {
+                int available = permits.get();
+                if (available <= 0) {
+                    return false;
+                }
+                if (permits.compareAndSet(available, available - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean exceedsThresholds(Window window, int calls) {
+            return window.failures.get() >= failureRateThreshold * calls
+                    || window.slowCalls.get() >= slowCallRateThreshold * calls;
+        }
+
+        private void transition(Snapshot from, Snapshot to) {
+            if (snapshot.compareAndSet(from, to) && listener != null) {
+                listener.onStateTransition(endpoint, from.state, to.state);
+            }
+        }
+
+        private Snapshot closed() {
+            return new Snapshot(State.CLOSED, 0, new Window(slidingWindowSize), 0);
+        }
+
+        private Snapshot open() {
+            return new Snapshot(State.OPEN, ticker.nanoTime(), null, 0);
+        }
+    }
+
+    public static class Builder {
+
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 1.0;
+        private long slowCallDurationNanos = TimeUnit.SECONDS.toNanos(5);
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private long waitDurationInOpenStateNanos = TimeUnit.SECONDS.toNanos(30);
+        private int permittedCallsInHalfOpenState = 3;
+        private Listener listener;
+        private Ticker ticker = Ticker.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the rate of failed calls, from 0 to 1, that opens the circuit. Defaults to 0.5.
+         *
+         * @param threshold the failure rate threshold
+         * @return this builder
+         */
+        public Builder failureRateThreshold(double threshold) {
+            if (threshold <= 0 || threshold > 1) {
+                throw new IllegalArgumentException("Invalid failure rate threshold: " + threshold);
+            }
+            this.failureRateThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the rate of slow calls, from 0 to 1, that opens the circuit. Defaults to 1, so the circuit opens only
+         * when all the calls in the window are slow.
+         *
+         * @param threshold the slow call rate threshold
+         * @return this builder
+         */
+        public Builder slowCallRateThreshold(double threshold) {
+            if (threshold <= 0 || threshold > 1) {
+                throw new IllegalArgumentException("Invalid slow call rate threshold: " + threshold);
+            }
+            this.slowCallRateThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the duration from which a call is considered slow. Defaults to 5 seconds.
+         *
+         * @param duration the slow call duration
+         * @param unit     the unit of the duration
+         * @return this builder
+         */
+        public Builder slowCallDuration(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("Invalid slow call duration: " + duration);
+            }
+            this.slowCallDurationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the number of calls in the sliding window of each endpoint. Defaults to 20.
+         *
+         * @param size the size of the window
+         * @return this builder
+         */
+        public Builder slidingWindowSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Invalid sliding window size: " + size);
+            }
+            this.slidingWindowSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the number of calls needed in the window before the rates are evaluated. Defaults to 10.
+         *
+         * @param calls the minimum number of calls
+         * @return this builder
+         */
+        public Builder minimumNumberOfCalls(int calls) {
+            if (calls < 1) {
+                throw new IllegalArgumentException("Invalid minimum number of calls: " + calls);
+            }
+            this.minimumNumberOfCalls = calls;
+            return this;
+        }
+
+        /**
+         * Sets how long the circuit stays open before letting trial calls through. Defaults to 30 seconds.
+         *
+         * @param duration the wait duration
+         * @param unit     the unit of the duration
+         * @return this builder
+         */
+        public Builder waitDurationInOpenState(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Invalid wait duration: " + duration);
+            }
+            this.waitDurationInOpenStateNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the number of trial calls let through while half open. Defaults to 3.
+         *
+         * @param calls the number of trial calls
+         * @return this builder
+         */
+        public Builder permittedCallsInHalfOpenState(int calls) {
+            if (calls < 1) {
+                throw new IllegalArgumentException("Invalid permitted calls in half open state: " + calls);
+            }
+            this.permittedCallsInHalfOpenState = calls;
+            return this;
+        }
+
+        /**
+         * Sets the listener of the state transitions
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
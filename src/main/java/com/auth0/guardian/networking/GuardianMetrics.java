@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+/**
+ * Receives the metrics of the Guardian requests. Extend it and override the methods of the metrics you need, or use
+ * {@link HistogramMetrics}.
+ * <p>
+ * The methods are called on the thread that executed the request (a dispatcher thread for asynchronous requests), on
+ * the hot path, so they must be fast and must not throw. The endpoint is null for requests that were not tagged with
+ * one. With {@link #NONE}, the default, nothing is measured at all.
+ * <p>
+ * On Java 11 or newer, an implementation can also emit a JDK Flight Recorder event for every request from
+ * {@link #onCall(CallStats)}, to correlate Guardian stalls with GC pauses in the same recording.
+ */
+public abstract class GuardianMetrics {
+
+    /**
+     * Metrics that ignore everything. Requests skip measuring when they use it.
+     */
+    public static final GuardianMetrics NONE = new GuardianMetrics() {
+    };
+
+    /**
+     * The phases of a request
+     */
+    public enum Phase {
+        /**
+         * Resolving the host name, when a new connection is needed
+         */
+        DNS,
+        /**
+         * Establishing the TCP connection (and the TLS handshake, for HTTPS), when a new connection is needed
+         */
+        CONNECT,
+        /**
+         * The TLS handshake, when a new HTTPS connection is needed
+         */
+        TLS,
+        /**
+         * Writing the request headers and body
+         */
+        REQUEST_WRITE,
+        /**
+         * From the request written to the first byte of the response
+         */
+        TIME_TO_FIRST_BYTE,
+        /**
+         * Parsing the JSON of the response
+         */
+        JSON_PARSE
+    }
+
+    /**
+     * Called when a request completes
+     *
+     * @param call the details of the request: endpoint, status code, error code, durations, bytes transferred and
+     *             whether its connection was reused
+     */
+    public void onCall(CallStats call) {
+    }
+
+    /**
+     * Called when a phase of a request completes. A phase can be reported more than once per request when it's
+     * retried, and the DNS, CONNECT and TLS phases are not reported when a pooled connection is reused.
+     *
+     * @param endpoint      the endpoint of the request, or null
+     * @param phase         the phase
+     * @param durationNanos the duration of the phase
+     */
+    public void onPhase(Endpoint endpoint, Phase phase, long durationNanos) {
+    }
+
+    /**
+     * Called when a new TLS connection completes its handshake
+     *
+     * @param endpoint the endpoint of the request that opened the connection, or null
+     * @param resumed  whether the handshake resumed a cached TLS session, an abbreviated handshake without the
+     *                 certificate exchange, instead of doing a full handshake
+     */
+    public void onTlsHandshake(Endpoint endpoint, boolean resumed) {
+    }
+
+    /**
+     * Called when a warm-up completes
+     *
+     * @param connections   the number of warm-up requests that got a response, so their connection is pooled
+     * @param durationNanos the duration of the warm-up, including priming the JSON converter
+     */
+    public void onWarmUp(int connections, long durationNanos) {
+    }
+}
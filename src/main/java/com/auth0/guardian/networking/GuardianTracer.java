@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+/**
+ * Traces the Guardian requests. Adapt it to the tracing library of the application, e.g. OpenTelemetry, to see the
+ * Guardian requests in the distributed traces.
+ * <p>
+ * A span is started for every request, named after its endpoint, and for the operations that send several requests,
+ * like {@code Guardian.requestEnroll}, whose requests are its children. The {@code traceparent} and {@code tracestate}
+ * headers of the span are added to the request, following the W3C Trace Context specification, so the server joins
+ * the same trace.
+ * <p>
+ * A span without a parent has to take it from the caller's context, e.g. the current span of the tracing library,
+ * which is only available on the calling thread: the spans are always started on the thread that executes or
+ * enqueues the request. They can be ended on a dispatcher thread. With {@link #NONE}, the default, requests skip
+ * tracing altogether.
+ */
+public abstract class GuardianTracer {
+
+    /**
+     * Tracer that doesn't trace anything.
+     */
+    public static final GuardianTracer NONE = new GuardianTracer() {
+        @Override
+        public Span startSpan(String name, Endpoint endpoint, Span parent) {
+            return null;
+        }
+    };
+
+    /**
+     * Starts a span
+     *
+     * @param name     the name of the span: the name of the endpoint for a request, or of the operation
+     * @param endpoint the endpoint of the request, or null for the span of an operation
+     * @param parent   the span of the operation the request is part of, or null to take the parent from the caller's
+     *                 context
+     * @return the span, or null to not trace it
+     */
+    public abstract Span startSpan(String name, Endpoint endpoint, Span parent);
+
+    /**
+     * A span started by a {@link GuardianTracer}
+     */
+    public abstract static class Span {
+
+        /**
+         * Returns the value of the {@code traceparent} header that identifies this span, e.g.
+         * {@code 00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01}
+         *
+         * @return the {@code traceparent} value, or null to not propagate the span
+         */
+        public abstract String getTraceParent();
+
+        /**
+         * Returns the value of the {@code tracestate} header, with the vendor specific data of the trace
+         *
+         * @return the {@code tracestate} value, or null to not send it
+         */
+        public String getTraceState() {
+            return null;
+        }
+
+        /**
+         * Ends the span. Called exactly once, when the request or operation completes.
+         *
+         * @param statusCode the status code of the response, or -1 when there was no response or for the span of an
+         *                   operation
+         * @param error      the error the request or operation failed with, or null when it succeeded
+         */
+        public abstract void end(int statusCode, Exception error);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics that keep, for each endpoint, the count of requests per status code and per error code, and a
+ * {@link LatencyHistogram} of the requests and of each of their phases. Requests without an endpoint are ignored.
+ * <p>
+ * All the histograms and counters are created upfront, so recording is lock-free and doesn't allocate, except the
+ * first time an error code is seen.
+ */
+public class HistogramMetrics extends GuardianMetrics {
+
+    private static final int MAX_STATUS_CODE = 599;
+
+    private final Map<Endpoint, EndpointMetrics> endpoints;
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private volatile int warmUpConnections;
+    private volatile long warmUpNanos;
+
+    public HistogramMetrics() {
+        Map<Endpoint, EndpointMetrics> endpoints = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointMetrics());
+        }
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    public void onCall(CallStats call) {
+        Endpoint endpoint = call.getEndpoint();
+        if (endpoint == null) {
+            return;
+        }
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        int statusCode = call.getStatusCode();
+        String errorCode = call.getErrorCode();
+        metrics.latency.record(call.getDurationNanos());
+        if (call.isConnectionReused()) {
+            metrics.reusedConnections.incrementAndGet();
+        }
+        metrics.statusCodes.incrementAndGet(statusCode >= 0 && statusCode <= MAX_STATUS_CODE ? statusCode : 0);
+        if (errorCode != null) {
+            AtomicLong count = metrics.errorCodes.get(errorCode);
+            if (count == null) {
+                AtomicLong created = new AtomicLong();
+                count = metrics.errorCodes.putIfAbsent(errorCode, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onPhase(Endpoint endpoint, Phase phase, long durationNanos) {
+        if (endpoint == null) {
+            return;
+        }
+        endpoints.get(endpoint).phases.get(phase).record(durationNanos);
+    }
+
+    @Override
+    public void onTlsHandshake(Endpoint endpoint, boolean resumed) {
+        (resumed ? resumedHandshakes : fullHandshakes).incrementAndGet();
+    }
+
+    /**
+     * Returns the number of full TLS handshakes, of the connections to all the endpoints
+     *
+     * @return the number of full handshakes
+     */
+    public long getFullHandshakeCount() {
+        return fullHandshakes.get();
+    }
+
+    /**
+     * Returns the number of TLS handshakes that resumed a cached session, of the connections to all the endpoints
+     *
+     * @return the number of resumed handshakes
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakes.get();
+    }
+
+    @Override
+    public void onWarmUp(int connections, long durationNanos) {
+        this.warmUpConnections = connections;
+        this.warmUpNanos = durationNanos;
+    }
+
+    /**
+     * Returns the number of connections opened by the last warm-up
+     *
+     * @return the number of connections, or 0 when there was no warm-up
+     */
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    /**
+     * Returns the duration of the last warm-up
+     *
+     * @return the duration in nanoseconds, or 0 when there was no warm-up
+     */
+    public long getWarmUpNanos() {
+        return warmUpNanos;
+    }
+
+    /**
+     * Returns the number of completed requests to an endpoint
+     *
+     * @param endpoint the endpoint
+     * @return the number of requests
+     */
+    public long getCallCount(Endpoint endpoint) {
+        return endpoints.get(endpoint).latency.getCount();
+    }
+
+    /**
+     * Returns the number of requests to an endpoint that got a response with the given status code
+     *
+     * @param endpoint   the endpoint
+     * @param statusCode the status code, or -1 for the requests that got no response
+     * @return the number of requests
+     */
+    public long getStatusCodeCount(Endpoint endpoint, int statusCode) {
+        if (statusCode == -1) {
+            statusCode = 0;
+        } else if (statusCode < 100 || statusCode > MAX_STATUS_CODE) {
+            return 0;
+        }
+        return endpoints.get(endpoint).statusCodes.get(statusCode);
+    }
+
+    /**
+     * Returns the number of requests to an endpoint that failed with each Guardian error code
+     *
+     * @param endpoint the endpoint
+     * @return the counts by error code
+     */
+    public Map<String, Long> getErrorCodeCounts(Endpoint endpoint) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : endpoints.get(endpoint).errorCodes.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Returns the number of requests to an endpoint that were sent on a pooled connection instead of a new one
+     *
+     * @param endpoint the endpoint
+     * @return the number of requests
+     */
+    public long getReusedConnectionCount(Endpoint endpoint) {
+        return endpoints.get(endpoint).reusedConnections.get();
+    }
+
+    /**
+     * Returns the latency histogram of the requests to an endpoint
+     *
+     * @param endpoint the endpoint
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency(Endpoint endpoint) {
+        return endpoints.get(endpoint).latency;
+    }
+
+    /**
+     * Returns the latency histogram of a phase of the requests to an endpoint
+     *
+     * @param endpoint the endpoint
+     * @param phase    the phase
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency(Endpoint endpoint, Phase phase) {
+        return endpoints.get(endpoint).phases.get(phase);
+    }
+
+    private static final class EndpointMetrics {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+        final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE + 1);
+        final AtomicLong reusedConnections = new AtomicLong();
+        final ConcurrentMap<String, AtomicLong> errorCodes = new ConcurrentHashMap<>();
+
+        EndpointMetrics() {
+            for (Phase phase : Phase.values()) {
+                phases.put(phase, new LatencyHistogram());
+            }
+        }
+    }
+}
@@ -22,29 +22,143 @@
 
 package com.auth0.guardian.networking;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 class JsonConverter {
 
+    // reused per thread to write the small fixed-shape bodies of the requests
+    private static final ThreadLocal<ByteArrayBuilder> BUFFER = new ThreadLocal<ByteArrayBuilder>() {
+        @Override
+        protected ByteArrayBuilder initialValue() {
+            return new ByteArrayBuilder(256);
+        }
+    };
+
     private final ObjectMapper mapper;
+    private final JsonFactory factory;
+
+    // readers and writers resolve their root (de)serializer once, so keeping one per type avoids doing it on every call
+    private final ConcurrentMap<Class<?>, ObjectReader> readers;
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers;
 
     JsonConverter(ObjectMapper mapper) {
         this.mapper = mapper;
+        this.factory = mapper.getFactory();
+        this.readers = new ConcurrentHashMap<>();
+        this.readers.put(Map.class, mapper.readerFor(Map.class));
+        this.writers = new ConcurrentHashMap<>();
     }
 
     byte[] serialize(Object body) throws IllegalArgumentException {
         try {
-            return mapper.writeValueAsBytes(body);
+            return writerFor(body).writeValueAsBytes(body);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException("Couldn't create request body for data: " + body, e);
         }
     }
 
-    <T> T parse(Class<T> classOfT, Reader reader) throws IOException {
-        return mapper.readValue(reader, classOfT);
+    /**
+     * Serializes the body parameters of a request to an endpoint. The start-flow and verify-otp bodies, when they have
+     * exactly their string fields, are written field by field with a generator; any other body goes through
+     * {@link #serialize(Object)}.
+     */
+    byte[] serialize(Endpoint endpoint, Map<String, Object> parameters) throws IllegalArgumentException {
+        try {
+            if (endpoint == Endpoint.START_FLOW && parameters.size() == 1
+                    && parameters.get("state_transport") instanceof String) {
+                JsonGenerator generator = startObject();
+                generator.writeStringField("state_transport", (String) parameters.get("state_transport"));
+                return endObject(generator);
+            }
+            if (endpoint == Endpoint.VERIFY_OTP && parameters.size() == 2
+                    && parameters.get("type") instanceof String && parameters.get("code") instanceof String) {
+                JsonGenerator generator = startObject();
+                generator.writeStringField("type", (String) parameters.get("type"));
+                generator.writeStringField("code", (String) parameters.get("code"));
+                return endObject(generator);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Couldn't create request body for data: " + parameters, e);
+        }
+        return serialize(parameters);
+    }
+
+    private JsonGenerator startObject() throws IOException {
+        ByteArrayBuilder buffer = BUFFER.get();
+        buffer.reset();
+        JsonGenerator generator = factory.createGenerator(buffer);
+        generator.writeStartObject();
+        return generator;
+    }
+
+    private static byte[] endObject(JsonGenerator generator) throws IOException {
+        generator.writeEndObject();
+        generator.close();
+        return BUFFER.get().toByteArray();
+    }
+
+    /**
+     * Resolves the deserializers of the given types and runs the parser and the serializer once, so the first requests
+     * don't pay for loading the classes and introspecting the types.
+     */
+    void warmUp(Class<?>... types) throws IOException {
+        for (Class<?> type : types) {
+            readerFor(type).readValue("{}");
+        }
+        Map<String, Object> body = new HashMap<>(4);
+        body.put("warm_up", "warm_up");
+        serialize(body);
+        body.put("nested", Collections.emptyMap());
+        serialize(body);
+        Map<String, Object> verifyOtp = new HashMap<>(4);
+        verifyOtp.put("type", "warm_up");
+        verifyOtp.put("code", "warm_up");
+        serialize(Endpoint.VERIFY_OTP, verifyOtp);
+    }
+
+    <T> T parse(Class<T> classOfT, InputStream inputStream) throws IOException {
+        return readerFor(classOfT).readValue(inputStream);
+    }
+
+    private ObjectWriter writerFor(Object body) {
+        if (body == null) {
+            return mapper.writer();
+        }
+        Class<?> type = body.getClass();
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = mapper.writerFor(type);
+            ObjectWriter existing = writers.putIfAbsent(type, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    private ObjectReader readerFor(Class<?> classOfT) {
+        ObjectReader reader = readers.get(classOfT);
+        if (reader == null) {
+            reader = mapper.readerFor(classOfT);
+            ObjectReader existing = readers.putIfAbsent(classOfT, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
     }
 }
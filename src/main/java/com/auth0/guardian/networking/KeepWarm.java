@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a minimum number of connections to the Guardian server warm between bursts of requests, so the connection
+ * pool doesn't evict them when idle and the next burst doesn't pay for new connections and TLS handshakes.
+ * <p>
+ * On every interval it sends as many concurrent {@code HEAD} requests to the base URL as the minimum number of
+ * connections, which marks them as used again in the pool, or opens them when they were evicted. The interval must be
+ * shorter than the keep-alive duration of the pool (5 minutes by default). It backs off while real traffic keeps the
+ * connections busy: a round is skipped when requests were sent since the previous one and the pool has at least the
+ * minimum number of connections, or when the requests of the previous round are still in flight.
+ * <p>
+ * The rounds of every instance run on a single shared daemon timer thread, and the requests are executed
+ * asynchronously by the dispatcher of the client, so a slow server doesn't hold the timer. The requests sent and the
+ * rounds skipped are counted, to measure the overhead.
+ * <p>
+ * Install it with {@code Guardian.Builder#keepWarm}, which starts it, and {@link #stop()} it when the instance is no
+ * longer used. An instance can only keep one client warm.
+ */
+public class KeepWarm implements Interceptor {
+
+    private static ScheduledExecutorService sharedTimer;
+
+    private final int minConnections;
+    private final long intervalNanos;
+    private final AtomicBoolean traffic = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong skippedRoundCount = new AtomicLong();
+    private OkHttpClient client;
+    private Request request;
+    private ScheduledFuture<?> rounds;
+
+    private KeepWarm(Builder builder) {
+        this.minConnections = builder.minConnections;
+        this.intervalNanos = builder.intervalNanos;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static synchronized ScheduledExecutorService sharedTimer() {
+        if (sharedTimer == null) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Guardian KeepWarm");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            sharedTimer = timer;
+        }
+        return sharedTimer;
+    }
+
+    /**
+     * Starts keeping warm the connections of a client to a URL, with the first round after one interval
+     *
+     * @param client the client whose connections are kept warm, with this instance as an interceptor
+     * @param url    the URL to send the requests to
+     * @throws IllegalStateException when it was already started
+     */
+    public synchronized void start(OkHttpClient client, HttpUrl url) {
+        if (client == null) {
+            throw new IllegalArgumentException("Invalid client");
+        }
+        if (url == null) {
+            throw new IllegalArgumentException("Invalid url");
+        }
+        if (this.client != null) {
+            throw new IllegalStateException("Keep-warm already started");
+        }
+        this.client = client;
+        this.request = new Request.Builder()
+                .url(url)
+                .head()
+                .tag(KeepWarm.class, this)
+                .tag(WarmingRequest.class, WarmingRequest.TAG)
+                .build();
+        this.rounds = sharedTimer().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                keepWarm();
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns whether it was started. A started keep-warm stays started after it's stopped.
+     *
+     * @return true when it was started
+     */
+    public synchronized boolean isStarted() {
+        return client != null;
+    }
+
+    /**
+     * Stops the rounds. The requests already sent complete.
+     */
+    public synchronized void stop() {
+        if (rounds != null) {
+            rounds.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the number of requests sent to keep the connections warm
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of rounds skipped because of real traffic or requests still in flight
+     *
+     * @return the number of skipped rounds
+     */
+    public long getSkippedRoundCount() {
+        return skippedRoundCount.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (chain.request().tag(KeepWarm.class) == null) {
+            traffic.set(true);
+        }
+        return chain.proceed(chain.request());
+    }
+
+    /**
+     * Runs a round, sending the requests unless it backs off
+     */
+    void keepWarm() {
+        boolean recentTraffic = traffic.getAndSet(false);
+        if (inFlight.get() > 0 || recentTraffic && client.connectionPool().connectionCount() >= minConnections) {
+            skippedRoundCount.incrementAndGet();
+            return;
+        }
+
+        inFlight.addAndGet(minConnections);
+        requestCount.addAndGet(minConnections);
+        for (int i = 0; i < minConnections; i++) {
+            client.newCall(request).enqueue(new okhttp3.Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    inFlight.decrementAndGet();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    inFlight.decrementAndGet();
+                    // closing the response returns the connection to the pool, as just used
+                    response.close();
+                }
+            });
+        }
+    }
+
+    public static class Builder {
+
+        private int minConnections = 2;
+        private long intervalNanos = TimeUnit.MINUTES.toNanos(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of connections kept warm. At most the requests per host of the dispatcher (5 by default)
+         * and the idle connections of the pool (5 by default) can be kept. Defaults to 2.
+         *
+         * @param minConnections the number of connections
+         * @return this builder
+         */
+        public Builder minConnections(int minConnections) {
+            if (minConnections < 1) {
+                throw new IllegalArgumentException("Invalid min connections: " + minConnections);
+            }
+            this.minConnections = minConnections;
+            return this;
+        }
+
+        /**
+         * Sets the time between the rounds, which must be shorter than the keep-alive duration of the connection
+         * pool. Defaults to 1 minute.
+         *
+         * @param interval the time between rounds
+         * @param unit     the unit of the interval
+         * @return this builder
+         */
+        public Builder interval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("Invalid interval: " + interval);
+            }
+            this.intervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        public KeepWarm build() {
+            return new KeepWarm(this);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Reports the duration of the network phases of a call to the {@link GuardianMetrics}, and records the bytes
+ * transferred and the reuse of the connection in the {@link CallStats} of the request. The TLS handshakes of the new
+ * connections are reported as full or resumed. Every event is also forwarded to the listener the client already had,
+ * so installing the metrics doesn't replace it.
+ */
+final class MetricsEventListener extends EventListener {
+
+    private final GuardianMetrics metrics;
+    private final Endpoint endpoint;
+    private final CallStats stats;
+    private final EventListener delegate;
+
+    private long dnsStartNanos;
+    private long connectStartNanos;
+    private long secureConnectStartNanos;
+    private long secureConnectStartMillis;
+    private boolean handshaken;
+    private long requestStartNanos;
+    private long requestEndNanos;
+    private boolean connecting;
+
+    private MetricsEventListener(GuardianMetrics metrics, okhttp3.Request request, EventListener delegate) {
+        this.metrics = metrics;
+        this.endpoint = request.tag(Endpoint.class);
+        this.stats = request.tag(CallStats.class);
+        this.delegate = delegate;
+    }
+
+    static final class Factory implements EventListener.Factory {
+
+        private final GuardianMetrics metrics;
+        private final EventListener.Factory delegate;
+
+        Factory(GuardianMetrics metrics, EventListener.Factory delegate) {
+            this.metrics = metrics;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EventListener create(Call call) {
+            return new MetricsEventListener(metrics, call.request(), delegate.create(call));
+        }
+    }
+
+    @Override
+    public void callStart(Call call) {
+        delegate.callStart(call);
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStartNanos = System.nanoTime();
+        delegate.dnsStart(call, domainName);
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.onPhase(endpoint, GuardianMetrics.Phase.DNS, System.nanoTime() - dnsStartNanos);
+        delegate.dnsEnd(call, domainName, inetAddressList);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStartNanos = System.nanoTime();
+        connecting = true;
+        delegate.connectStart(call, inetSocketAddress, proxy);
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStartNanos = System.nanoTime();
+        secureConnectStartMillis = System.currentTimeMillis();
+        delegate.secureConnectStart(call);
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics.onPhase(endpoint, GuardianMetrics.Phase.TLS, System.nanoTime() - secureConnectStartNanos);
+        handshaken = true;
+        delegate.secureConnectEnd(call, handshake);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics.onPhase(endpoint, GuardianMetrics.Phase.CONNECT, System.nanoTime() - connectStartNanos);
+        delegate.connectEnd(call, inetSocketAddress, proxy, protocol);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        if (stats != null) {
+            stats.setConnectionReused(!connecting);
+        }
+        connecting = false;
+        if (handshaken) {
+            handshaken = false;
+            reportHandshake(connection);
+        }
+        delegate.connectionAcquired(call, connection);
+    }
+
+    private void reportHandshake(Connection connection) {
+        Socket socket = connection.socket();
+        if (socket instanceof SSLSocket) {
+            SSLSession session = ((SSLSocket) socket).getSession();
+            // a resumed session keeps the creation time of the full handshake that created it
+            metrics.onTlsHandshake(endpoint, session.getCreationTime() < secureConnectStartMillis);
+        }
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        delegate.connectionReleased(call, connection);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStartNanos = System.nanoTime();
+        delegate.requestHeadersStart(call);
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, okhttp3.Request request) {
+        requestEndNanos = System.nanoTime();
+        delegate.requestHeadersEnd(call, request);
+    }
+
+    @Override
+    public void requestBodyStart(Call call) {
+        delegate.requestBodyStart(call);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEndNanos = System.nanoTime();
+        if (stats != null) {
+            stats.addBytesSent(byteCount);
+        }
+        delegate.requestBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void requestFailed(Call call, IOException ioe) {
+        delegate.requestFailed(call, ioe);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        long now = System.nanoTime();
+        metrics.onPhase(endpoint, GuardianMetrics.Phase.REQUEST_WRITE, requestEndNanos - requestStartNanos);
+        metrics.onPhase(endpoint, GuardianMetrics.Phase.TIME_TO_FIRST_BYTE, now - requestEndNanos);
+        delegate.responseHeadersStart(call);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        delegate.responseHeadersEnd(call, response);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        delegate.responseBodyStart(call);
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        if (stats != null) {
+            stats.addBytesReceived(byteCount);
+        }
+        delegate.responseBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void responseFailed(Call call, IOException ioe) {
+        delegate.responseFailed(call, ioe);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        delegate.callEnd(call);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        delegate.callFailed(call, ioe);
+    }
+}
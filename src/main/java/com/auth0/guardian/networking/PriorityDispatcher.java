@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests in flight and queues the rest by {@link Priority}, so under overload the requests that finish
+ * enrollments already started are served before the ones that start new enrollments.
+ * <p>
+ * When a request finishes, its slot goes to the oldest queued {@link Priority#HIGH} request, or to the oldest
+ * {@link Priority#LOW} one if there is none. When the queue is full a new high priority request sheds the newest low
+ * priority request in the queue, while a new low priority request is shed itself. Queued requests that don't get a
+ * slot within the max wait are shed too. Shed requests fail with a {@code GuardianException} whose
+ * {@code isLoadShed()} returns true.
+ * <p>
+ * Install it as the first application interceptor (see {@code Guardian.Builder#priorityDispatcher}), so a request
+ * keeps its slot while it's retried. With asynchronous requests the queued requests wait on threads of the OkHttp
+ * dispatcher, so its limits should be higher than the ones of this dispatcher.
+ */
+public class PriorityDispatcher implements Interceptor {
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    // one queue per priority, by ordinal
+    private final List<Deque<Waiter>> queues;
+    private int inFlight;
+    private int queued;
+
+    private final AtomicLongArray rejected = new AtomicLongArray(PRIORITIES.length);
+
+    private PriorityDispatcher(Builder builder) {
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.maxQueuedRequests = builder.maxQueuedRequests;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.queues = new ArrayList<>(PRIORITIES.length);
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues.add(new ArrayDeque<Waiter>());
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of requests in flight
+     *
+     * @return the requests in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of queued requests of a priority
+     *
+     * @param priority the priority
+     * @return the queued requests
+     */
+    public int getQueueDepth(Priority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a priority that were shed since the dispatcher was created
+     *
+     * @param priority the priority
+     * @return the shed requests
+     */
+    public long getRejectedCount(Priority priority) {
+        return rejected.get(priority.ordinal());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (WarmingRequest.isWarming(chain.request())) {
+            // warm-up and keep-warm requests only open or hold connections, they don't take a slot
+            return chain.proceed(chain.request());
+        }
+        Priority priority = chain.request().tag(Priority.class);
+        acquire(priority != null ? priority : Priority.LOW);
+        try {
+            return chain.proceed(chain.request());
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(Priority priority) throws IOException {
+        lock.lock();
+        try {
+            if (inFlight < maxConcurrentRequests) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueuedRequests && !shedLowerThan(priority)) {
+                throw shed(priority, "Too many queued requests");
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queues.get(priority.ordinal()).addLast(waiter);
+            queued++;
+            try {
+                long remainingNanos = maxWaitNanos;
+                while (!waiter.granted && !waiter.shed) {
+                    if (remainingNanos <= 0) {
+                        dequeue(priority, waiter);
+                        throw shed(priority, "Timed out waiting in the queue");
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // the slot was handed over, pass it on
+                    releaseLocked();
+                } else if (!waiter.shed) {
+                    dequeue(priority, waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting in the queue");
+            }
+            if (waiter.shed) {
+                throw new RejectedCallException(GuardianException.ERROR_LOAD_SHED, "Shed by a higher priority request");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        for (Deque<Waiter> queue : queues) {
+            Waiter next = queue.pollFirst();
+            if (next != null) {
+                queued--;
+                next.granted = true;
+                next.condition.signal();
+                return;
+            }
+        }
+        inFlight--;
+    }
+
+    private boolean shedLowerThan(Priority priority) {
+        for (int i = PRIORITIES.length - 1; i > priority.ordinal(); i--) {
+            Waiter victim = queues.get(i).pollLast();
+            if (victim != null) {
+                queued--;
+                rejected.incrementAndGet(i);
+                victim.shed = true;
+                victim.condition.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dequeue(Priority priority, Waiter waiter) {
+        if (queues.get(priority.ordinal()).remove(waiter)) {
+            queued--;
+        }
+    }
+
+    private RejectedCallException shed(Priority priority, String reason) {
+        rejected.incrementAndGet(priority.ordinal());
+        return new RejectedCallException(GuardianException.ERROR_LOAD_SHED,
+                reason + ", shedding " + priority + " priority request");
+    }
+
+    private static final class Waiter {
+
+        final Condition condition;
+        boolean granted;
+        boolean shed;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    public static class Builder {
+
+        private int maxConcurrentRequests = 64;
+        private int maxQueuedRequests = 128;
+        private long maxWaitNanos = TimeUnit.SECONDS.toNanos(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of requests in flight. Defaults to 64.
+         *
+         * @param maxConcurrentRequests the maximum requests in flight
+         * @return this builder
+         */
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            if (maxConcurrentRequests < 1) {
+                throw new IllegalArgumentException("Invalid max concurrent requests: " + maxConcurrentRequests);
+            }
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of queued requests, of all priorities. Defaults to 128.
+         *
+         * @param maxQueuedRequests the maximum queued requests
+         * @return this builder
+         */
+        public Builder maxQueuedRequests(int maxQueuedRequests) {
+            if (maxQueuedRequests < 0) {
+                throw new IllegalArgumentException("Invalid max queued requests: " + maxQueuedRequests);
+            }
+            this.maxQueuedRequests = maxQueuedRequests;
+            return this;
+        }
+
+        /**
+         * Sets how long a request can wait in the queue before being shed. Defaults to 1 second.
+         *
+         * @param maxWait the maximum wait
+         * @param unit    the unit of the wait
+         * @return this builder
+         */
+        public Builder maxWait(long maxWait, TimeUnit unit) {
+            if (maxWait < 0) {
+                throw new IllegalArgumentException("Invalid max wait: " + maxWait);
+            }
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        public PriorityDispatcher build() {
+            return new PriorityDispatcher(this);
+        }
+    }
+}
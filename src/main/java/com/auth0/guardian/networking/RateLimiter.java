@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of the requests sent to each Guardian endpoint of each tenant, so bursts are smoothed on the client
+ * instead of being answered with 429 by the server.
+ * <p>
+ * Every endpoint with a configured limit has a {@link TokenBucket} per tenant (the host of the request). By default a
+ * request that finds no permit is rejected right away with a {@code GuardianException} whose {@code isRateLimited()}
+ * returns true; with a max wait it waits up to that time for its permit instead. Taking a permit is lock-free, so the
+ * limiter can be shared by many threads and by several {@code Guardian} instances.
+ * <p>
+ * Install it as an application interceptor (see {@code Guardian.Builder#rateLimiter}). Requests that are not tagged
+ * with an {@link Endpoint}, or whose endpoint has no limit, are not limited.
+ */
+public class RateLimiter implements Interceptor {
+
+    private final Map<Endpoint, Limit> limits;
+    private final long maxWaitNanos;
+    private final Ticker ticker;
+    private final ConcurrentMap<String, Map<Endpoint, TokenBucket>> tenants;
+
+    private RateLimiter(Builder builder) {
+        this.limits = new EnumMap<>(builder.limits);
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.ticker = builder.ticker;
+        this.tenants = new ConcurrentHashMap<>();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the bucket of an endpoint of a tenant, e.g. to check the available permits or to take them ahead of a
+     * batch of requests.
+     *
+     * @param host     the host of the tenant, e.g. "tenant.guardian.auth0.com"
+     * @param endpoint the endpoint
+     * @return the bucket, or null if the endpoint has no limit
+     */
+    public TokenBucket getBucket(String host, Endpoint endpoint) {
+        return bucketsOf(host).get(endpoint);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        okhttp3.Request request = chain.request();
+        Endpoint endpoint = request.tag(Endpoint.class);
+        TokenBucket bucket = endpoint != null ? getBucket(request.url().host(), endpoint) : null;
+        if (bucket == null) {
+            return chain.proceed(request);
+        }
+
+        long waitNanos = bucket.reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            throw new RejectedCallException(GuardianException.ERROR_RATE_LIMITED,
+                    "Rate limit exceeded for " + endpoint);
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+            }
+        }
+        return chain.proceed(request);
+    }
+
+    private Map<Endpoint, TokenBucket> bucketsOf(String host) {
+        Map<Endpoint, TokenBucket> buckets = tenants.get(host);
+        if (buckets != null) {
+            return buckets;
+        }
+
+        Map<Endpoint, TokenBucket> created = new EnumMap<>(Endpoint.class);
+        for (Map.Entry<Endpoint, Limit> entry : limits.entrySet()) {
+            Limit limit = entry.getValue();
+            created.put(entry.getKey(), new TokenBucket(limit.permitsPerSecond, limit.burst, ticker));
+        }
+        created = Collections.unmodifiableMap(created);
+        Map<Endpoint, TokenBucket> existing = tenants.putIfAbsent(host, created);
+        return existing != null ? existing : created;
+    }
+
+    private static final class Limit {
+
+        final double permitsPerSecond;
+        final int burst;
+
+        Limit(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<Endpoint, Limit> limits = new EnumMap<>(Endpoint.class);
+        private long maxWaitNanos;
+        private Ticker ticker = Ticker.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the requests to an endpoint of each tenant. Endpoints without a limit are not limited.
+         *
+         * @param endpoint         the endpoint
+         * @param permitsPerSecond the sustained rate of requests
+         * @param burst            the maximum number of requests that can be sent at once
+         * @return this builder
+         */
+        public Builder limit(Endpoint endpoint, double permitsPerSecond, int burst) {
+            if (endpoint == null) {
+                throw new IllegalArgumentException("Invalid endpoint");
+            }
+            if (permitsPerSecond <= 0) {
+                throw new IllegalArgumentException("Invalid permits per second: " + permitsPerSecond);
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("Invalid burst: " + burst);
+            }
+            limits.put(endpoint, new Limit(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Sets how long a request can wait for its permit before being rejected. Defaults to 0, so requests are
+         * rejected right away when there is no permit.
+         *
+         * @param maxWait the maximum wait
+         * @param unit    the unit of the wait
+         * @return this builder
+         */
+        public Builder maxWait(long maxWait, TimeUnit unit) {
+            if (maxWait < 0) {
+                throw new IllegalArgumentException("Invalid max wait: " + maxWait);
+            }
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
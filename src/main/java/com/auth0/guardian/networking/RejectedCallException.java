@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thrown by the policies installed on the client when a call is rejected before it's sent. It's an
+ * {@link IOException} so OkHttp delivers it to the callback of an asynchronous call, and {@link Request} converts it
+ * to a {@link GuardianException} with the given error code.
+ */
+class RejectedCallException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String errorCode;
+
+    RejectedCallException(String errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    String getErrorCode() {
+        return errorCode;
+    }
+
+    GuardianException toGuardianException() {
+        Map<String, Object> error = new HashMap<>(2);
+        error.put("error", getMessage());
+        error.put("errorCode", errorCode);
+        return new GuardianException(error);
+    }
+}
@@ -26,7 +26,7 @@ import com.auth0.guardian.GuardianException;
 import okhttp3.*;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,26 +39,43 @@ public class Request<T> {
     private final Class<T> classOfT;
     private final HttpUrl url;
     private final String method;
+    private final GuardianMetrics metrics;
+    private final GuardianTracer tracer;
 
     private Object body;
+    private Endpoint endpoint;
+    private Priority priority;
+    private GuardianTracer.Span parentSpan;
     private final Map<String, String> headers;
     private final Map<String, Object> bodyParameters;
-    private final Map<String, String> queryParameters;
+    private Map<String, String> queryParameters;
 
     Request(String method,
             HttpUrl url,
             JsonConverter converter,
             OkHttpClient client,
             Class<T> classOfT) {
+        this(method, url, converter, client, classOfT, GuardianMetrics.NONE, GuardianTracer.NONE);
+    }
+
+    Request(String method,
+            HttpUrl url,
+            JsonConverter converter,
+            OkHttpClient client,
+            Class<T> classOfT,
+            GuardianMetrics metrics,
+            GuardianTracer tracer) {
         this.method = method;
         this.url = url;
         this.converter = converter;
         this.client = client;
         this.classOfT = classOfT;
+        this.metrics = metrics;
+        this.tracer = tracer;
 
-        this.headers = new HashMap<>();
-        this.bodyParameters = new HashMap<>();
-        this.queryParameters = new HashMap<>();
+        // sized for the few entries a Guardian request has
+        this.headers = new HashMap<>(4);
+        this.bodyParameters = new HashMap<>(4);
     }
 
     public Request<T> setParameter(String name, Object value) throws IllegalArgumentException {
@@ -75,8 +92,11 @@ public class Request<T> {
 
     public Request<T> setQueryParameter(String name, String value) {
         if (value != null) {
+            if (queryParameters == null) {
+                queryParameters = new HashMap<>(4);
+            }
             queryParameters.put(name, value);
-        } else {
+        } else if (queryParameters != null) {
             queryParameters.remove(name);
         }
         return this;
@@ -96,30 +116,126 @@ public class Request<T> {
         return this;
     }
 
+    /**
+     * Tags the request with the Guardian endpoint it calls, so the policies installed on the client can tell the
+     * endpoints apart.
+     *
+     * @param endpoint the endpoint of the request
+     * @return this request
+     */
+    public Request<T> setEndpoint(Endpoint endpoint) {
+        this.endpoint = endpoint;
+        return this;
+    }
+
+    /**
+     * Sets the priority class of the request, used by the {@link PriorityDispatcher} under overload.
+     *
+     * @param priority the priority of the request
+     * @return this request
+     */
+    public Request<T> setPriority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Sets the span of the operation the request is part of, so the span of the request is its child.
+     *
+     * @param parentSpan the span of the operation, or null to take the parent from the caller's context
+     * @return this request
+     */
+    public Request<T> setParentSpan(GuardianTracer.Span parentSpan) {
+        this.parentSpan = parentSpan;
+        return this;
+    }
+
     public T execute() throws IOException {
-        Response response = buildCall().execute();
-        if (response.isSuccessful()) {
-            return payloadFromResponse(response);
+        CallStats stats = startStats();
+        GuardianTracer.Span span = startSpan();
+        Response response;
+        try {
+            response = buildCall(stats, span).execute();
+        } catch (RejectedCallException e) {
+            GuardianException exception = e.toGuardianException();
+            onCall(stats, span, -1, exception);
+            throw exception;
+        } catch (IOException e) {
+            onCall(stats, span, -1, e);
+            throw e;
         }
+        return completeCall(response, stats, span);
+    }
 
-        throw exceptionFromErrorResponse(response);
+    /**
+     * Executes the request without blocking the calling thread. The callback is invoked on one of the threads of the
+     * client's dispatcher.
+     *
+     * @param callback the callback that will receive the result
+     */
+    public void executeAsync(final Callback<T> callback) {
+        final CallStats stats = startStats();
+        final GuardianTracer.Span span = startSpan();
+        buildCall(stats, span).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (e instanceof RejectedCallException) {
+                    GuardianException exception = ((RejectedCallException) e).toGuardianException();
+                    onCall(stats, span, -1, exception);
+                    callback.onFailure(exception);
+                } else {
+                    onCall(stats, span, -1, e);
+                    callback.onFailure(e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                T result;
+                try {
+                    result = completeCall(response, stats, span);
+                } catch (RuntimeException e) {
+                    // also the runtime exceptions, that would be lost in the dispatcher without calling the callback
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onSuccess(result);
+            }
+        });
     }
 
-    private Call buildCall() {
-        HttpUrl.Builder urlBuilder = url.newBuilder();
+    Call buildCall() {
+        return buildCall(null, null);
+    }
 
-        for (Map.Entry<String, String> entry : queryParameters.entrySet()) {
-            urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+    private Call buildCall(CallStats stats, GuardianTracer.Span span) {
+        HttpUrl requestUrl = url;
+        if (queryParameters != null && !queryParameters.isEmpty()) {
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            for (Map.Entry<String, String> entry : queryParameters.entrySet()) {
+                urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+            }
+            requestUrl = urlBuilder.build();
         }
 
         okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder()
-                .url(urlBuilder.build());
+                .url(requestUrl);
+        if (endpoint != null) {
+            requestBuilder.tag(Endpoint.class, endpoint);
+        }
+        if (priority != null) {
+            requestBuilder.tag(Priority.class, priority);
+        }
+        if (stats != null) {
+            // filled by the event listener of the metrics
+            requestBuilder.tag(CallStats.class, stats);
+        }
 
         RequestBody requestBody = null;
         if (body != null) {
             requestBody = RequestBody.create(MEDIA_TYPE, converter.serialize(body));
         } else if (!bodyParameters.isEmpty()) {
-            requestBody = RequestBody.create(MEDIA_TYPE, converter.serialize(bodyParameters));
+            requestBody = RequestBody.create(MEDIA_TYPE, converter.serialize(endpoint, bodyParameters));
         }
 
         requestBuilder.method(method, requestBody);
@@ -127,11 +243,90 @@ public class Request<T> {
         for (Map.Entry<String, String> entry : headers.entrySet()) {
             requestBuilder.addHeader(entry.getKey(), entry.getValue());
         }
+        if (span != null) {
+            addTraceContext(requestBuilder, span);
+        }
 
         return client.newCall(requestBuilder.build());
     }
 
-    private T payloadFromResponse(Response response) throws GuardianException {
+    private static void addTraceContext(okhttp3.Request.Builder requestBuilder, GuardianTracer.Span span) {
+        String traceParent = span.getTraceParent();
+        if (traceParent == null) {
+            return;
+        }
+        // replaces the headers of the caller, a request belongs to a single trace
+        requestBuilder.header("traceparent", traceParent);
+        String traceState = span.getTraceState();
+        if (traceState != null && !traceState.isEmpty()) {
+            requestBuilder.header("tracestate", traceState);
+        } else {
+            requestBuilder.removeHeader("tracestate");
+        }
+    }
+
+    private T completeCall(Response response, CallStats stats, GuardianTracer.Span span) throws GuardianException {
+        try {
+            T result = parseResponse(response, stats);
+            onCall(stats, span, response.code(), null);
+            return result;
+        } catch (RuntimeException e) {
+            onCall(stats, span, response.code(), e);
+            throw e;
+        }
+    }
+
+    private CallStats startStats() {
+        // nothing is measured with the default metrics
+        return metrics != GuardianMetrics.NONE ? new CallStats(endpoint, System.nanoTime()) : null;
+    }
+
+    private GuardianTracer.Span startSpan() {
+        // nothing is traced with the default tracer
+        return tracer != GuardianTracer.NONE
+                ? tracer.startSpan(endpoint != null ? endpoint.getName() : method, endpoint, parentSpan)
+                : null;
+    }
+
+    private void onCall(CallStats stats, GuardianTracer.Span span, int statusCode, Exception error) {
+        if (stats != null) {
+            String errorCode = error instanceof GuardianException ? ((GuardianException) error).getErrorCode() : null;
+            stats.complete(statusCode, errorCode, System.nanoTime());
+            metrics.onCall(stats);
+        }
+        if (span != null) {
+            span.end(statusCode, error);
+        }
+    }
+
+    private <R> R parse(Class<R> classOfR, InputStream inputStream, CallStats stats) throws IOException {
+        if (stats == null) {
+            return converter.parse(classOfR, inputStream);
+        }
+        long startNanos = System.nanoTime();
+        try {
+            return converter.parse(classOfR, inputStream);
+        } finally {
+            long parseNanos = System.nanoTime() - startNanos;
+            stats.addParseNanos(parseNanos);
+            metrics.onPhase(endpoint, GuardianMetrics.Phase.JSON_PARSE, parseNanos);
+        }
+    }
+
+    private T parseResponse(Response response, CallStats stats) throws GuardianException {
+        try {
+            if (response.isSuccessful()) {
+                return payloadFromResponse(response, stats);
+            }
+
+            throw exceptionFromErrorResponse(response, stats);
+        } finally {
+            // always release the body, even when it wasn't read, so the connection can go back to the pool
+            closeQuietly(response);
+        }
+    }
+
+    private T payloadFromResponse(Response response, CallStats stats) throws GuardianException {
         try {
             if (response.code() == 204 || Void.class.equals(classOfT)) {
                 // 204 == No content
@@ -139,17 +334,24 @@ public class Request<T> {
                 return null;
             }
 
-            final Reader reader = response.body().charStream();
-            return converter.parse(classOfT, reader);
+            final InputStream inputStream = response.body().byteStream();
+            return parse(classOfT, inputStream, stats);
         } catch (Exception e) {
             throw new GuardianException("Error parsing server response", e);
         }
     }
 
-    private GuardianException exceptionFromErrorResponse(Response response) {
+    private static void closeQuietly(Response response) {
+        ResponseBody body = response.body();
+        if (body != null) {
+            body.close();
+        }
+    }
+
+    private GuardianException exceptionFromErrorResponse(Response response, CallStats stats) {
         try {
-            final Reader reader = response.body().charStream();
-            Map<String, Object> error = converter.parse(Map.class, reader);
+            final InputStream inputStream = response.body().byteStream();
+            Map<String, Object> error = parse(Map.class, inputStream, stats);
             return new GuardianException(error);
         } catch (Exception e) {
             return new GuardianException("Error parsing server error response", e);
@@ -23,22 +23,119 @@
 package com.auth0.guardian.networking;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RequestFactory {
 
     private final JsonConverter converter;
     private final OkHttpClient client;
+    private final GuardianMetrics metrics;
+    private final GuardianTracer tracer;
 
     public RequestFactory(OkHttpClient client) {
+        this(client, GuardianMetrics.NONE, GuardianTracer.NONE);
+    }
+
+    /**
+     * Creates a factory of requests that report to the given metrics. Unless the metrics are
+     * {@link GuardianMetrics#NONE}, the client is derived to also report the network phases of the calls.
+     *
+     * @param client  the client that executes the requests
+     * @param metrics the metrics of the requests
+     */
+    public RequestFactory(OkHttpClient client, GuardianMetrics metrics) {
+        this(client, metrics, GuardianTracer.NONE);
+    }
+
+    /**
+     * Creates a factory of requests that report to the given metrics and are traced by the given tracer.
+     *
+     * @param client  the client that executes the requests
+     * @param metrics the metrics of the requests
+     * @param tracer  the tracer of the requests
+     */
+    public RequestFactory(OkHttpClient client, GuardianMetrics metrics, GuardianTracer tracer) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Invalid metrics");
+        }
+        if (tracer == null) {
+            throw new IllegalArgumentException("Invalid tracer");
+        }
         this.converter = new JsonConverter(new ObjectMapper());
+        this.metrics = metrics;
+        this.tracer = tracer;
+        if (metrics != GuardianMetrics.NONE) {
+            client = client.newBuilder()
+                    .eventListenerFactory(new MetricsEventListener.Factory(metrics, client.eventListenerFactory()))
+                    .build();
+        }
         this.client = client;
     }
 
+    /**
+     * Prepares the factory for the first requests: primes the JSON converter for the given response types and opens
+     * connections to the url, which stay in the connection pool of the client.
+     * <p>
+     * The connections are opened with concurrent {@code HEAD} requests executed asynchronously, so at most as many as
+     * the requests per host of the dispatcher are opened, and the idle ones above the limit of the pool are evicted.
+     * With HTTP/2 a single connection is opened. The duration is reported to the metrics.
+     *
+     * @param url           the url to connect to
+     * @param connections   the number of connections to open
+     * @param responseTypes the types of the responses to prime the converter for
+     * @return the number of requests that got a response
+     * @throws InterruptedException when the calling thread is interrupted while waiting for the connections
+     */
+    public int warmUp(HttpUrl url, int connections, Class<?>... responseTypes) throws InterruptedException {
+        if (connections < 0) {
+            throw new IllegalArgumentException("Invalid connections: " + connections);
+        }
+        long startNanos = System.nanoTime();
+        try {
+            converter.warmUp(responseTypes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't prime the JSON converter", e);
+        }
+
+        final CountDownLatch done = new CountDownLatch(connections);
+        final AtomicInteger opened = new AtomicInteger();
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(url)
+                .head()
+                .tag(WarmingRequest.class, WarmingRequest.TAG)
+                .build();
+        for (int i = 0; i < connections; i++) {
+            client.newCall(request).enqueue(new okhttp3.Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    // any response means a connection, closing it returns the connection to the pool
+                    response.close();
+                    opened.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        metrics.onWarmUp(opened.get(), System.nanoTime() - startNanos);
+        return opened.get();
+    }
+
     public <T> Request<T> newRequest(String method,
                                      HttpUrl url,
                                      Class<T> classOfT) {
-        return new Request<>(method, url, converter, client, classOfT);
+        return new Request<>(method, url, converter, client, classOfT, metrics, tracer);
     }
 }
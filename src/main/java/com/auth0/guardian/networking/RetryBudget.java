@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that limits how many retries can be made, relative to the number of requests, so retries can't amplify
+ * an outage.
+ * <p>
+ * Every request deposits a fraction of a token, and every retry takes a whole token. The bucket starts full, so short
+ * failures can be retried right away, but when most requests fail the retries are limited to {@code tokenRatio} of
+ * them.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long maxMilliTokens;
+    private final long milliTokensPerRequest;
+    private final AtomicLong milliTokens;
+
+    /**
+     * Creates a retry budget
+     *
+     * @param maxTokens  the maximum number of retries that can be made in a burst
+     * @param tokenRatio the fraction of a retry that each request adds to the budget, e.g. 0.1 allows one retry every
+     *                   ten requests once the burst was used
+     */
+    public RetryBudget(int maxTokens, double tokenRatio) {
+        if (maxTokens < 1) {
+            throw new IllegalArgumentException("Invalid max tokens: " + maxTokens);
+        }
+        if (tokenRatio < 0) {
+            throw new IllegalArgumentException("Invalid token ratio: " + tokenRatio);
+        }
+        this.maxMilliTokens = maxTokens * SCALE;
+        this.milliTokensPerRequest = (long) (tokenRatio * SCALE);
+        this.milliTokens = new AtomicLong(maxMilliTokens);
+    }
+
+    /**
+     * Returns the number of retries currently available
+     *
+     * @return the available retries
+     */
+    public int availableRetries() {
+        return (int) (milliTokens.get() / SCALE);
+    }
+
+    void onRequest() {
+        long current;
+        long next;
+        do {
+            current = milliTokens.get();
+            next = Math.min(maxMilliTokens, current + milliTokensPerRequest);
+        } while (current != next && !milliTokens.compareAndSet(current, next));
+    }
+
+    boolean tryAcquireRetry() {
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!milliTokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
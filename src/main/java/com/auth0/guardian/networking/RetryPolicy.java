@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries the requests that failed in a way that is safe to retry, waiting an exponential backoff with jitter between
+ * the attempts.
+ * <p>
+ * A request is retried when:
+ * <ul>
+ * <li>it failed before connecting to the server (unknown host, connection refused or timed out, no route to host),
+ * so it was never sent. TLS failures are not retried, they don't go away by trying again</li>
+ * <li>the server answered with one of the retryable status codes (by default 429 and 503), which mean the request was
+ * not processed. When the response has a {@code Retry-After} header in seconds, that delay is used instead of the
+ * backoff, unless it's longer than the maximum backoff</li>
+ * </ul>
+ * Any other failure (timeouts or connections reset after the request was sent, other error responses) is not retried,
+ * because the server might have processed the request. Retries are per request: after start-flow succeeds, a failure
+ * of sms-enroll never repeats start-flow.
+ * <p>
+ * Install it as an application interceptor, and its {@link #networkInterceptor()} as a network interceptor, which tells
+ * when the attempt got connected (see {@code Guardian.Builder#retryPolicy}, that installs both). Without the network
+ * interceptor a connect timeout can't be told apart from a read timeout, so only the failures whose type shows they
+ * happened while connecting are retried.
+ * <p>
+ * With asynchronous requests the backoff waits on a thread of the dispatcher. A canceled call is not retried, and
+ * stops waiting the backoff.
+ */
+public class RetryPolicy implements Interceptor {
+
+    private static final long CANCEL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final Set<Integer> retryableStatusCodes;
+    private final RetryBudget budget;
+    private final Interceptor networkInterceptor;
+    private volatile boolean tracksConnections;
+
+    private RetryPolicy(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.jitter = builder.jitter;
+        this.retryableStatusCodes = builder.retryableStatusCodes;
+        this.budget = builder.budget;
+        this.networkInterceptor = new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                // network interceptors only run once the call has a connection
+                Attempt attempt = chain.request().tag(Attempt.class);
+                if (attempt != null) {
+                    attempt.connected = true;
+                }
+                return chain.proceed(chain.request());
+            }
+        };
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the interceptor to install as a network interceptor of the same client, so the failures before
+     * connecting, like connect timeouts, are told apart from the ones after the request was sent.
+     *
+     * @return the network interceptor
+     */
+    public Interceptor networkInterceptor() {
+        tracksConnections = true;
+        return networkInterceptor;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (budget != null) {
+            budget.onRequest();
+        }
+
+        Call call = chain.call();
+        boolean tracksConnections = this.tracksConnections;
+        int retries = 0;
+        while (true) {
+            Attempt attempt = null;
+            okhttp3.Request request = chain.request();
+            if (tracksConnections) {
+                attempt = new Attempt();
+                request = request.newBuilder().tag(Attempt.class, attempt).build();
+            }
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (retries >= maxRetries || !isConnectFailure(e, attempt) || call.isCanceled() || !acquireRetry()) {
+                    throw e;
+                }
+                sleep(call, backoffMillis(retries));
+                retries++;
+                continue;
+            }
+
+            if (retries >= maxRetries || !retryableStatusCodes.contains(response.code()) || call.isCanceled()) {
+                return response;
+            }
+
+            long delayMillis = retryAfterMillis(response);
+            if (delayMillis < 0) {
+                delayMillis = backoffMillis(retries);
+            } else if (delayMillis > maxBackoffMillis) {
+                // the server asked to wait longer than we are willing to
+                return response;
+            }
+
+            if (!acquireRetry()) {
+                return response;
+            }
+
+            response.close();
+            sleep(call, delayMillis);
+            retries++;
+        }
+    }
+
+    private static boolean isConnectFailure(IOException e, Attempt attempt) {
+        if (e instanceof RejectedCallException) {
+            // rejected by a policy further down the chain without connecting, retrying would be rejected again
+            return false;
+        }
+        if (attempt != null) {
+            return !attempt.connected && !(e instanceof SSLException);
+        }
+        return e instanceof ConnectException
+                || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException;
+    }
+
+    long backoffMillis(int retry) {
+        long backoff = initialBackoffMillis << Math.min(retry, 30);
+        if (backoff <= 0 || backoff > maxBackoffMillis) {
+            backoff = maxBackoffMillis;
+        }
+        return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    private static long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(retryAfter.trim());
+            return seconds >= 0 ? TimeUnit.SECONDS.toMillis(seconds) : -1;
+        } catch (NumberFormatException e) {
+            // HTTP dates are not supported, use the backoff
+            return -1;
+        }
+    }
+
+    private boolean acquireRetry() {
+        return budget == null || budget.tryAcquireRetry();
+    }
+
+    /**
+     * Waits the backoff in short sleeps, to stop as soon as the call is canceled
+     */
+    private static void sleep(Call call, long millis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0 && !call.isCanceled()) {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, CANCEL_CHECK_NANOS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+        if (call.isCanceled()) {
+            throw new IOException("Canceled");
+        }
+    }
+
+    /**
+     * Tagged on the request of each attempt, for the network interceptor to flag that it got connected
+     */
+    private static final class Attempt {
+        // written and read on the thread of the call
+        private boolean connected;
+    }
+
+    public static class Builder {
+
+        private int maxRetries = 2;
+        private long initialBackoffMillis = 100;
+        private long maxBackoffMillis = 2000;
+        private double jitter = 0.5;
+        private Set<Integer> retryableStatusCodes = new HashSet<>(Arrays.asList(429, 503));
+        private RetryBudget budget;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of retries of a request. Defaults to 2.
+         *
+         * @param maxRetries the maximum number of retries
+         * @return this builder
+         */
+        public Builder maxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Invalid max retries: " + maxRetries);
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the backoff before the first retry, which doubles on every following retry. Defaults to 100ms.
+         *
+         * @param backoff the initial backoff
+         * @param unit    the unit of the backoff
+         * @return this builder
+         */
+        public Builder initialBackoff(long backoff, TimeUnit unit) {
+            if (backoff < 0) {
+                throw new IllegalArgumentException("Invalid initial backoff: " + backoff);
+            }
+            this.initialBackoffMillis = unit.toMillis(backoff);
+            return this;
+        }
+
+        /**
+         * Sets the maximum backoff between retries, which is also the longest {@code Retry-After} that is honored.
+         * Defaults to 2 seconds.
+         *
+         * @param backoff the maximum backoff
+         * @param unit    the unit of the backoff
+         * @return this builder
+         */
+        public Builder maxBackoff(long backoff, TimeUnit unit) {
+            if (backoff < 0) {
+                throw new IllegalArgumentException("Invalid max backoff: " + backoff);
+            }
+            this.maxBackoffMillis = unit.toMillis(backoff);
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the backoff that is randomized, from 0 (no jitter) to 1 (a random wait between 0 and
+         * the backoff). Defaults to 0.5.
+         *
+         * @param jitter the jitter factor
+         * @return this builder
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Invalid jitter: " + jitter);
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets the status codes of the responses to retry. Defaults to 429 and 503. Only use status codes that mean
+         * the server did not process the request.
+         *
+         * @param statusCodes the status codes to retry
+         * @return this builder
+         */
+        public Builder retryOnStatusCodes(int... statusCodes) {
+            Set<Integer> codes = new HashSet<>();
+            for (int statusCode : statusCodes) {
+                codes.add(statusCode);
+            }
+            this.retryableStatusCodes = codes;
+            return this;
+        }
+
+        /**
+         * Sets a budget that limits the retries. It can be shared by several policies.
+         *
+         * @param budget the retry budget
+         * @return this builder
+         */
+        public Builder budget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of TLS sessions that can be shared by several clients, so a new connection to a host that was connected
+ * before resumes the session with an abbreviated handshake instead of doing a full one, like the connections opened
+ * again after the pool evicted the idle ones.
+ * <p>
+ * The sessions are cached by the {@link SSLContext} that creates the sockets, so every client using the socket
+ * factory of the same cache shares them. Set it with {@code Guardian.Builder#tlsSessionCache}, and use
+ * {@link HistogramMetrics#getResumedHandshakeCount()} to see whether the sessions are resumed.
+ */
+public class TlsSessionCache {
+
+    private final SSLSocketFactory sslSocketFactory;
+    private final X509TrustManager trustManager;
+
+    private TlsSessionCache(Builder builder) {
+        SSLContext sslContext;
+        try {
+            this.trustManager = builder.trustManager != null ? builder.trustManager : platformTrustManager();
+            sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{trustManager}, null);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Couldn't create the TLS context", e);
+        }
+
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        sessions.setSessionCacheSize(builder.sessionCacheSize);
+        sessions.setSessionTimeout(builder.sessionTimeoutSeconds);
+        this.sslSocketFactory = sslContext.getSocketFactory();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static X509TrustManager platformTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init((KeyStore) null);
+        for (TrustManager trustManager : factory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new IllegalStateException("No X509TrustManager in the platform");
+    }
+
+    /**
+     * Returns the factory of the TLS sockets that share the cached sessions
+     *
+     * @return the socket factory
+     */
+    public SSLSocketFactory getSslSocketFactory() {
+        return sslSocketFactory;
+    }
+
+    /**
+     * Returns the trust manager that verifies the certificates of the servers
+     *
+     * @return the trust manager
+     */
+    public X509TrustManager getTrustManager() {
+        return trustManager;
+    }
+
+    public static class Builder {
+
+        private X509TrustManager trustManager;
+        private int sessionCacheSize = 100;
+        private int sessionTimeoutSeconds = (int) TimeUnit.HOURS.toSeconds(24);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the trust manager that verifies the certificates of the servers. Defaults to the one of the platform.
+         *
+         * @param trustManager the trust manager
+         * @return this builder
+         */
+        public Builder trustManager(X509TrustManager trustManager) {
+            if (trustManager == null) {
+                throw new IllegalArgumentException("Invalid trust manager");
+            }
+            this.trustManager = trustManager;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of cached sessions, one per host and port. Defaults to 100.
+         *
+         * @param sessionCacheSize the maximum number of sessions
+         * @return this builder
+         */
+        public Builder sessionCacheSize(int sessionCacheSize) {
+            if (sessionCacheSize < 1) {
+                throw new IllegalArgumentException("Invalid session cache size: " + sessionCacheSize);
+            }
+            this.sessionCacheSize = sessionCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a session can be resumed after it was created, at least a second. Defaults to 24 hours. The
+         * server can expire the sessions earlier, which just means a full handshake.
+         *
+         * @param timeout the timeout of the sessions
+         * @param unit    the unit of the timeout
+         * @return this builder
+         */
+        public Builder sessionTimeout(long timeout, TimeUnit unit) {
+            long seconds = unit.toSeconds(timeout);
+            if (seconds < 1 || seconds > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid session timeout: " + timeout);
+            }
+            this.sessionTimeoutSeconds = (int) seconds;
+            return this;
+        }
+
+        public TlsSessionCache build() {
+            return new TlsSessionCache(this);
+        }
+    }
+}
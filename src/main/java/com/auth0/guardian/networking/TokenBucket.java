@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that allows a sustained rate of permits with bursts of up to {@code burst} permits.
+ * <p>
+ * Instead of a token count refilled over time, the bucket keeps the time at which it would be full again, so taking a
+ * permit is a single compare-and-set and no thread refills it in the background. A permit can be taken when that time
+ * is less than {@code burst} permits ahead of now; waiting callers reserve their permit before sleeping, so they are
+ * served in order.
+ */
+public class TokenBucket {
+
+    private final long nanosPerPermit;
+    private final long burstNanos;
+    private final Ticker ticker;
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * Creates a token bucket, initially full
+     *
+     * @param permitsPerSecond the sustained rate of permits
+     * @param burst            the maximum number of permits that can be taken at once
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, Ticker.SYSTEM);
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, Ticker ticker) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid permits per second: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Invalid burst: " + burst);
+        }
+        this.nanosPerPermit = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = nanosPerPermit * burst;
+        this.ticker = ticker;
+        this.fullAtNanos = new AtomicLong(ticker.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available right now
+     *
+     * @return true if the permit was taken
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Takes a permit, waiting for it at most the given timeout. Returns right away without waiting when the permit
+     * wouldn't be available before the timeout.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if the permit was taken
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long waitNanos = reserve(unit.toNanos(timeout));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of permits that can be taken right now without waiting
+     *
+     * @return the available permits
+     */
+    public int availablePermits() {
+        long ahead = fullAtNanos.get() - ticker.nanoTime();
+        if (ahead <= 0) {
+            return (int) (burstNanos / nanosPerPermit);
+        }
+        return (int) Math.max(0, (burstNanos - ahead) / nanosPerPermit);
+    }
+
+    /**
+     * Reserves a permit if it's available within the max wait
+     *
+     * @return the nanos to wait for the reserved permit, or -1 if it was not reserved
+     */
+    long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = ticker.nanoTime();
+            long current = fullAtNanos.get();
+            long next = Math.max(current, now) + nanosPerPermit;
+            long waitNanos = next - now - burstNanos;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (fullAtNanos.compareAndSet(current, next)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+}
@@ -48,13 +48,16 @@ public class APIClientTest {
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
+    @Rule
+    public ConnectionLeakDetector leakDetector = new ConnectionLeakDetector();
+
     private MockServer server;
     private APIClient apiClient;
 
     @Before
     public void setUp() throws Exception {
         server = new MockServer();
-        apiClient = new APIClient(server.getBaseUrl());
+        apiClient = new APIClient(server.getBaseUrl(), leakDetector.client());
     }
 
     @After
@@ -130,6 +133,19 @@ public class APIClientTest {
         assertThat(body, hasEntry("phone_number", (Object) "PHONE_NUMBER"));
     }
 
+    @Test
+    public void shouldEncodeDeviceAccountIdWhenSendingEnrollSMS() throws Exception {
+        server.jsonResponse(MockServer.SMS_ENROLL_VALID, 200);
+
+        apiClient
+                .sendEnrollSMS(TRANSACTION_TOKEN, "DEVICE/ACCOUNT ID", PHONE_NUMBER)
+                .execute();
+
+        RecordedRequest recordedRequest = server.takeRequest();
+
+        assertThat(recordedRequest, hasMethodAndPath("POST", "/api/device-accounts/DEVICE%2FACCOUNT%20ID/sms-enroll"));
+    }
+
     @Test
     public void shouldVerifyOTP() throws Exception {
         server.emptyResponse();
@@ -268,4 +284,68 @@ public class APIClientTest {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReuseConnectionAfterEmptyResponse() throws Exception {
+        server.emptyResponse();
+        server.emptyResponse();
+
+        apiClient
+                .verifyOTP(TRANSACTION_TOKEN, OTP_CODE)
+                .execute();
+        apiClient
+                .verifyOTP(TRANSACTION_TOKEN, OTP_CODE)
+                .execute();
+
+        assertThat(leakDetector.openedConnectionCount(), is(equalTo(1)));
+        assertThat(leakDetector.reusedConnectionCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldReuseConnectionAfterIgnoredResponseBody() throws Exception {
+        server.jsonResponse(MockServer.SMS_ENROLL_VALID, 200);
+        server.jsonResponse(MockServer.SMS_ENROLL_VALID, 200);
+
+        apiClient
+                .sendEnrollSMS(TRANSACTION_TOKEN, DEVICE_ACCOUNT_ID, PHONE_NUMBER)
+                .execute();
+        apiClient
+                .sendEnrollSMS(TRANSACTION_TOKEN, DEVICE_ACCOUNT_ID, PHONE_NUMBER)
+                .execute();
+
+        assertThat(leakDetector.openedConnectionCount(), is(equalTo(1)));
+        assertThat(leakDetector.reusedConnectionCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldReuseConnectionAfterErrorResponse() throws Exception {
+        server.jsonResponse(MockServer.ERROR_INVALID_OTP, 401);
+        server.emptyResponse();
+
+        try {
+            apiClient
+                    .verifyOTP(TRANSACTION_TOKEN, OTP_CODE)
+                    .execute();
+        } catch (GuardianException e) {
+            assertThat(e.isInvalidOTP(), is(equalTo(true)));
+        }
+        apiClient
+                .verifyOTP(TRANSACTION_TOKEN, OTP_CODE)
+                .execute();
+
+        assertThat(leakDetector.openedConnectionCount(), is(equalTo(1)));
+        assertThat(leakDetector.reusedConnectionCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldReleaseConnectionWhenResponseCannotBeParsed() throws Exception {
+        exception.expect(GuardianException.class);
+        exception.expectMessage("Error parsing server response");
+
+        server.textResponse(MockServer.ERROR_500, 201);
+
+        apiClient
+                .startFlow(ENROLLMENT_TICKET)
+                .execute();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class Base32Test {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static String decode(String encoded) {
+        byte[] out = new byte[Base32.maxDecodedLength(encoded.length())];
+        int length = Base32.decode(encoded, out);
+        return new String(Arrays.copyOf(out, length), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void shouldDecodeRfcVectors() throws Exception {
+        assertThat(decode(""), is(equalTo("")));
+        assertThat(decode("MY======"), is(equalTo("f")));
+        assertThat(decode("MZXQ===="), is(equalTo("fo")));
+        assertThat(decode("MZXW6==="), is(equalTo("foo")));
+        assertThat(decode("MZXW6YQ="), is(equalTo("foob")));
+        assertThat(decode("MZXW6YTB"), is(equalTo("fooba")));
+        assertThat(decode("MZXW6YTBOI======"), is(equalTo("foobar")));
+    }
+
+    @Test
+    public void shouldDecodeWithoutPadding() throws Exception {
+        assertThat(decode("MZXW6YTBOI"), is(equalTo("foobar")));
+    }
+
+    @Test
+    public void shouldDecodeLowerCase() throws Exception {
+        assertThat(decode("mzxw6ytboi"), is(equalTo("foobar")));
+    }
+
+    @Test
+    public void shouldIgnoreSpacesAndDashes() throws Exception {
+        assertThat(decode("MZXW 6YTB-OI"), is(equalTo("foobar")));
+    }
+
+    @Test
+    public void shouldDecodeIntoLargerBuffer() throws Exception {
+        byte[] out = new byte[64];
+
+        assertThat(Base32.decode("MZXW6===", out), is(equalTo(3)));
+        assertThat(new String(out, 0, 3, StandardCharsets.US_ASCII), is(equalTo("foo")));
+    }
+
+    @Test
+    public void shouldFailWithInvalidCharacter() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid Base32 character: 1");
+
+        decode("MZXW1===");
+    }
+
+    @Test
+    public void shouldFailWithNonAsciiCharacter() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid Base32 character: \u00e9");
+
+        decode("MZXW\u00e9===");
+    }
+}
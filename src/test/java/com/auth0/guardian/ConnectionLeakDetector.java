@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import org.junit.rules.ExternalResource;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Provides a client with its own connection pool and fails the test if, once it finished, any connection of the pool
+ * is still in use, which happens when a response body was left open. It also counts how many calls reused a pooled
+ * connection instead of opening a new one.
+ */
+public class ConnectionLeakDetector extends ExternalResource {
+
+    private final ConnectionPool connectionPool = new ConnectionPool();
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    private final AtomicInteger connectionsAcquired = new AtomicInteger();
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .eventListener(new EventListener() {
+                @Override
+                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+                    connectionsOpened.incrementAndGet();
+                }
+
+                @Override
+                public void connectionAcquired(Call call, Connection connection) {
+                    connectionsAcquired.incrementAndGet();
+                }
+            })
+            .build();
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    public int openedConnectionCount() {
+        return connectionsOpened.get();
+    }
+
+    public int reusedConnectionCount() {
+        return connectionsAcquired.get() - connectionsOpened.get();
+    }
+
+    @Override
+    protected void after() {
+        int inUse = connectionPool.connectionCount() - connectionPool.idleConnectionCount();
+        assertThat("Connections not released to the pool (unclosed response body)", inUse, is(equalTo(0)));
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class GuardianBulkTest {
+
+    private static final String START_FLOW_VALID = "{\"device_account\":{\"id\":\"THE_ENROLLMENT_ID\","
+            + "\"status\":\"confirmation_pending\",\"otp_secret\":\"THE_OTP_SECRET\","
+            + "\"recovery_code\":\"THE_RECOVERY_CODE\"},\"transaction_token\":\"TOKEN_%s\"}";
+    private static final String START_FLOW_CONFIRMED = "{\"device_account\":{\"id\":\"THE_ENROLLMENT_ID\","
+            + "\"status\":\"confirmed\"},\"transaction_token\":\"TOKEN_%s\"}";
+    private static final String ENROLLMENT_NOT_FOUND =
+            "{\"error\":\"Not found\",\"errorCode\":\"enrollment_not_found\"}";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private Guardian guardian;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> smsTokens = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = inFlight.incrementAndGet();
+                while (true) {
+                    int max = maxInFlight.get();
+                    if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                try {
+                    // gives the other requests the chance to be in flight at the same time
+                    Thread.sleep(20);
+                    return respond(request);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        guardian = new Guardian.Builder(server.url("/").toString())
+                .maxRequestsPerHost(64)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        if (request.getPath().endsWith("/verify-otp")) {
+            String token = request.getHeader("Authorization");
+            if (token.contains("INVALID")) {
+                return new MockResponse().setResponseCode(403)
+                        .setBody("{\"error\":\"Invalid OTP\",\"errorCode\":\"invalid_otp\"}");
+            }
+            if (token.contains("MISSING")) {
+                return new MockResponse().setResponseCode(404)
+                        .setBody("{\"error\":\"Not found\",\"errorCode\":\"transaction_not_found\"}");
+            }
+            return new MockResponse().setResponseCode(204);
+        }
+        if (request.getPath().endsWith("/sms-enroll")) {
+            smsTokens.add(request.getHeader("Authorization"));
+            return new MockResponse().setResponseCode(200).setBody("{\"phone_number\":\"54911234567\"}");
+        }
+        String ticket = request.getHeader("Authorization").replaceAll("Ticket id=\"(.*)\"", "$1");
+        if (ticket.startsWith("CONFIRMED")) {
+            return new MockResponse().setResponseCode(201).setBody(String.format(START_FLOW_CONFIRMED, ticket));
+        }
+        if (ticket.startsWith("NOT_FOUND")) {
+            return new MockResponse().setResponseCode(404).setBody(ENROLLMENT_NOT_FOUND);
+        }
+        if (ticket.startsWith("MALFORMED")) {
+            return new MockResponse().setResponseCode(201).setBody("{}");
+        }
+        return new MockResponse().setResponseCode(201).setBody(String.format(START_FLOW_VALID, ticket));
+    }
+
+    private static List<EnrollmentRequest> requests(String prefix, int count, EnrollmentType type) {
+        List<EnrollmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new EnrollmentRequest(prefix + i, type));
+        }
+        return requests;
+    }
+
+    @Test
+    public void shouldRequestEnrollAllInOrder() throws Exception {
+        List<EnrollmentRequest> requests = requests("TICKET_", 20, EnrollmentType.SMS("PHONE_NUMBER"));
+
+        List<EnrollmentResult> results = guardian.requestEnrollAll(requests, BulkOptions.newBuilder().build());
+
+        assertThat(results, hasSize(20));
+        for (int i = 0; i < 20; i++) {
+            EnrollmentResult result = results.get(i);
+            assertThat(result.getRequest(), is(sameInstance(requests.get(i))));
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getError(), is(nullValue()));
+            assertThat(result.getTransaction().getTransactionToken(), is(equalTo("TOKEN_TICKET_" + i)));
+        }
+        assertThat(smsTokens, hasSize(20));
+        assertThat(smsTokens, hasItem("Bearer TOKEN_TICKET_7"));
+    }
+
+    @Test
+    public void shouldNotAbortOnFailures() throws Exception {
+        List<EnrollmentRequest> requests = Arrays.asList(
+                new EnrollmentRequest("TICKET_0", EnrollmentType.TOTP()),
+                new EnrollmentRequest("CONFIRMED_1", EnrollmentType.SMS("PHONE_NUMBER")),
+                new EnrollmentRequest("NOT_FOUND_2", EnrollmentType.TOTP()),
+                new EnrollmentRequest("TICKET_3", EnrollmentType.SMS("PHONE_NUMBER")));
+
+        List<EnrollmentResult> results = guardian.requestEnrollAll(requests, BulkOptions.newBuilder().build());
+
+        assertThat(results.get(0).isSuccessful(), is(true));
+        assertThat(results.get(1).isSuccessful(), is(false));
+        assertThat(results.get(1).getTransaction(), is(nullValue()));
+        assertThat(((GuardianException) results.get(1).getError()).isAlreadyEnrolled(), is(true));
+        assertThat(((GuardianException) results.get(2).getError()).isEnrollmentNotFound(), is(true));
+        assertThat(results.get(3).getTransaction().getTransactionToken(), is(equalTo("TOKEN_TICKET_3")));
+        // the already enrolled one doesn't send the SMS
+        assertThat(smsTokens, contains("Bearer TOKEN_TICKET_3"));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldNotHangOnMalformedResponses() throws Exception {
+        List<EnrollmentRequest> requests = Arrays.asList(
+                new EnrollmentRequest("MALFORMED_0", EnrollmentType.TOTP()),
+                new EnrollmentRequest("TICKET_1", EnrollmentType.TOTP()),
+                new EnrollmentRequest("MALFORMED_2", EnrollmentType.SMS("PHONE_NUMBER")));
+
+        List<EnrollmentResult> results = guardian.requestEnrollAll(requests, BulkOptions.newBuilder().build());
+
+        assertThat(results.get(0).isSuccessful(), is(false));
+        assertThat(results.get(0).getError(), is(instanceOf(RuntimeException.class)));
+        assertThat(results.get(1).getTransaction().getTransactionToken(), is(equalTo("TOKEN_TICKET_1")));
+        assertThat(results.get(2).getError(), is(instanceOf(RuntimeException.class)));
+        assertThat(smsTokens, is(empty()));
+    }
+
+    @Test
+    public void shouldLimitEnrollmentsInFlight() throws Exception {
+        List<EnrollmentRequest> requests = requests("TICKET_", 12, EnrollmentType.TOTP());
+
+        guardian.requestEnrollAll(requests, BulkOptions.newBuilder().maxInFlight(3).build());
+
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(3)));
+        assertThat(server.getRequestCount(), is(equalTo(12)));
+    }
+
+    @Test
+    public void shouldReportProgress() throws Exception {
+        List<EnrollmentRequest> requests = requests("TICKET_", 5, EnrollmentType.TOTP());
+        requests.add(new EnrollmentRequest("NOT_FOUND_5", EnrollmentType.TOTP()));
+        final List<int[]> progress = new CopyOnWriteArrayList<>();
+
+        guardian.requestEnrollAll(requests, BulkOptions.newBuilder()
+                .progressListener(new BulkOptions.ProgressListener() {
+                    @Override
+                    public void onProgress(int completed, int failed, int total) {
+                        progress.add(new int[]{completed, failed, total});
+                    }
+                })
+                .build());
+
+        assertThat(progress, hasSize(6));
+        for (int i = 0; i < 6; i++) {
+            assertThat(progress.get(i)[0], is(equalTo(i + 1)));
+            assertThat(progress.get(i)[2], is(equalTo(6)));
+        }
+        assertThat(progress.get(5)[1], is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldConfirmEnrollAll() throws Exception {
+        List<ConfirmationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new ConfirmationRequest("TOKEN_" + i, "123456"));
+        }
+
+        ConfirmationResults results = guardian.confirmEnrollAll(requests,
+                BulkOptions.newBuilder().maxInFlight(4).build());
+
+        assertThat(results.getResults(), hasSize(10));
+        assertThat(results.getResults().get(3).getRequest(), is(sameInstance(requests.get(3))));
+        assertThat(results.getSuccessCount(), is(equalTo(10)));
+        assertThat(results.getFailureCount(), is(equalTo(0)));
+        assertThat(results.getFailuresByErrorCode().isEmpty(), is(true));
+        assertThat(results.getLatency().getCount(), is(equalTo(10L)));
+        // every request takes at least the 20ms of the server
+        assertThat(results.getLatency().getPercentileNanos(50), is(greaterThanOrEqualTo(20_000_000L)));
+        assertThat(results.getWallTimeNanos(), is(greaterThanOrEqualTo(results.getLatency().getMaxNanos())));
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(4)));
+    }
+
+    @Test
+    public void shouldGroupConfirmationFailuresByErrorCode() throws Exception {
+        List<ConfirmationRequest> requests = Arrays.asList(
+                new ConfirmationRequest("TOKEN_0", "123456"),
+                new ConfirmationRequest("INVALID_1", "000000"),
+                new ConfirmationRequest("MISSING_2", "123456"),
+                new ConfirmationRequest("INVALID_3", "000000"),
+                new ConfirmationRequest("TOKEN_4", "123456"));
+
+        ConfirmationResults results = guardian.confirmEnrollAll(requests, BulkOptions.newBuilder().build());
+
+        assertThat(results.getSuccessCount(), is(equalTo(2)));
+        assertThat(results.getFailureCount(), is(equalTo(3)));
+        assertThat(results.getFailuresByErrorCode().keySet(), containsInAnyOrder("invalid_otp", "transaction_not_found"));
+
+        List<ConfirmationResult> invalidOtp = results.getFailures("invalid_otp");
+        assertThat(invalidOtp, hasSize(2));
+        assertThat(invalidOtp.get(0).getRequest(), is(sameInstance(requests.get(1))));
+        assertThat(invalidOtp.get(1).getRequest(), is(sameInstance(requests.get(3))));
+        assertThat(((GuardianException) invalidOtp.get(0).getError()).isInvalidOTP(), is(true));
+
+        List<ConfirmationResult> notFound = results.getFailures("transaction_not_found");
+        assertThat(((GuardianException) notFound.get(0).getError()).isTransactionNotFound(), is(true));
+        assertThat(notFound.get(0).getErrorCode(), is(equalTo("transaction_not_found")));
+        assertThat(results.getFailures(null), is(empty()));
+        assertThat(results.getResults().get(4).isSuccessful(), is(true));
+        assertThat(results.getResults().get(4).getErrorCode(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldGroupConnectionFailuresUnderNullErrorCode() throws Exception {
+        server.shutdown();
+
+        ConfirmationResults results = guardian.confirmEnrollAll(
+                Arrays.asList(new ConfirmationRequest("TOKEN_0", "123456")), BulkOptions.newBuilder().build());
+
+        assertThat(results.getFailures(null), hasSize(1));
+        assertThat(results.getFailures(null).get(0).getError(), is(instanceOf(IOException.class)));
+    }
+
+    @Test
+    public void shouldFailWithNullConfirmationRequests() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid confirmation requests");
+
+        guardian.confirmEnrollAll(null, BulkOptions.newBuilder().build());
+    }
+
+    @Test
+    public void shouldFailConfirmationRequestWithNullOtp() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid OTP");
+
+        new ConfirmationRequest("TOKEN", null);
+    }
+
+    @Test
+    public void shouldReturnEmptyResultsForNoRequests() throws Exception {
+        List<EnrollmentResult> results = guardian
+                .requestEnrollAll(new ArrayList<EnrollmentRequest>(), BulkOptions.newBuilder().build());
+
+        assertThat(results, is(empty()));
+    }
+
+    @Test
+    public void shouldFailWithNullRequests() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid enrollment requests");
+
+        guardian.requestEnrollAll(null, BulkOptions.newBuilder().build());
+    }
+
+    @Test
+    public void shouldFailWithNullOptions() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid bulk options");
+
+        guardian.requestEnrollAll(new ArrayList<EnrollmentRequest>(), null);
+    }
+
+    @Test
+    public void shouldFailWithInvalidMaxInFlight() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid max in flight: 0");
+
+        BulkOptions.newBuilder().maxInFlight(0);
+    }
+
+    @Test
+    public void shouldFailEnrollmentRequestWithNullTicket() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid enrollment ticket");
+
+        new EnrollmentRequest(null, EnrollmentType.TOTP());
+    }
+}
@@ -25,6 +25,7 @@ package com.auth0.guardian;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.MapType;
 import okhttp3.HttpUrl;
+import okhttp3.Protocol;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -33,6 +34,7 @@ import okio.Buffer;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -40,6 +42,7 @@ public class MockServer {
 
     public static final String START_FLOW_VALID = "src/test/resources/start_flow_valid.json";
     public static final String START_FLOW_CONFIRMED = "src/test/resources/start_flow_confirmed.json";
+    public static final String START_FLOW_EMPTY = "src/test/resources/start_flow_empty.json";
     public static final String SMS_ENROLL_VALID = "src/test/resources/sms_enroll_valid.json";
 
     public static final String ERROR_500 = "src/test/resources/error_500.txt";
@@ -57,6 +60,12 @@ public class MockServer {
         server.start();
     }
 
+    public MockServer(Protocol... protocols) throws Exception {
+        server = new MockWebServer();
+        server.setProtocols(Arrays.asList(protocols));
+        server.start();
+    }
+
     public void stop() throws IOException {
         server.shutdown();
     }
@@ -69,6 +78,10 @@ public class MockServer {
         return server.takeRequest();
     }
 
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
     private String readTextFile(String path) throws IOException {
         return new String(Files.readAllBytes(Paths.get(path)));
     }
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import okhttp3.HttpUrl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class OtpAuthUriTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    // the way Transaction.totpURI used to build the URI
+    private static String httpUrlTotpUri(String user, String issuer, String secret) {
+        return new HttpUrl.Builder()
+                .scheme("https")
+                .host("totp")
+                .addPathSegment(String.format("%s:%s", issuer, user))
+                .addQueryParameter("secret", secret)
+                .addQueryParameter("issuer", issuer)
+                .build()
+                .toString()
+                .replaceFirst("https", "otpauth");
+    }
+
+    private static OtpAuthUri totpUri(String user, String issuer, String secret) {
+        return OtpAuthUri.newBuilder()
+                .issuer(issuer)
+                .accountName(user)
+                .secret(secret)
+                .build();
+    }
+
+    @Test
+    public void shouldWriteTheDefaultsLikeHttpUrl() throws Exception {
+        String[] texts = {"user", "john.doe@example.com", "Example Company", "user%name", "compa\u00f1y?!",
+                " !\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~", "\u65e5\u672c", "\ud83d\udd11 key", "tab\tnew\nline\u007f",
+                "lone \ud83d surrogate", "", "a+b=c&d"};
+
+        for (String user : texts) {
+            for (String issuer : texts) {
+                assertThat(totpUri(user, issuer, "JBSWY3DPEHPK3PXP").toString(),
+                        is(equalTo(httpUrlTotpUri(user, issuer, "JBSWY3DPEHPK3PXP"))));
+            }
+        }
+    }
+
+    @Test
+    public void shouldWriteRandomTextsLikeHttpUrl() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            char[] chars = new char[1 + random.nextInt(20)];
+            for (int j = 0; j < chars.length; j++) {
+                // mostly ASCII, with some Latin-1, BMP and surrogate characters
+                int bound = random.nextInt(4) == 0 ? 0xFFFF : 0x100;
+                chars[j] = (char) random.nextInt(bound);
+            }
+            String text = new String(chars);
+
+            assertThat(totpUri(text, text, text).toString(), is(equalTo(httpUrlTotpUri(text, text, text))));
+        }
+    }
+
+    @Test
+    public void shouldWriteToAppendable() throws Exception {
+        StringWriter writer = new StringWriter();
+        writer.write("uri: ");
+
+        StringWriter returned = totpUri("user", "issuer", "SECRET").appendTo(writer);
+
+        assertThat(returned, is(sameInstance(writer)));
+        assertThat(writer.toString(), is(equalTo("uri: otpauth://totp/issuer:user?secret=SECRET&issuer=issuer")));
+    }
+
+    @Test
+    public void shouldWriteAllParameters() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.newBuilder()
+                .issuer("ACME Co")
+                .accountName("john.doe@email.com")
+                .secret("HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ")
+                .algorithm(Totp.Algorithm.SHA256)
+                .digits(8)
+                .period(1, TimeUnit.MINUTES)
+                .build();
+
+        assertThat(uri.toString(), is(equalTo("otpauth://totp/ACME%20Co:john.doe@email.com"
+                + "?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=ACME%20Co&algorithm=SHA256&digits=8&period=60")));
+    }
+
+    @Test
+    public void shouldWriteHotpCounter() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.newBuilder()
+                .type(OtpAuthUri.Type.HOTP)
+                .accountName("user")
+                .secret("SECRET")
+                .counter(5)
+                .period(60, TimeUnit.SECONDS)
+                .build();
+
+        assertThat(uri.toString(), is(equalTo("otpauth://hotp/user?secret=SECRET&counter=5")));
+    }
+
+    @Test
+    public void shouldWriteWithoutIssuer() throws Exception {
+        assertThat(totpUri("user name", null, "SECRET").toString(),
+                is(equalTo("otpauth://totp/user%20name?secret=SECRET")));
+    }
+
+    @Test
+    public void shouldParseAllParameters() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.parse("otpauth://totp/ACME%20Co:john.doe@email.com"
+                + "?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=ACME%20Co&algorithm=SHA512&digits=7&period=45");
+
+        assertThat(uri.getType(), is(OtpAuthUri.Type.TOTP));
+        assertThat(uri.getIssuer(), is(equalTo("ACME Co")));
+        assertThat(uri.getAccountName(), is(equalTo("john.doe@email.com")));
+        assertThat(uri.getSecret(), is(equalTo("HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ")));
+        assertThat(uri.getAlgorithm(), is(Totp.Algorithm.SHA512));
+        assertThat(uri.getDigits(), is(7));
+        assertThat(uri.getPeriod(TimeUnit.SECONDS), is(45L));
+        assertThat(uri.getCounter(), is(0L));
+    }
+
+    @Test
+    public void shouldParseDefaults() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.parse("otpauth://totp/user?secret=SECRET");
+
+        assertThat(uri.getIssuer(), is(nullValue()));
+        assertThat(uri.getAccountName(), is(equalTo("user")));
+        assertThat(uri.getAlgorithm(), is(Totp.Algorithm.SHA1));
+        assertThat(uri.getDigits(), is(6));
+        assertThat(uri.getPeriod(TimeUnit.SECONDS), is(30L));
+    }
+
+    @Test
+    public void shouldParseHotp() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.parse("otpauth://hotp/issuer:user?secret=SECRET&counter=12345678901");
+
+        assertThat(uri.getType(), is(OtpAuthUri.Type.HOTP));
+        assertThat(uri.getCounter(), is(12345678901L));
+    }
+
+    @Test
+    public void shouldParseLeniently() throws Exception {
+        OtpAuthUri uri = OtpAuthUri.parse("OTPAUTH://TOTP/Label%20Issuer:%20%20user+name"
+                + "?image=https%3A%2F%2Fexample.com%2Flogo.png&Secret=ignored&secret=SECRET&issuer=Real+Issuer"
+                + "&algorithm=sha256#fragment");
+
+        assertThat(uri.getIssuer(), is(equalTo("Real Issuer")));
+        assertThat(uri.getAccountName(), is(equalTo("user+name")));
+        assertThat(uri.getSecret(), is(equalTo("SECRET")));
+        assertThat(uri.getAlgorithm(), is(Totp.Algorithm.SHA256));
+    }
+
+    @Test
+    public void shouldParseWhatItWrites() throws Exception {
+        String[] texts = {"user", "compa\u00f1y?!", " !\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~", "\ud83d\udd11 key"};
+
+        for (String text : texts) {
+            OtpAuthUri uri = OtpAuthUri.newBuilder()
+                    .issuer(text.replace(":", ""))
+                    .accountName(text.trim())
+                    .secret(text)
+                    .algorithm(Totp.Algorithm.SHA512)
+                    .digits(9)
+                    .period(10, TimeUnit.SECONDS)
+                    .build();
+
+            OtpAuthUri parsed = OtpAuthUri.parse(uri.toString());
+
+            assertThat(parsed.getIssuer(), is(equalTo(uri.getIssuer())));
+            assertThat(parsed.getAccountName(), is(equalTo(uri.getAccountName())));
+            assertThat(parsed.getSecret(), is(equalTo(uri.getSecret())));
+            assertThat(parsed.toString(), is(equalTo(uri.toString())));
+        }
+    }
+
+    @Test
+    public void shouldFailParseWithOtherScheme() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: not an otpauth URI");
+
+        OtpAuthUri.parse("https://totp/user?secret=SECRET");
+    }
+
+    @Test
+    public void shouldFailParseWithUnknownType() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: unknown type motp");
+
+        OtpAuthUri.parse("otpauth://motp/user?secret=SECRET");
+    }
+
+    @Test
+    public void shouldFailParseWithoutSecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: missing secret");
+
+        OtpAuthUri.parse("otpauth://totp/user?issuer=issuer");
+    }
+
+    @Test
+    public void shouldFailParseHotpWithoutCounter() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: missing counter");
+
+        OtpAuthUri.parse("otpauth://hotp/user?secret=SECRET");
+    }
+
+    @Test
+    public void shouldFailParseWithInvalidDigits() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: invalid digits 12");
+
+        OtpAuthUri.parse("otpauth://totp/user?secret=SECRET&digits=12");
+    }
+
+    @Test
+    public void shouldFailParseWithUnknownAlgorithm() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid otpauth URI: unknown algorithm MD5");
+
+        OtpAuthUri.parse("otpauth://totp/user?secret=SECRET&algorithm=MD5");
+    }
+
+    @Test
+    public void shouldFailParseWithInvalidPercentEncodingWithoutTheSecretInTheMessage() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(not(containsString("SECRET")));
+
+        OtpAuthUri.parse("otpauth://totp/user%2?secret=SECRET");
+    }
+
+    @Test
+    public void shouldFailWithoutAccountName() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid account name");
+
+        OtpAuthUri.newBuilder()
+                .secret("SECRET")
+                .build();
+    }
+
+    @Test
+    public void shouldFailWithoutSecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid secret");
+
+        OtpAuthUri.newBuilder()
+                .accountName("user")
+                .build();
+    }
+
+    @Test
+    public void shouldFailWithEmptySecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid secret");
+
+        OtpAuthUri.newBuilder()
+                .secret("");
+    }
+
+    @Test
+    public void shouldFailWithInvalidDigits() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid digits: 5");
+
+        OtpAuthUri.newBuilder()
+                .digits(5);
+    }
+
+    @Test
+    public void shouldFailWithInvalidPeriod() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid period: 1500");
+
+        OtpAuthUri.newBuilder()
+                .period(1500, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shouldFailWithNegativeCounter() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid counter: -1");
+
+        OtpAuthUri.newBuilder()
+                .counter(-1);
+    }
+
+    @Test
+    public void shouldFailWithNullType() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid type");
+
+        OtpAuthUri.newBuilder()
+                .type(null);
+    }
+
+    @Test
+    public void shouldFailWithNullAlgorithm() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid algorithm");
+
+        OtpAuthUri.newBuilder()
+                .algorithm(null);
+    }
+}
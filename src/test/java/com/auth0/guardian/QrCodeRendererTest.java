@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class QrCodeRendererTest {
+
+    private static final String URI = "otpauth://totp/issuer:user?secret=JBSWY3DPEHPK3PXP&issuer=issuer";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldRenderPng() throws Exception {
+        QrCodeRenderer renderer = QrCodeRenderer.newBuilder()
+                .errorCorrection(QrCode.ErrorCorrection.Q)
+                .moduleSize(3)
+                .quietZone(2)
+                .build();
+        QrCode qrCode = QrCode.encode(URI, QrCode.ErrorCorrection.Q);
+
+        byte[] png = renderer.png(URI);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        int width = (qrCode.getSize() + 4) * 3;
+        assertThat(image.getWidth(), is(equalTo(width)));
+        assertThat(image.getHeight(), is(equalTo(width)));
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean dark = (image.getRGB(x, y) & 0xFFFFFF) == 0;
+                assertThat(dark, is(qrCode.isDark(x / 3 - 2, y / 3 - 2)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldRenderPngHeaderWithChecksum() throws Exception {
+        byte[] png = QrCodeRenderer.newBuilder().build().png(URI);
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+
+        assertThat(Arrays.copyOf(png, 8), is(equalTo(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})));
+        assertThat(buffer.getInt(8), is(equalTo(13)));
+        assertThat(new String(png, 12, 4, StandardCharsets.US_ASCII), is(equalTo("IHDR")));
+        // 1 bit per pixel, grayscale
+        assertThat(png[24], is(equalTo((byte) 1)));
+        assertThat(png[25], is(equalTo((byte) 0)));
+        CRC32 crc = new CRC32();
+        crc.update(png, 12, 17);
+        assertThat(buffer.getInt(29), is(equalTo((int) crc.getValue())));
+        assertThat(new String(png, png.length - 8, 4, StandardCharsets.US_ASCII), is(equalTo("IEND")));
+    }
+
+    @Test
+    public void shouldRenderSvg() throws Exception {
+        QrCode qrCode = QrCode.encode(URI, QrCode.ErrorCorrection.M);
+
+        String svg = QrCodeRenderer.newBuilder()
+                .moduleSize(5)
+                .build()
+                .svg(URI);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8)));
+        Element root = document.getDocumentElement();
+        int modules = qrCode.getSize() + 8;
+        assertThat(root.getTagName(), is(equalTo("svg")));
+        assertThat(root.getAttribute("viewBox"), is(equalTo("0 0 " + modules + " " + modules)));
+        assertThat(root.getAttribute("width"), is(equalTo(String.valueOf(modules * 5))));
+        assertThat(root.getAttribute("height"), is(equalTo(String.valueOf(modules * 5))));
+
+        // the top left finder pattern starts with a run of 7 dark modules after the quiet zone
+        String path = ((Element) document.getElementsByTagName("path").item(0)).getAttribute("d");
+        assertThat(path, startsWith("M4,4h7v1h-7z "));
+    }
+
+    @Test
+    public void shouldServeRepeatedRendersFromCache() throws Exception {
+        QrCodeRenderer renderer = QrCodeRenderer.newBuilder()
+                .cacheSize(16)
+                .build();
+
+        byte[] png = renderer.png(URI);
+        byte[] cached = renderer.png(URI);
+        String svg = renderer.svg(URI);
+
+        assertThat(cached, is(equalTo(png)));
+        assertThat(cached, is(not(sameInstance(png))));
+        assertThat(renderer.svg(URI), is(sameInstance(svg)));
+    }
+
+    @Test
+    public void shouldNotExposeCachedPng() throws Exception {
+        QrCodeRenderer renderer = QrCodeRenderer.newBuilder()
+                .cacheSize(16)
+                .build();
+
+        byte[] png = renderer.png(URI);
+        byte[] copy = png.clone();
+        Arrays.fill(png, (byte) 0);
+
+        assertThat(renderer.png(URI), is(equalTo(copy)));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedRenders() throws Exception {
+        QrCodeRenderer renderer = QrCodeRenderer.newBuilder()
+                .cacheSize(2)
+                .build();
+
+        String first = renderer.svg("otpauth://first");
+        String second = renderer.svg("otpauth://second");
+        assertThat(renderer.svg("otpauth://first"), is(sameInstance(first)));
+        renderer.svg("otpauth://third");
+
+        assertThat(renderer.svg("otpauth://first"), is(sameInstance(first)));
+        assertThat(renderer.svg("otpauth://second"), is(not(sameInstance(second))));
+    }
+
+    @Test
+    public void shouldNotCacheByDefault() throws Exception {
+        QrCodeRenderer renderer = QrCodeRenderer.newBuilder().build();
+
+        String svg = renderer.svg(URI);
+
+        assertThat(renderer.svg(URI), is(equalTo(svg)));
+        assertThat(renderer.svg(URI), is(not(sameInstance(svg))));
+    }
+
+    @Test
+    public void shouldFailWithTextTooLong() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Text too long for a QR code");
+
+        char[] text = new char[2000];
+        Arrays.fill(text, 'a');
+        QrCodeRenderer.newBuilder()
+                .errorCorrection(QrCode.ErrorCorrection.H)
+                .build()
+                .png(new String(text));
+    }
+
+    @Test
+    public void shouldFailWithNullErrorCorrection() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid error correction");
+
+        QrCodeRenderer.newBuilder().errorCorrection(null);
+    }
+
+    @Test
+    public void shouldFailWithInvalidModuleSize() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid module size: 0");
+
+        QrCodeRenderer.newBuilder().moduleSize(0);
+    }
+
+    @Test
+    public void shouldFailWithInvalidQuietZone() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid quiet zone: -1");
+
+        QrCodeRenderer.newBuilder().quietZone(-1);
+    }
+
+    @Test
+    public void shouldFailWithInvalidCacheSize() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid cache size: -1");
+
+        QrCodeRenderer.newBuilder().cacheSize(-1);
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class QrCodeTest {
+
+    private static final String[] OTPAUTH_X_L = {
+            "#######...###.#######",
+            "#.....#.###.#.#.....#",
+            "#.###.#...###.#.###.#",
+            "#.###.#.##..#.#.###.#",
+            "#.###.#..#..#.#.###.#",
+            "#.....#.#..#..#.....#",
+            "#######.#.#.#.#######",
+            ".........#...........",
+            "#####.###..#.#.#.#.#.",
+            "...#.#..#.###.#.#####",
+            "..#..##.###.#.##..##.",
+            "####.#...####..#.####",
+            "#.#.#.#.###.#.####.##",
+            "........###.#####.#.#",
+            "#######.####.##...##.",
+            "#.....#...#....#.####",
+            "#.###.#.##.#..#.....#",
+            "#.###.#.#.#.###.#.#..",
+            "#.###.#.#.#.###..##..",
+            "#.....#.#.#.##...##..",
+            "#######.###..##..#.#.",
+    };
+
+    private static final String EXAMPLE_URI = "otpauth://totp/Example%20Company:john.doe@example.com"
+            + "?secret=JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP&issuer=Example%20Company";
+
+    // version 7-M, with 4 blocks of 15 and 16 data codewords, the same modules as the ZXing encoder
+    private static final String[] EXAMPLE_URI_M = {
+            "#######.#.#....###..#..#..###.###...#.#######",
+            "#.....#...##.#.##.#.###.#.##...###.#..#.....#",
+            "#.###.#..#....##..##..###..#.#..##.#..#.###.#",
+            "#.###.#.##.#.#..#..###.#.##.#..#...##.#.###.#",
+            "#.###.#.###.....###.#####.#.#####.###.#.###.#",
+            "#.....#.#..#.#####.##...##.##..##.....#.....#",
+            "#######.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#######",
+            "........##.......####...#....###....#........",
+            "#...#.###....#####.#########..#.###.######..#",
+            "##.###.###.##.###.#..#....##.####..##.##.....",
+            ".#.##.#.########.#.#..#...#......#...##.#..#.",
+            "##.##..###.####.##....#....##.#.#.....#..#.##",
+            "...#..#.##..#######.#...#..#..#.###..###.#...",
+            "..##.#......#..#...####.#.#..#####.##.###.##.",
+            "#.#...###.#.##..#..###....#####.##.#..#####..",
+            "..#.#...#.......##....##..#.#.####...........",
+            "...#.###..#...#.#.#..##.#.##.#..#........####",
+            "........####.##..#.#...#.#########..#.##.####",
+            "..###.##.#...#.###..###..#####.#..###..#.###.",
+            ".#..#...#.##...###.#..#.####..###.####.#....#",
+            ".###########...#.########....##.##.######..#.",
+            "#...#...#.###.##.##.#...#.##.##.##.##...###..",
+            ".##.#.#.#..#.#.#.#..#.#.#.#.#.###..##.#.##.#.",
+            "..#.#...###.#.##....#...####.#.#...##...#...#",
+            "...######.#.##..#.##########..#.###.######...",
+            "######.....#.##..##....#..##.##..#.##.##...#.",
+            "#...#.###.#..#.#....#.#.#.####.....#.#...###.",
+            "#.#.##.###..##.##..##.##.##....##.###.#.....#",
+            ".#.##.#...#.#######.##.##....##.##..#.###...#",
+            ".#####.#..###.#....#..###.#.#.#.##..####..#.#",
+            "...##.#.######.#...#.#.##.######.###.#..#.##.",
+            "####.#..#.##.#.#..#####.....#..####.#.###....",
+            "..#.#.##.##....#....##..#..#.##.#...#..#####.",
+            ".##.##.###..#.##.#.#.#..#.#.###..#.#.#.#...##",
+            "....#.#.###..##...#..#.....##.#####.#......#.",
+            ".####...#...####..#...#..###.#..##....###..#.",
+            "#..##.##....##...########.##..#.#...######...",
+            "........###...#.###.#...#.#..##.##..#...#.##.",
+            "#######.#.#######.###.#.###..##..#.##.#.##.#.",
+            "#.....#....#.##..#.##...##.#.####.###...#..#.",
+            "#.###.#.###.#....#.######.##...##..######..##",
+            "#.###.#...######........###..##..#.#..##.....",
+            "#.###.#...#...##.#...##...##.#..##......####.",
+            "#.....#.....#....##.###.###.....###..#.......",
+            "#######.##..#.#.#.#.###.#.#..##.#..##.##....#",
+    };
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static String[] rows(QrCode qrCode) {
+        String[] rows = new String[qrCode.getSize()];
+        for (int y = 0; y < qrCode.getSize(); y++) {
+            StringBuilder row = new StringBuilder();
+            for (int x = 0; x < qrCode.getSize(); x++) {
+                row.append(qrCode.isDark(x, y) ? '#' : '.');
+            }
+            rows[y] = row.toString();
+        }
+        return rows;
+    }
+
+    private static String formatBits(QrCode qrCode) {
+        // the first copy, from the most significant bit
+        StringBuilder bits = new StringBuilder();
+        for (int x = 0; x <= 5; x++) {
+            bits.append(qrCode.isDark(x, 8) ? '1' : '0');
+        }
+        bits.append(qrCode.isDark(7, 8) ? '1' : '0');
+        bits.append(qrCode.isDark(8, 8) ? '1' : '0');
+        bits.append(qrCode.isDark(8, 7) ? '1' : '0');
+        for (int y = 5; y >= 0; y--) {
+            bits.append(qrCode.isDark(8, y) ? '1' : '0');
+        }
+        return bits.toString();
+    }
+
+    @Test
+    public void shouldEncodeModules() throws Exception {
+        QrCode qrCode = QrCode.encode("otpauth://x", QrCode.ErrorCorrection.L);
+
+        assertThat(qrCode.getVersion(), is(equalTo(1)));
+        assertThat(qrCode.getSize(), is(equalTo(21)));
+        assertThat(qrCode.getErrorCorrection(), is(QrCode.ErrorCorrection.L));
+        assertThat(qrCode.getMask(), is(equalTo(2)));
+        assertThat(rows(qrCode), is(equalTo(OTPAUTH_X_L)));
+    }
+
+    private static int versionBits(QrCode qrCode, boolean bottomLeft) {
+        // from the least significant bit, 3 bits per column of the bottom-left copy and per row of the top-right one
+        int size = qrCode.getSize();
+        int bits = 0;
+        for (int i = 0; i < 18; i++) {
+            boolean dark = bottomLeft
+                    ? qrCode.isDark(i / 3, size - 11 + i % 3)
+                    : qrCode.isDark(size - 11 + i % 3, i / 3);
+            if (dark) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
+    }
+
+    @Test
+    public void shouldEncodeMultipleBlocks() throws Exception {
+        QrCode qrCode = QrCode.encode(EXAMPLE_URI, QrCode.ErrorCorrection.M);
+
+        assertThat(qrCode.getVersion(), is(equalTo(7)));
+        assertThat(qrCode.getSize(), is(equalTo(45)));
+        assertThat(qrCode.getMask(), is(equalTo(4)));
+        assertThat(rows(qrCode), is(equalTo(EXAMPLE_URI_M)));
+    }
+
+    @Test
+    public void shouldEncodeVersionBitsOfTheStandard() throws Exception {
+        QrCode qrCode = QrCode.encode(EXAMPLE_URI, QrCode.ErrorCorrection.M);
+
+        assertThat(versionBits(qrCode, true), is(equalTo(0x07C94)));
+        assertThat(versionBits(qrCode, false), is(equalTo(0x07C94)));
+        assertThat(versionBits(QrCode.encode(repeat('a', 2953), QrCode.ErrorCorrection.L), true),
+                is(equalTo(0x28C69)));
+    }
+
+    @Test
+    public void shouldEncodeFormatBitsOfTheStandard() throws Exception {
+        String[] masksOfL = {"111011111000100", "111001011110011", "111110110101010", "111100010011101",
+                "110011000101111", "110001100011000", "110110001000001", "110100101110110"};
+        for (int mask = 0; mask < 8; mask++) {
+            assertThat(formatBits(QrCode.encode("otpauth://x", QrCode.ErrorCorrection.L, mask)),
+                    is(equalTo(masksOfL[mask])));
+        }
+        assertThat(formatBits(QrCode.encode("otpauth://x", QrCode.ErrorCorrection.M, 0)),
+                is(equalTo("101010000010010")));
+        assertThat(formatBits(QrCode.encode("otpauth://x", QrCode.ErrorCorrection.Q, 0)),
+                is(equalTo("011010101011111")));
+        assertThat(formatBits(QrCode.encode("otpauth://x", QrCode.ErrorCorrection.H, 0)),
+                is(equalTo("001011010001001")));
+    }
+
+    @Test
+    public void shouldDrawFinderAndTimingPatterns() throws Exception {
+        QrCode qrCode = QrCode.encode(repeat('a', 200), QrCode.ErrorCorrection.M);
+        int size = qrCode.getSize();
+
+        for (int i = 0; i < 7; i++) {
+            assertThat(qrCode.isDark(i, 0), is(true));
+            assertThat(qrCode.isDark(size - 1 - i, 0), is(true));
+            assertThat(qrCode.isDark(0, size - 1 - i), is(true));
+        }
+        assertThat(qrCode.isDark(7, 7), is(false));
+        for (int i = 8; i < size - 8; i++) {
+            assertThat(qrCode.isDark(i, 6), is(i % 2 == 0));
+            assertThat(qrCode.isDark(6, i), is(i % 2 == 0));
+        }
+        // the dark module
+        assertThat(qrCode.isDark(8, size - 8), is(true));
+    }
+
+    @Test
+    public void shouldUseSmallestVersionThatFits() throws Exception {
+        assertThat(QrCode.encode(repeat('a', 17), QrCode.ErrorCorrection.L).getVersion(), is(equalTo(1)));
+        assertThat(QrCode.encode(repeat('a', 18), QrCode.ErrorCorrection.L).getVersion(), is(equalTo(2)));
+        assertThat(QrCode.encode(repeat('a', 14), QrCode.ErrorCorrection.M).getVersion(), is(equalTo(1)));
+        assertThat(QrCode.encode(repeat('a', 15), QrCode.ErrorCorrection.M).getVersion(), is(equalTo(2)));
+        assertThat(QrCode.encode(repeat('a', 7), QrCode.ErrorCorrection.H).getVersion(), is(equalTo(1)));
+        assertThat(QrCode.encode(repeat('a', 8), QrCode.ErrorCorrection.H).getVersion(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldEncodeLargestVersion() throws Exception {
+        QrCode qrCode = QrCode.encode(repeat('a', 2953), QrCode.ErrorCorrection.L);
+
+        assertThat(qrCode.getVersion(), is(equalTo(40)));
+        assertThat(qrCode.getSize(), is(equalTo(177)));
+    }
+
+    @Test
+    public void shouldEncodeUtf8() throws Exception {
+        // two bytes per character
+        assertThat(QrCode.encode(repeat('\u00e9', 8), QrCode.ErrorCorrection.L).getVersion(), is(equalTo(1)));
+        assertThat(QrCode.encode(repeat('\u00e9', 9), QrCode.ErrorCorrection.L).getVersion(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldBeLightOutsideOfCode() throws Exception {
+        QrCode qrCode = QrCode.encode("otpauth://x", QrCode.ErrorCorrection.L);
+
+        assertThat(qrCode.isDark(-1, 0), is(false));
+        assertThat(qrCode.isDark(0, -1), is(false));
+        assertThat(qrCode.isDark(21, 0), is(false));
+        assertThat(qrCode.isDark(0, 21), is(false));
+    }
+
+    @Test
+    public void shouldFailWithTextTooLong() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Text too long for a QR code: 2954 bytes");
+
+        QrCode.encode(repeat('a', 2954), QrCode.ErrorCorrection.L);
+    }
+
+    @Test
+    public void shouldFailWithNullText() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid text");
+
+        QrCode.encode(null, QrCode.ErrorCorrection.L);
+    }
+
+    @Test
+    public void shouldFailWithNullErrorCorrection() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid error correction");
+
+        QrCode.encode("otpauth://x", null);
+    }
+}
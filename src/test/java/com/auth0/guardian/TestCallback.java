@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import com.auth0.guardian.networking.Callback;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Callback that lets a test wait for the result of an asynchronous request
+ */
+public class TestCallback<T> implements Callback<T> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private volatile T result;
+    private volatile Exception error;
+    private volatile Thread thread;
+
+    @Override
+    public void onSuccess(T result) {
+        this.result = result;
+        this.thread = Thread.currentThread();
+        latch.countDown();
+    }
+
+    @Override
+    public void onFailure(Exception error) {
+        this.error = error;
+        this.thread = Thread.currentThread();
+        latch.countDown();
+    }
+
+    public TestCallback<T> await() throws InterruptedException {
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("The callback was not called");
+        }
+        return this;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TotpTest {
+
+    // the ASCII keys of the test vectors of RFC 6238, encoded in Base32
+    private static final String SHA1_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+    private static final String SHA256_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZA====";
+    private static final String SHA512_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ"
+            + "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNA=";
+
+    private static final long[] RFC_TIMES = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static Totp totp(Totp.Algorithm algorithm) {
+        return Totp.newBuilder()
+                .algorithm(algorithm)
+                .digits(8)
+                .build();
+    }
+
+    private static void assertRfcVectors(Totp totp, String secret, String... codes) {
+        for (int i = 0; i < RFC_TIMES.length; i++) {
+            assertThat(totp.generate(secret, TimeUnit.SECONDS.toMillis(RFC_TIMES[i])), is(equalTo(codes[i])));
+        }
+    }
+
+    @Test
+    public void shouldGenerateRfcVectorsWithSha1() throws Exception {
+        assertRfcVectors(totp(Totp.Algorithm.SHA1), SHA1_SECRET,
+                "94287082", "07081804", "14050471", "89005924", "69279037", "65353130");
+    }
+
+    @Test
+    public void shouldGenerateRfcVectorsWithSha256() throws Exception {
+        assertRfcVectors(totp(Totp.Algorithm.SHA256), SHA256_SECRET,
+                "46119246", "68084774", "67062674", "91819424", "90698825", "77737706");
+    }
+
+    @Test
+    public void shouldGenerateRfcVectorsWithSha512() throws Exception {
+        assertRfcVectors(totp(Totp.Algorithm.SHA512), SHA512_SECRET,
+                "90693936", "25091201", "99943326", "93441116", "38618901", "47863826");
+    }
+
+    @Test
+    public void shouldGenerateSixDigitCodesByDefault() throws Exception {
+        // the HOTP vectors of RFC 4226, one counter per period
+        String[] codes = {"755224", "287082", "359152", "969429", "338314", "254676", "287922", "162583", "399871",
+                "520489"};
+        Totp totp = Totp.newBuilder().build();
+
+        for (int counter = 0; counter < codes.length; counter++) {
+            assertThat(totp.generate(SHA1_SECRET, TimeUnit.SECONDS.toMillis(counter * 30)), is(equalTo(codes[counter])));
+            assertThat(totp.generateCode(SHA1_SECRET, TimeUnit.SECONDS.toMillis(counter * 30)),
+                    is(equalTo(Integer.parseInt(codes[counter]))));
+        }
+    }
+
+    @Test
+    public void shouldGenerateWithConfiguredPeriod() throws Exception {
+        Totp totp = Totp.newBuilder()
+                .period(60, TimeUnit.SECONDS)
+                .build();
+
+        assertThat(totp.generate(SHA1_SECRET, TimeUnit.SECONDS.toMillis(119)), is(equalTo("287082")));
+        assertThat(totp.generate(SHA1_SECRET, TimeUnit.SECONDS.toMillis(120)), is(equalTo("359152")));
+    }
+
+    @Test
+    public void shouldGenerateWithLowerCaseAndGroupedSecret() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+
+        assertThat(totp.generate("gezd gnbv gy3t qojq gezd gnbv gy3t qojq", 0), is(equalTo("755224")));
+    }
+
+    @Test
+    public void shouldSwitchBetweenSecrets() throws Exception {
+        Totp totp = Totp.newBuilder().digits(8).build();
+        long time = TimeUnit.SECONDS.toMillis(59);
+
+        assertThat(totp.generate(SHA1_SECRET, time), is(equalTo("94287082")));
+        assertThat(totp.generate("JBSWY3DPEHPK3PXP", time), is(not(equalTo("94287082"))));
+        assertThat(totp.generate(SHA1_SECRET, time), is(equalTo("94287082")));
+    }
+
+    @Test
+    public void shouldGenerateSameCodesFromSeveralThreads() throws Exception {
+        final Totp totp = Totp.newBuilder().build();
+        final String[] codes = new String[4];
+        Thread[] threads = new Thread[codes.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        totp.generate(j % 2 == 0 ? SHA1_SECRET : "JBSWY3DPEHPK3PXP", 0);
+                    }
+                    codes[index] = totp.generate(SHA1_SECRET, TimeUnit.SECONDS.toMillis(30));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(codes, is(arrayContaining("287082", "287082", "287082", "287082")));
+    }
+
+    @Test
+    public void shouldVerifyCodeOfCurrentStep() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+
+        assertThat(totp.verify(SHA1_SECRET, "287082", TimeUnit.SECONDS.toMillis(45)), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "287083", TimeUnit.SECONDS.toMillis(45)), is(false));
+    }
+
+    @Test
+    public void shouldVerifyCodesWithinSkew() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+        long time = TimeUnit.SECONDS.toMillis(3 * 30);
+
+        assertThat(totp.verify(SHA1_SECRET, "359152", time), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "969429", time), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "338314", time), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "287082", time), is(false));
+        assertThat(totp.verify(SHA1_SECRET, "254676", time), is(false));
+    }
+
+    @Test
+    public void shouldVerifyOnlyCurrentStepWithoutSkew() throws Exception {
+        Totp totp = Totp.newBuilder().skew(0).build();
+        long time = TimeUnit.SECONDS.toMillis(3 * 30);
+
+        assertThat(totp.verify(SHA1_SECRET, "969429", time), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "359152", time), is(false));
+        assertThat(totp.verify(SHA1_SECRET, "338314", time), is(false));
+    }
+
+    @Test
+    public void shouldVerifyAtFirstStep() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+
+        assertThat(totp.verify(SHA1_SECRET, "755224", 0), is(true));
+        assertThat(totp.verify(SHA1_SECRET, "287082", 0), is(true));
+    }
+
+    @Test
+    public void shouldNotVerifyMalformedCodes() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+
+        assertThat(totp.verify(SHA1_SECRET, null, 0), is(false));
+        assertThat(totp.verify(SHA1_SECRET, "75522", 0), is(false));
+        assertThat(totp.verify(SHA1_SECRET, "7552244", 0), is(false));
+        assertThat(totp.verify(SHA1_SECRET, "75522a", 0), is(false));
+    }
+
+    @Test
+    public void shouldVerifyCurrentCode() throws Exception {
+        Totp totp = Totp.newBuilder().build();
+
+        assertThat(totp.verify(SHA1_SECRET, totp.generate(SHA1_SECRET)), is(true));
+    }
+
+    @Test
+    public void shouldFailWithInvalidSecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid Base32 character: _");
+
+        Totp.newBuilder().build().generate("THE_OTP_SECRET", 0);
+    }
+
+    @Test
+    public void shouldFailWithNullSecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid secret");
+
+        Totp.newBuilder().build().verify(null, "123456", 0);
+    }
+
+    @Test
+    public void shouldFailWithEmptySecret() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid secret");
+
+        Totp.newBuilder().build().generate("====", 0);
+    }
+
+    @Test
+    public void shouldFailWithNegativeTime() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid time: -1");
+
+        Totp.newBuilder().build().generate(SHA1_SECRET, -1);
+    }
+
+    @Test
+    public void shouldFailWithNullAlgorithm() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid algorithm");
+
+        Totp.newBuilder().algorithm(null);
+    }
+
+    @Test
+    public void shouldFailWithInvalidDigits() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid digits: 10");
+
+        Totp.newBuilder().digits(10);
+    }
+
+    @Test
+    public void shouldFailWithPeriodNotInSeconds() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid period: 1500");
+
+        Totp.newBuilder().period(1500, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shouldFailWithNegativeSkew() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid skew: -1");
+
+        Totp.newBuilder().skew(-1);
+    }
+}
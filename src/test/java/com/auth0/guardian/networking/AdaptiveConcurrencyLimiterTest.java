@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import com.auth0.guardian.TestCallback;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private FakeTicker ticker;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        ticker = new FakeTicker();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private RequestFactory factory(AdaptiveConcurrencyLimiter limiter) {
+        return new RequestFactory(new OkHttpClient.Builder()
+                .addInterceptor(limiter)
+                .connectionPool(new ConnectionPool(64, 1, TimeUnit.MINUTES))
+                .build());
+    }
+
+    private Request<Void> request(RequestFactory factory) {
+        return factory
+                .newRequest("POST", server.url("/api/verify-otp"), Void.class)
+                .setEndpoint(Endpoint.VERIFY_OTP)
+                .setParameter("code", "123456");
+    }
+
+    @Test
+    public void shouldNotLimitNorSampleWarmingRequests() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .ticker(ticker)
+                .build();
+        final AtomicInteger inFlight = new AtomicInteger(-1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(limiter)
+                .addNetworkInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        inFlight.set(limiter.getInFlight());
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        client.newCall(new okhttp3.Request.Builder()
+                .url(server.url("/"))
+                .head()
+                .tag(WarmingRequest.class, WarmingRequest.TAG)
+                .build()).execute().close();
+
+        assertThat(inFlight.get(), is(equalTo(0)));
+        // a sampled 503 would cut the limit to 18
+        assertThat(limiter.getLimit(), is(equalTo(20)));
+    }
+
+    @Test
+    public void shouldGrowLimitWhileLatencyIsStable() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(10)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 10, false);
+        limiter.onSample(10 * MILLIS, 10, false);
+        limiter.onSample(11 * MILLIS, 10, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(13)));
+    }
+
+    @Test
+    public void shouldShrinkLimitWhenLatencyRises() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 20, false);
+        // ceil(21 * (1 - 10 / 20)) = 11 queued requests
+        limiter.onSample(20 * MILLIS, 20, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(20)));
+    }
+
+    @Test
+    public void shouldKeepLimitWithinQueueThresholds() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 20, false);
+        int limit = limiter.getLimit();
+        // ceil(21 * (1 - 10 / 12.5)) = 5 queued requests
+        limiter.onSample(12500 * MILLIS / 1000, 20, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(limit)));
+    }
+
+    @Test
+    public void shouldCutLimitOnDrop() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 20, true);
+
+        assertThat(limiter.getLimit(), is(equalTo(18)));
+    }
+
+    @Test
+    public void shouldNotGrowLimitWhenUnderused() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 5, false);
+        limiter.onSample(10 * MILLIS, 5, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(20)));
+    }
+
+    @Test
+    public void shouldStayWithinBounds() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(5)
+                .limitBounds(4, 6)
+                .ticker(ticker)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(10 * MILLIS, 6, false);
+        }
+        assertThat(limiter.getLimit(), is(equalTo(6)));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(10 * MILLIS, 6, true);
+        }
+        assertThat(limiter.getLimit(), is(equalTo(4)));
+    }
+
+    @Test
+    public void shouldMeasureMinRttAgainAfterProbeInterval() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(20)
+                .probeInterval(1, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+
+        limiter.onSample(10 * MILLIS, 20, false);
+        // the server is now slower for good
+        limiter.onSample(40 * MILLIS, 20, false);
+        assertThat(limiter.getLimit(), is(equalTo(20)));
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        limiter.onSample(40 * MILLIS, 20, false);
+        limiter.onSample(40 * MILLIS, 20, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(22)));
+    }
+
+    @Test
+    public void shouldRejectOverLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(1)
+                .limitBounds(1, 1)
+                .build();
+        RequestFactory factory = factory(limiter);
+        final CountDownLatch received = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                received.countDown();
+                Thread.sleep(200);
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+
+        TestCallback<Void> first = new TestCallback<>();
+        request(factory).executeAsync(first);
+        received.await();
+
+        try {
+            request(factory).execute();
+            fail("Expected a GuardianException");
+        } catch (GuardianException e) {
+            assertThat(e.isConcurrencyLimited(), is(true));
+        }
+
+        first.await();
+        assertThat(first.getError(), is(nullValue()));
+        assertThat(limiter.getInFlight(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldNotLimitWarmUpRequests() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(1)
+                .limitBounds(1, 1)
+                .build();
+        RequestFactory factory = factory(limiter);
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/api/verify-otp")) {
+                    received.countDown();
+                    unblock.await(5, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+
+        TestCallback<Void> first = new TestCallback<>();
+        request(factory).executeAsync(first);
+        received.await();
+
+        try {
+            assertThat(factory.warmUp(server.url("/"), 3), is(equalTo(3)));
+            assertThat(limiter.getInFlight(), is(equalTo(1)));
+        } finally {
+            unblock.countDown();
+        }
+        first.await();
+        assertThat(first.getError(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldWaitForSlotUpToMaxWait() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(1)
+                .limitBounds(1, 1)
+                .maxWait(2, TimeUnit.SECONDS)
+                .build();
+        final RequestFactory factory = factory(limiter);
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = concurrent.incrementAndGet();
+                maxConcurrent.set(Math.max(maxConcurrent.get(), current));
+                Thread.sleep(20);
+                concurrent.decrementAndGet();
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        request(factory).execute();
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failures.get(), is(equalTo(0)));
+        assertThat(maxConcurrent.get(), is(equalTo(1)));
+        assertThat(server.getRequestCount(), is(equalTo(4)));
+    }
+
+    /**
+     * Simulates a server that processes {@code capacity} requests at the base latency and slows down proportionally
+     * when it has more in flight, like a server that queues them.
+     */
+    @Test
+    public void shouldConvergeToServerCapacity() throws Exception {
+        final AtomicInteger capacity = new AtomicInteger(3);
+        final AtomicInteger serverInFlight = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = serverInFlight.incrementAndGet();
+                try {
+                    double load = Math.max(1.0, current / (double) capacity.get());
+                    Thread.sleep((long) (20 * load));
+                } finally {
+                    serverInFlight.decrementAndGet();
+                }
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+                .initialLimit(30)
+                .maxWait(1, TimeUnit.SECONDS)
+                .build();
+        final RequestFactory factory = factory(limiter);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            request(factory).execute();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+
+        try {
+            Thread.sleep(1000);
+            double congestedLimit = averageLimit(limiter, 1000);
+
+            // the server scales up
+            capacity.set(12);
+            Thread.sleep(1000);
+            double scaledLimit = averageLimit(limiter, 1000);
+
+            assertThat(congestedLimit, is(allOf(greaterThanOrEqualTo(3.0), lessThanOrEqualTo(12.0))));
+            assertThat(scaledLimit, is(greaterThan(congestedLimit + 3)));
+        } finally {
+            running.set(false);
+            for (Thread client : clients) {
+                client.join();
+            }
+        }
+        assertThat(failures.get(), is(equalTo(0)));
+    }
+
+    private static double averageLimit(AdaptiveConcurrencyLimiter limiter, long millis) throws InterruptedException {
+        long sum = 0;
+        int samples = 0;
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            sum += limiter.getLimit();
+            samples++;
+            Thread.sleep(10);
+        }
+        return sum / (double) samples;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.Dns;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CachingDnsTest {
+
+    private static final String HOST = "tenant.guardian.auth0.com";
+
+    private FakeResolver resolver;
+    private FakeTicker ticker;
+    private QueuedExecutor executor;
+    private ServerSocket serverSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = new FakeResolver();
+        ticker = new FakeTicker();
+        executor = new QueuedExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private CachingDns.Builder cachingDns() {
+        return CachingDns.newBuilder()
+                .delegate(resolver)
+                .ttl(60, TimeUnit.SECONDS)
+                .refreshAhead(10, TimeUnit.SECONDS)
+                .executor(executor)
+                .ticker(ticker);
+    }
+
+    private static InetAddress address(String name, String literal) throws UnknownHostException {
+        return InetAddress.getByAddress(name, InetAddress.getByName(literal).getAddress());
+    }
+
+    private static List<String> namesOf(List<InetAddress> addresses) {
+        List<String> names = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            names.add(address.getHostName());
+        }
+        return names;
+    }
+
+    @Test
+    public void shouldCacheAddressesDuringTtl() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        List<InetAddress> first = dns.lookup(HOST);
+        ticker.advance(49, TimeUnit.SECONDS);
+        List<InetAddress> second = dns.lookup(HOST);
+
+        assertThat(namesOf(first), contains("a"));
+        assertThat(second, is(equalTo(first)));
+        assertThat(resolver.calls.get(), is(equalTo(1)));
+        assertThat(executor.tasks, is(empty()));
+    }
+
+    @Test
+    public void shouldResolveAgainAfterTtl() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        dns.lookup(HOST);
+        ticker.advance(60, TimeUnit.SECONDS);
+        resolver.addresses = Arrays.asList(address("b", "10.0.0.2"));
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("b"));
+        assertThat(resolver.calls.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldRefreshInBackgroundBeforeExpiring() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        dns.lookup(HOST);
+        ticker.advance(50, TimeUnit.SECONDS);
+        resolver.addresses = Arrays.asList(address("b", "10.0.0.2"));
+
+        // served from the cache while the refresh is scheduled, only once
+        assertThat(namesOf(dns.lookup(HOST)), contains("a"));
+        assertThat(namesOf(dns.lookup(HOST)), contains("a"));
+        assertThat(executor.tasks, hasSize(1));
+        assertThat(resolver.calls.get(), is(equalTo(1)));
+
+        executor.runAll();
+        ticker.advance(20, TimeUnit.SECONDS);
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("b"));
+        assertThat(resolver.calls.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldKeepAddressesWhenRefreshFails() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        dns.lookup(HOST);
+        ticker.advance(50, TimeUnit.SECONDS);
+        resolver.addresses = null;
+        dns.lookup(HOST);
+        executor.runAll();
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("a"));
+        // a later lookup tries again
+        assertThat(executor.tasks, hasSize(1));
+    }
+
+    @Test
+    public void shouldFailWhenResolutionFails() throws Exception {
+        CachingDns dns = cachingDns().build();
+
+        try {
+            dns.lookup(HOST);
+            fail("Expected an UnknownHostException");
+        } catch (UnknownHostException e) {
+            assertThat(e.getMessage(), is(equalTo(HOST)));
+        }
+    }
+
+    @Test
+    public void shouldCacheHostsSeparately() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        dns.lookup(HOST);
+        dns.lookup("other.guardian.auth0.com");
+
+        assertThat(resolver.calls.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldResolveAgainAfterClear() throws Exception {
+        resolver.addresses = Arrays.asList(address("a", "10.0.0.1"));
+        CachingDns dns = cachingDns().build();
+
+        dns.lookup(HOST);
+        dns.clear();
+        dns.lookup(HOST);
+
+        assertThat(resolver.calls.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldPutFamilyThatConnectsFirst() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        // nothing listens on the IPv6 loopback, so that family fails right away
+        resolver.addresses = Arrays.asList(
+                address("v6a", "::1"), address("v6b", "::1"), address("v4a", "127.0.0.1"));
+        CachingDns dns = CachingDns.newBuilder()
+                .delegate(resolver)
+                .raceAddressFamilies(serverSocket.getLocalPort(), 250, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("v4a", "v6a", "v6b"));
+    }
+
+    @Test
+    public void shouldKeepPreferredFamilyWhenItConnects() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        resolver.addresses = Arrays.asList(
+                address("v4a", "127.0.0.1"), address("v4b", "127.0.0.1"), address("v6a", "::1"));
+        CachingDns dns = CachingDns.newBuilder()
+                .delegate(resolver)
+                .raceAddressFamilies(serverSocket.getLocalPort(), 250, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("v4a", "v6a", "v4b"));
+    }
+
+    @Test
+    public void shouldInterleaveFamiliesWhenNoneConnects() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        int closedPort = serverSocket.getLocalPort();
+        serverSocket.close();
+        resolver.addresses = Arrays.asList(address("v6a", "::1"), address("v6b", "::1"),
+                address("v4a", "127.0.0.1"), address("v4b", "127.0.0.1"));
+        CachingDns dns = CachingDns.newBuilder()
+                .delegate(resolver)
+                .raceAddressFamilies(closedPort, 50, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("v6a", "v4a", "v6b", "v4b"));
+    }
+
+    @Test
+    public void shouldNotRaceSingleFamily() throws Exception {
+        resolver.addresses = Arrays.asList(address("v4a", "127.0.0.1"), address("v4b", "127.0.0.2"));
+        CachingDns dns = cachingDns()
+                .raceAddressFamilies(443, 250, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertThat(namesOf(dns.lookup(HOST)), contains("v4a", "v4b"));
+        assertThat(executor.tasks, is(empty()));
+    }
+
+    @Test
+    public void shouldFailWithRefreshAheadNotLessThanTtl() throws Exception {
+        try {
+            CachingDns.newBuilder()
+                    .ttl(10, TimeUnit.SECONDS)
+                    .refreshAhead(10, TimeUnit.SECONDS)
+                    .build();
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is(equalTo("Invalid refresh ahead: it must be less than the ttl")));
+        }
+    }
+
+    @Test
+    public void shouldFailWithInvalidPort() throws Exception {
+        try {
+            CachingDns.newBuilder().raceAddressFamilies(0, 250, TimeUnit.MILLISECONDS);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is(equalTo("Invalid port: 0")));
+        }
+    }
+
+    private static class FakeResolver implements Dns {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile List<InetAddress> addresses;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            calls.incrementAndGet();
+            if (addresses == null) {
+                throw new UnknownHostException(hostname);
+            }
+            return addresses;
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        synchronized void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : pending) {
+                task.run();
+            }
+        }
+    }
+}
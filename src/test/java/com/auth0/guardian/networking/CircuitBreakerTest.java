@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import com.auth0.guardian.TestCallback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private MockWebServer server;
+    private FakeTicker ticker;
+    private List<String> transitions;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        ticker = new FakeTicker();
+        transitions = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private CircuitBreaker.Builder breaker() {
+        return CircuitBreaker.newBuilder()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .waitDurationInOpenState(10, TimeUnit.SECONDS)
+                .permittedCallsInHalfOpenState(2)
+                .listener(new CircuitBreaker.Listener() {
+                    @Override
+                    public void onStateTransition(Endpoint endpoint, CircuitBreaker.State from,
+                                                  CircuitBreaker.State to) {
+                        synchronized (transitions) {
+                            transitions.add(endpoint + ":" + from + "->" + to);
+                        }
+                    }
+                })
+                .ticker(ticker);
+    }
+
+    private RequestFactory factory(CircuitBreaker breaker) {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .readTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        return new RequestFactory(client);
+    }
+
+    private Request<Void> request(RequestFactory factory, Endpoint endpoint) {
+        return factory
+                .newRequest("POST", server.url("/api/" + endpoint.getName()), Void.class)
+                .setEndpoint(endpoint)
+                .setParameter("code", "123456");
+    }
+
+    private void enqueue(int code, int times) {
+        for (int i = 0; i < times; i++) {
+            MockResponse response = new MockResponse().setResponseCode(code);
+            if (code != 204) {
+                response.setBody("{}");
+            }
+            server.enqueue(response);
+        }
+    }
+
+    private GuardianException executeFailing(Request<Void> request) throws Exception {
+        try {
+            request.execute();
+        } catch (GuardianException e) {
+            return e;
+        }
+        fail("Expected a GuardianException");
+        return null;
+    }
+
+    @Test
+    public void shouldStayClosedBelowFailureRate() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 1);
+        enqueue(204, 3);
+
+        executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        for (int i = 0; i < 3; i++) {
+            request(factory, Endpoint.VERIFY_OTP).execute();
+        }
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+        assertThat(transitions, is(empty()));
+    }
+
+    @Test
+    public void shouldNotOpenBeforeMinimumNumberOfCalls() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 3);
+
+        for (int i = 0; i < 3; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldOpenAndRejectWithoutSending() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(503, 2);
+        enqueue(204, 2);
+
+        executeFailing(request(factory, Endpoint.START_FLOW));
+        executeFailing(request(factory, Endpoint.START_FLOW));
+        request(factory, Endpoint.START_FLOW).execute();
+        request(factory, Endpoint.START_FLOW).execute();
+
+        assertThat(breaker.getState(Endpoint.START_FLOW), is(CircuitBreaker.State.OPEN));
+        assertThat(transitions, contains("start-flow:CLOSED->OPEN"));
+
+        GuardianException exception = executeFailing(request(factory, Endpoint.START_FLOW));
+        assertThat(exception.isCircuitOpen(), is(true));
+        assertThat(exception.getErrorCode(), is(equalTo("circuit_open")));
+        assertThat(exception.getMessage(), containsString("start-flow"));
+        assertThat(server.getRequestCount(), is(equalTo(4)));
+    }
+
+    @Test
+    public void shouldKeepEndpointsIndependent() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 4);
+        enqueue(204, 1);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.SMS_ENROLL));
+        }
+        request(factory, Endpoint.VERIFY_OTP).execute();
+
+        assertThat(breaker.getState(Endpoint.SMS_ENROLL), is(CircuitBreaker.State.OPEN));
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldCountConnectionFailures() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            try {
+                request(factory, Endpoint.VERIFY_OTP).execute();
+                fail("Expected an IOException");
+            } catch (GuardianException e) {
+                throw e;
+            } catch (Exception e) {
+                // expected
+            }
+        }
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void shouldNotCountClientErrors() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(400, 4);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldOpenOnSlowCallRate() throws Exception {
+        CircuitBreaker breaker = breaker()
+                .slowCallDuration(50, TimeUnit.MILLISECONDS)
+                .slowCallRateThreshold(0.5)
+                .ticker(Ticker.SYSTEM)
+                .build();
+        RequestFactory factory = factory(breaker);
+        server.enqueue(new MockResponse().setResponseCode(204).setHeadersDelay(60, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setResponseCode(204).setHeadersDelay(60, TimeUnit.MILLISECONDS));
+        enqueue(204, 2);
+
+        for (int i = 0; i < 4; i++) {
+            request(factory, Endpoint.VERIFY_OTP).execute();
+        }
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void shouldCloseAfterSuccessfulTrialCalls() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 4);
+        enqueue(204, 2);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+        ticker.advance(10, TimeUnit.SECONDS);
+        request(factory, Endpoint.VERIFY_OTP).execute();
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.HALF_OPEN));
+        request(factory, Endpoint.VERIFY_OTP).execute();
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+        assertThat(transitions, contains(
+                "verify-otp:CLOSED->OPEN",
+                "verify-otp:OPEN->HALF_OPEN",
+                "verify-otp:HALF_OPEN->CLOSED"));
+    }
+
+    @Test
+    public void shouldReopenAfterFailedTrialCalls() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 6);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertThat(executeFailing(request(factory, Endpoint.VERIFY_OTP)).isCircuitOpen(), is(true));
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        executeFailing(request(factory, Endpoint.VERIFY_OTP));
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.OPEN));
+        assertThat(transitions, contains(
+                "verify-otp:CLOSED->OPEN",
+                "verify-otp:OPEN->HALF_OPEN",
+                "verify-otp:HALF_OPEN->OPEN"));
+        assertThat(server.getRequestCount(), is(equalTo(6)));
+    }
+
+    @Test
+    public void shouldLimitTrialCallsWhileHalfOpen() throws Exception {
+        CircuitBreaker breaker = breaker().permittedCallsInHalfOpenState(1).build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 4);
+        server.enqueue(new MockResponse().setResponseCode(204).setHeadersDelay(100, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+            server.takeRequest();
+        }
+        ticker.advance(10, TimeUnit.SECONDS);
+
+        TestCallback<Void> trial = new TestCallback<>();
+        request(factory, Endpoint.VERIFY_OTP).executeAsync(trial);
+        server.takeRequest();
+        GuardianException rejected = executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        trial.await();
+
+        assertThat(rejected.isCircuitOpen(), is(true));
+        assertThat(trial.getError(), is(nullValue()));
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldReleaseTrialCallOnRuntimeException() throws Exception {
+        final AtomicBoolean throwing = new AtomicBoolean();
+        CircuitBreaker breaker = breaker().permittedCallsInHalfOpenState(1).build();
+        RequestFactory factory = new RequestFactory(new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (throwing.getAndSet(false)) {
+                            throw new IllegalStateException("bug");
+                        }
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build());
+        enqueue(500, 4);
+        enqueue(204, 1);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+        ticker.advance(10, TimeUnit.SECONDS);
+        throwing.set(true);
+        try {
+            request(factory, Endpoint.VERIFY_OTP).execute();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+        request(factory, Endpoint.VERIFY_OTP).execute();
+
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.CLOSED));
+        assertThat(server.getRequestCount(), is(equalTo(5)));
+    }
+
+    @Test
+    public void shouldRejectAsyncCallsWithGuardianException() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 4);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(request(factory, Endpoint.VERIFY_OTP));
+        }
+
+        TestCallback<Void> callback = new TestCallback<>();
+        request(factory, Endpoint.VERIFY_OTP).executeAsync(callback);
+        callback.await();
+
+        assertThat(callback.getError(), is(instanceOf(GuardianException.class)));
+        assertThat(((GuardianException) callback.getError()).isCircuitOpen(), is(true));
+    }
+
+    @Test
+    public void shouldIgnoreUntaggedRequests() throws Exception {
+        CircuitBreaker breaker = breaker().build();
+        RequestFactory factory = factory(breaker);
+        enqueue(500, 4);
+
+        for (int i = 0; i < 4; i++) {
+            executeFailing(factory.newRequest("POST", server.url("/api/verify-otp"), Void.class)
+                    .setParameter("code", "123456"));
+        }
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            assertThat(breaker.getState(endpoint), is(CircuitBreaker.State.CLOSED));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GuardianMetricsTest {
+
+    private static final String BODY = "{\"device_account\":{\"id\":\"DEVICE_ACCOUNT\"}}";
+
+    private MockWebServer server;
+    private List<CallStats> calls;
+    private RequestFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        calls = new CopyOnWriteArrayList<>();
+        factory = new RequestFactory(new OkHttpClient(), new GuardianMetrics() {
+            @Override
+            public void onCall(CallStats call) {
+                calls.add(call);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private Request<Map> request() {
+        return factory
+                .newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setEndpoint(Endpoint.START_FLOW)
+                .setParameter("state_transport", "polling");
+    }
+
+    @Test
+    public void shouldReportCallStats() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+
+        request().execute();
+        request().execute();
+
+        assertThat(calls, hasSize(2));
+        CallStats first = calls.get(0);
+        assertThat(first.getEndpoint(), is(Endpoint.START_FLOW));
+        assertThat(first.getStatusCode(), is(equalTo(201)));
+        assertThat(first.getErrorCode(), is(nullValue()));
+        assertThat(first.getBytesSent(), is(equalTo((long) "{\"state_transport\":\"polling\"}".length())));
+        assertThat(first.getBytesReceived(), is(equalTo((long) BODY.length())));
+        assertThat(first.isConnectionReused(), is(false));
+        assertThat(first.getParseNanos(), is(greaterThan(0L)));
+        assertThat(first.getNetworkNanos(), is(equalTo(first.getDurationNanos() - first.getParseNanos())));
+        assertThat(calls.get(1).isConnectionReused(), is(true));
+    }
+
+    @Test
+    public void shouldReportErrorCode() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404)
+                .setBody("{\"errorCode\":\"enrollment_not_found\",\"error\":\"Not found\"}"));
+
+        try {
+            request().execute();
+            fail("Expected a GuardianException");
+        } catch (GuardianException e) {
+            assertThat(e.isEnrollmentNotFound(), is(true));
+        }
+
+        assertThat(calls, hasSize(1));
+        assertThat(calls.get(0).getStatusCode(), is(equalTo(404)));
+        assertThat(calls.get(0).getErrorCode(), is(equalTo("enrollment_not_found")));
+        assertThat(calls.get(0).getParseNanos(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void shouldNotTagCallsWithoutMetrics() throws Exception {
+        RequestFactory factory = new RequestFactory(new OkHttpClient());
+
+        okhttp3.Request request = factory
+                .newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setEndpoint(Endpoint.START_FLOW)
+                .setParameter("state_transport", "polling")
+                .buildCall()
+                .request();
+
+        assertThat(request.tag(CallStats.class), is(nullValue()));
+    }
+}
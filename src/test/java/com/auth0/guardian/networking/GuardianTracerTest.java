@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GuardianTracerTest {
+
+    private static final String BODY = "{\"device_account\":{\"id\":\"DEVICE_ACCOUNT\"}}";
+
+    private MockWebServer server;
+    private RecordingTracer tracer;
+    private RequestFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        tracer = new RecordingTracer();
+        factory = new RequestFactory(new OkHttpClient(), GuardianMetrics.NONE, tracer);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private Request<Map> request() {
+        return factory
+                .newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setEndpoint(Endpoint.START_FLOW)
+                .setParameter("state_transport", "polling");
+    }
+
+    @Test
+    public void shouldPropagateTraceContext() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+
+        request()
+                .setHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01")
+                .setHeader("tracestate", "other=value")
+                .execute();
+
+        RecordedRequest recorded = server.takeRequest();
+        assertThat(recorded.getHeaders().values("traceparent"),
+                contains("00-0af7651916cd43dd8448eb211c80319c-0000000000000001-01"));
+        assertThat(recorded.getHeaders().values("tracestate"), contains("guardian=0000000000000001"));
+    }
+
+    @Test
+    public void shouldEndSpanWithStatusCode() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+
+        request().execute();
+
+        assertThat(tracer.getSpans(), hasSize(1));
+        RecordingTracer.RecordedSpan span = tracer.getSpans().get(0);
+        assertThat(span.getName(), is(equalTo("start-flow")));
+        assertThat(span.getEndpoint(), is(Endpoint.START_FLOW));
+        assertThat(span.getParent(), is(nullValue()));
+        assertThat(span.isEnded(), is(true));
+        assertThat(span.getStatusCode(), is(equalTo(201)));
+        assertThat(span.getError(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldEndSpanWithGuardianError() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404)
+                .setBody("{\"errorCode\":\"enrollment_not_found\",\"error\":\"Not found\"}"));
+
+        try {
+            request().execute();
+            fail("Expected a GuardianException");
+        } catch (GuardianException e) {
+            RecordingTracer.RecordedSpan span = tracer.getSpans().get(0);
+            assertThat(span.isEnded(), is(true));
+            assertThat(span.getStatusCode(), is(equalTo(404)));
+            assertThat(span.getError(), is(sameInstance((Exception) e)));
+        }
+    }
+
+    @Test
+    public void shouldEndSpanWithConnectionError() throws Exception {
+        MockWebServer closed = new MockWebServer();
+        closed.start();
+        closed.shutdown();
+
+        try {
+            factory.newRequest("POST", closed.url("/api/start-flow"), Map.class)
+                    .setParameter("state_transport", "polling")
+                    .execute();
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            RecordingTracer.RecordedSpan span = tracer.getSpans().get(0);
+            assertThat(span.isEnded(), is(true));
+            assertThat(span.getStatusCode(), is(equalTo(-1)));
+            assertThat(span.getError(), is(sameInstance((Exception) e)));
+        }
+    }
+
+    @Test
+    public void shouldStartChildSpanOfParent() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+        GuardianTracer.Span parent = tracer.startSpan("request-enroll", null, null);
+
+        request().setParentSpan(parent).execute();
+
+        assertThat(tracer.getSpans(), hasSize(2));
+        assertThat(tracer.getSpans().get(1).getParent(), is(sameInstance(parent)));
+        assertThat(server.takeRequest().getHeader("traceparent"),
+                is(equalTo("00-0af7651916cd43dd8448eb211c80319c-0000000000000002-01")));
+    }
+
+    @Test
+    public void shouldEndSpanOfAsyncRequest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        request().executeAsync(new Callback<Map>() {
+            @Override
+            public void onSuccess(Map result) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        RecordingTracer.RecordedSpan span = tracer.getSpans().get(0);
+        assertThat(span.isEnded(), is(true));
+        assertThat(span.getStatusCode(), is(equalTo(201)));
+        assertThat(server.takeRequest().getHeader("traceparent"), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldNotAddHeadersWithoutSpan() throws Exception {
+        RequestFactory factory = new RequestFactory(new OkHttpClient(), GuardianMetrics.NONE, new GuardianTracer() {
+            @Override
+            public Span startSpan(String name, Endpoint endpoint, Span parent) {
+                return null;
+            }
+        });
+        server.enqueue(new MockResponse().setResponseCode(201).setBody(BODY));
+
+        factory.newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setParameter("state_transport", "polling")
+                .execute();
+
+        RecordedRequest recorded = server.takeRequest();
+        assertThat(recorded.getHeader("traceparent"), is(nullValue()));
+        assertThat(recorded.getHeader("tracestate"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldFailWithNullTracer() throws Exception {
+        try {
+            new RequestFactory(new OkHttpClient(), GuardianMetrics.NONE, null);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is(equalTo("Invalid tracer")));
+        }
+    }
+}
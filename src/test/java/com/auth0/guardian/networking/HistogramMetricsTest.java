@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import com.auth0.guardian.TestCallback;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HistogramMetricsTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private HistogramMetrics metrics;
+    private RequestFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        metrics = new HistogramMetrics();
+        factory = new RequestFactory(new OkHttpClient.Builder()
+                .readTimeout(200, TimeUnit.MILLISECONDS)
+                .build(), metrics);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private Request<Map> request(Endpoint endpoint) {
+        return factory
+                .newRequest("POST", server.url("/api/" + endpoint.getName()), Map.class)
+                .setEndpoint(endpoint)
+                .setParameter("code", "123456");
+    }
+
+    @Test
+    public void shouldRecordSuccessfulCall() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{\"device_account\":{}}"));
+
+        request(Endpoint.START_FLOW).execute();
+
+        assertThat(metrics.getCallCount(Endpoint.START_FLOW), is(equalTo(1L)));
+        assertThat(metrics.getStatusCodeCount(Endpoint.START_FLOW, 200), is(equalTo(1L)));
+        assertThat(metrics.getErrorCodeCounts(Endpoint.START_FLOW).isEmpty(), is(true));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW).getMaxNanos(), is(greaterThan(0L)));
+        assertThat(metrics.getCallCount(Endpoint.VERIFY_OTP), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldRecordPhases() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        request(Endpoint.START_FLOW).execute();
+        request(Endpoint.START_FLOW).execute();
+
+        // the second request reuses the connection
+        assertThat(metrics.getReusedConnectionCount(Endpoint.START_FLOW), is(equalTo(1L)));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW, GuardianMetrics.Phase.CONNECT).getCount(),
+                is(equalTo(1L)));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW, GuardianMetrics.Phase.TLS).getCount(),
+                is(equalTo(0L)));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW, GuardianMetrics.Phase.REQUEST_WRITE).getCount(),
+                is(equalTo(2L)));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW, GuardianMetrics.Phase.TIME_TO_FIRST_BYTE).getCount(),
+                is(equalTo(2L)));
+        assertThat(metrics.getLatency(Endpoint.START_FLOW, GuardianMetrics.Phase.JSON_PARSE).getCount(),
+                is(equalTo(2L)));
+    }
+
+    @Test
+    public void shouldRecordErrorCodes() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(403)
+                .setBody("{\"errorCode\":\"invalid_otp\",\"error\":\"Invalid OTP\"}"));
+        server.enqueue(new MockResponse().setResponseCode(403)
+                .setBody("{\"errorCode\":\"invalid_otp\",\"error\":\"Invalid OTP\"}"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                request(Endpoint.VERIFY_OTP).execute();
+                fail("Expected a GuardianException");
+            } catch (GuardianException e) {
+                assertThat(e.isInvalidOTP(), is(true));
+            }
+        }
+
+        assertThat(metrics.getCallCount(Endpoint.VERIFY_OTP), is(equalTo(2L)));
+        assertThat(metrics.getStatusCodeCount(Endpoint.VERIFY_OTP, 403), is(equalTo(2L)));
+        assertThat(metrics.getErrorCodeCounts(Endpoint.VERIFY_OTP), hasEntry("invalid_otp", 2L));
+        assertThat(metrics.getLatency(Endpoint.VERIFY_OTP, GuardianMetrics.Phase.JSON_PARSE).getCount(),
+                is(equalTo(2L)));
+    }
+
+    @Test
+    public void shouldRecordCallsWithoutResponse() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        try {
+            request(Endpoint.SMS_ENROLL).execute();
+            fail("Expected an IOException");
+        } catch (java.io.IOException e) {
+            // expected
+        }
+
+        assertThat(metrics.getCallCount(Endpoint.SMS_ENROLL), is(equalTo(1L)));
+        assertThat(metrics.getStatusCodeCount(Endpoint.SMS_ENROLL, -1), is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldRecordAsyncCalls() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        TestCallback<Map> callback = new TestCallback<>();
+        request(Endpoint.START_FLOW).executeAsync(callback);
+        callback.await();
+
+        assertThat(callback.getError(), is(nullValue()));
+        assertThat(metrics.getCallCount(Endpoint.START_FLOW), is(equalTo(1L)));
+        assertThat(metrics.getStatusCodeCount(Endpoint.START_FLOW, 200), is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldIgnoreUntaggedRequests() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        factory.newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setParameter("code", "123456")
+                .execute();
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            assertThat(metrics.getCallCount(endpoint), is(equalTo(0L)));
+        }
+    }
+
+    @Test
+    public void shouldFailWithNullMetrics() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid metrics");
+
+        new RequestFactory(new OkHttpClient(), null);
+    }
+}
@@ -24,13 +24,16 @@ package com.auth0.guardian.networking;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
-import java.io.StringReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.*;
@@ -79,20 +82,127 @@ public class JsonConverterTest {
         assertThat(serialized, containsString("\"someInteger\":456"));
     }
 
+    @Test
+    public void shouldSerializeFlatMapWithAllValueTypes() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("someString", "the \"quoted\" string \u00f1");
+        map.put("someBoolean", true);
+        map.put("someLong", 1234567890123L);
+        Map<String, Object> parsed = mapper.readValue(converter.serialize(map), Map.class);
+        assertThat(parsed, hasEntry("someString", (Object) "the \"quoted\" string \u00f1"));
+        assertThat(parsed, hasEntry("someBoolean", (Object) true));
+        assertThat(parsed, hasEntry("someLong", (Object) 1234567890123L));
+    }
+
+    @Test
+    public void shouldSerializeFlatMapWithTheConfigurationOfTheMapper() throws Exception {
+        mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("b", "second");
+        map.put("a", "first");
+
+        assertThat(new String(converter.serialize(map), "UTF-8"), is(equalTo("{\"a\":\"first\",\"b\":\"second\"}")));
+    }
+
+    @Test
+    public void shouldSerializeStartFlowBody() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("state_transport", "polling");
+
+        assertThat(new String(converter.serialize(Endpoint.START_FLOW, parameters), "UTF-8"),
+                is(equalTo("{\"state_transport\":\"polling\"}")));
+    }
+
+    @Test
+    public void shouldSerializeVerifyOtpBodyInFieldOrder() throws Exception {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("code", "12\"3\u00f1");
+        parameters.put("type", "manual_input");
+
+        assertThat(new String(converter.serialize(Endpoint.VERIFY_OTP, parameters), "UTF-8"),
+                is(equalTo("{\"type\":\"manual_input\",\"code\":\"12\\\"3\u00f1\"}")));
+    }
+
+    @Test
+    public void shouldSerializeRepeatedBodiesIndependently() throws Exception {
+        Map<String, Object> first = new HashMap<>();
+        first.put("type", "manual_input");
+        first.put("code", "111111");
+        Map<String, Object> second = new HashMap<>();
+        second.put("type", "manual_input");
+        second.put("code", "2");
+
+        byte[] firstBytes = converter.serialize(Endpoint.VERIFY_OTP, first);
+        converter.serialize(Endpoint.VERIFY_OTP, second);
+
+        assertThat(new String(firstBytes, "UTF-8"), is(equalTo("{\"type\":\"manual_input\",\"code\":\"111111\"}")));
+    }
+
+    @Test
+    public void shouldSerializeOtherShapesWithTheMapper() throws Exception {
+        mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        Map<String, Object> extraField = new HashMap<>();
+        extraField.put("type", "manual_input");
+        extraField.put("code", "123456");
+        extraField.put("extra", true);
+        Map<String, Object> numberCode = new HashMap<>();
+        numberCode.put("type", "manual_input");
+        numberCode.put("code", 123456);
+        Map<String, Object> smsEnroll = new HashMap<>();
+        smsEnroll.put("phone_number", "+549XXXXXXXX58");
+
+        assertThat(new String(converter.serialize(Endpoint.VERIFY_OTP, extraField), "UTF-8"),
+                is(equalTo("{\"code\":\"123456\",\"extra\":true,\"type\":\"manual_input\"}")));
+        assertThat(new String(converter.serialize(Endpoint.VERIFY_OTP, numberCode), "UTF-8"),
+                is(equalTo("{\"code\":123456,\"type\":\"manual_input\"}")));
+        assertThat(new String(converter.serialize(Endpoint.SMS_ENROLL, smsEnroll), "UTF-8"),
+                is(equalTo("{\"phone_number\":\"+549XXXXXXXX58\"}")));
+        assertThat(new String(converter.serialize(null, numberCode), "UTF-8"),
+                is(equalTo("{\"code\":123456,\"type\":\"manual_input\"}")));
+    }
+
+    @Test
+    public void shouldSerializeNestedMap() throws Exception {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("enabled", false);
+        Map<String, Object> map = new HashMap<>();
+        map.put("someString", "theString");
+        map.put("someDouble", 1.5);
+        map.put("someMap", nested);
+        Map<String, Object> parsed = mapper.readValue(converter.serialize(map), Map.class);
+        assertThat(parsed, hasEntry("someString", (Object) "theString"));
+        assertThat(parsed, hasEntry("someDouble", (Object) 1.5));
+        assertThat(parsed, hasEntry("someMap", (Object) nested));
+    }
+
     @Test
     public void shouldParseClass() throws Exception {
-        DummyObject parsed = converter.parse(DummyObject.class, new StringReader("{\"someString\":\"theStringValue\",\"someInteger\":123}"));
+        DummyObject parsed = converter.parse(DummyObject.class, inputStream("{\"someString\":\"theStringValue\",\"someInteger\":123}"));
         assertThat(parsed.someString, is(equalTo("theStringValue")));
         assertThat(parsed.someInteger, is(equalTo(123)));
     }
 
     @Test
     public void shouldParseGenericMap() throws Exception {
-        Map<String, Object> parsed = converter.parse(Map.class, new StringReader("{\"someString\":\"theStringValue\",\"someNumber\":123.3}"));
+        Map<String, Object> parsed = converter.parse(Map.class, inputStream("{\"someString\":\"theStringValue\",\"someNumber\":123.3}"));
         assertThat(parsed, hasEntry("someString", (Object) "theStringValue"));
         assertThat(parsed, hasEntry("someNumber", (Object) 123.3));
     }
 
+    @Test
+    public void shouldParseUtf8Bytes() throws Exception {
+        DummyObject parsed = converter.parse(DummyObject.class, inputStream("{\"someString\":\"compa\u00f1\u00eda \u2713\"}"));
+        assertThat(parsed.someString, is(equalTo("compa\u00f1\u00eda \u2713")));
+    }
+
+    @Test
+    public void shouldParseRepeatedlyWithSameType() throws Exception {
+        DummyObject first = converter.parse(DummyObject.class, inputStream("{\"someInteger\":1}"));
+        DummyObject second = converter.parse(DummyObject.class, inputStream("{\"someInteger\":2}"));
+        assertThat(first.someInteger, is(equalTo(1)));
+        assertThat(second.someInteger, is(equalTo(2)));
+    }
+
     @Test
     public void shouldCatchExceptionAndThrowIllegalArgument() throws Exception {
         exception.expect(IllegalArgumentException.class);
@@ -101,6 +211,10 @@ public class JsonConverterTest {
         converter.serialize(new Object());
     }
 
+    private static InputStream inputStream(String json) throws Exception {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+
     static class DummyObject {
 
         @JsonProperty("someString")
@@ -109,4 +223,4 @@ public class JsonConverterTest {
         @JsonProperty("someInteger")
         Integer someInteger;
     }
-}
\ No newline at end of file
+}
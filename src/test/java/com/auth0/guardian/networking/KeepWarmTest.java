@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class KeepWarmTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private KeepWarm keepWarm;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        // slow enough for the requests of a round to be in flight at the same time, each one on its own connection
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(404).setHeadersDelay(50, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (keepWarm != null) {
+            keepWarm.stop();
+        }
+        server.shutdown();
+    }
+
+    private OkHttpClient client(KeepWarm keepWarm) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(keepWarm)
+                .build();
+    }
+
+    private static void awaitIdleConnections(OkHttpClient client, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.connectionPool().idleConnectionCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(client.connectionPool().idleConnectionCount(), is(equalTo(count)));
+    }
+
+    @Test
+    public void shouldOpenMinConnections() throws Exception {
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(3)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        keepWarm.keepWarm();
+
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertThat(request.getMethod(), is(equalTo("HEAD")));
+            assertThat(request.getPath(), is(equalTo("/")));
+            assertThat(request.getSequenceNumber(), is(equalTo(0)));
+        }
+        awaitIdleConnections(client, 3);
+        assertThat(keepWarm.getRequestCount(), is(equalTo(3L)));
+        assertThat(keepWarm.getSkippedRoundCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldReuseWarmConnections() throws Exception {
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(2)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        keepWarm.keepWarm();
+        awaitIdleConnections(client, 2);
+        keepWarm.keepWarm();
+        for (int i = 0; i < 4; i++) {
+            server.takeRequest();
+        }
+        awaitIdleConnections(client, 2);
+
+        assertThat(keepWarm.getSkippedRoundCount(), is(equalTo(0L)));
+        assertThat(client.connectionPool().connectionCount(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldKeepConnectionsFromIdleEviction() throws Exception {
+        ConnectionPool pool = new ConnectionPool(5, 1, TimeUnit.SECONDS);
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(2)
+                .interval(200, TimeUnit.MILLISECONDS)
+                .build();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .addInterceptor(keepWarm)
+                .build();
+        keepWarm.start(client, server.url("/"));
+
+        Thread.sleep(2500);
+        keepWarm.stop();
+        awaitIdleConnections(client, 2);
+
+        assertThat(pool.connectionCount(), is(equalTo(2)));
+        // the overhead is the requests of the rounds, each connection is opened once
+        assertThat(keepWarm.getRequestCount(), is(equalTo((long) server.getRequestCount())));
+        assertThat(keepWarm.getRequestCount(), is(greaterThanOrEqualTo(4L)));
+    }
+
+    @Test
+    public void shouldLoseIdleConnectionsWithoutKeepWarm() throws Exception {
+        ConnectionPool pool = new ConnectionPool(5, 1, TimeUnit.SECONDS);
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(2)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .addInterceptor(keepWarm)
+                .build();
+        keepWarm.start(client, server.url("/"));
+
+        keepWarm.keepWarm();
+        awaitIdleConnections(client, 2);
+        Thread.sleep(2500);
+
+        assertThat(pool.connectionCount(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldSkipRoundAfterTrafficWithEnoughConnections() throws Exception {
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(1)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        client.newCall(new okhttp3.Request.Builder().url(server.url("/api/start-flow")).build()).execute().close();
+        keepWarm.keepWarm();
+
+        assertThat(keepWarm.getSkippedRoundCount(), is(equalTo(1L)));
+        assertThat(keepWarm.getRequestCount(), is(equalTo(0L)));
+
+        // without traffic since the skipped round, the next one keeps the connection warm
+        keepWarm.keepWarm();
+        server.takeRequest();
+        assertThat(server.takeRequest().getMethod(), is(equalTo("HEAD")));
+        assertThat(keepWarm.getRequestCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldNotSkipRoundAfterTrafficWithFewerConnections() throws Exception {
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(2)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        client.newCall(new okhttp3.Request.Builder().url(server.url("/api/start-flow")).build()).execute().close();
+        keepWarm.keepWarm();
+        awaitIdleConnections(client, 2);
+
+        assertThat(keepWarm.getSkippedRoundCount(), is(equalTo(0L)));
+        assertThat(keepWarm.getRequestCount(), is(equalTo(2L)));
+        assertThat(client.connectionPool().connectionCount(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldSkipRoundWhileRequestsInFlight() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(404).setHeadersDelay(500, TimeUnit.MILLISECONDS);
+            }
+        });
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(1)
+                .interval(1, TimeUnit.HOURS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        keepWarm.keepWarm();
+        keepWarm.keepWarm();
+
+        assertThat(keepWarm.getRequestCount(), is(equalTo(1L)));
+        assertThat(keepWarm.getSkippedRoundCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldStopRounds() throws Exception {
+        keepWarm = KeepWarm.newBuilder()
+                .minConnections(1)
+                .interval(50, TimeUnit.MILLISECONDS)
+                .build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+
+        assertThat(server.takeRequest(5, TimeUnit.SECONDS), is(notNullValue()));
+        keepWarm.stop();
+        awaitIdleConnections(client, 1);
+        long requests = keepWarm.getRequestCount();
+        Thread.sleep(300);
+
+        assertThat(keepWarm.getRequestCount(), is(equalTo(requests)));
+    }
+
+    @Test
+    public void shouldFailToStartTwice() throws Exception {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Keep-warm already started");
+
+        keepWarm = KeepWarm.newBuilder().build();
+        OkHttpClient client = client(keepWarm);
+        keepWarm.start(client, server.url("/"));
+        keepWarm.start(client, server.url("/"));
+    }
+
+    @Test
+    public void shouldFailToStartWithNullClient() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid client");
+
+        KeepWarm.newBuilder().build().start(null, server.url("/"));
+    }
+
+    @Test
+    public void shouldFailWithInvalidMinConnections() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid min connections: 0");
+
+        KeepWarm.newBuilder().minConnections(0);
+    }
+
+    @Test
+    public void shouldFailWithInvalidInterval() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid interval: 0");
+
+        KeepWarm.newBuilder().interval(0, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldMapValuesToBucketsWithBoundedError() throws Exception {
+        for (long micros = 0; micros < 1000000; micros += 7) {
+            long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(micros));
+
+            assertThat(upperBound, is(greaterThanOrEqualTo(micros)));
+            assertThat((double) upperBound, is(lessThanOrEqualTo(micros * 1.125 + 1)));
+        }
+    }
+
+    @Test
+    public void shouldHaveIncreasingBuckets() throws Exception {
+        long previous = -1;
+        for (int bucket = 0; bucket < LatencyHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            assertThat(upperBound, is(greaterThan(previous)));
+            assertThat(LatencyHistogram.bucketOf(upperBound), is(equalTo(bucket)));
+            previous = upperBound;
+        }
+    }
+
+    @Test
+    public void shouldBeEmpty() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount(), is(equalTo(0L)));
+        assertThat(histogram.getMeanNanos(), is(equalTo(0L)));
+        assertThat(histogram.getMaxNanos(), is(equalTo(0L)));
+        assertThat(histogram.getPercentileNanos(99), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldReportPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount(), is(equalTo(100L)));
+        assertThat(histogram.getMeanNanos(), is(equalTo(TimeUnit.MICROSECONDS.toNanos(50500))));
+        assertThat(histogram.getMaxNanos(), is(equalTo(TimeUnit.MILLISECONDS.toNanos(100))));
+        assertThat(histogram.getPercentileNanos(50), is(both(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)))
+                .and(lessThanOrEqualTo(TimeUnit.MICROSECONDS.toNanos(56250)))));
+        assertThat(histogram.getPercentileNanos(99), is(both(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(99)))
+                .and(lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100)))));
+        assertThat(histogram.getPercentileNanos(100), is(equalTo(TimeUnit.MILLISECONDS.toNanos(100))));
+    }
+
+    @Test
+    public void shouldRecordNegativeValuesAsZero() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+
+        assertThat(histogram.getCount(), is(equalTo(1L)));
+        assertThat(histogram.getMaxNanos(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldRecordFromManyThreads() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int thread = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        histogram.record(TimeUnit.MICROSECONDS.toNanos(thread * 10000 + j));
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(histogram.getCount(), is(equalTo(80000L)));
+        assertThat(histogram.getMaxNanos(), is(equalTo(TimeUnit.MICROSECONDS.toNanos(79999))));
+    }
+
+    @Test
+    public void shouldFailWithInvalidPercentile() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+
+        new LatencyHistogram().getPercentileNanos(101);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import com.auth0.guardian.TestCallback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class PriorityDispatcherTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private CountDownLatch blocked;
+    private CountDownLatch unblock;
+    private List<String> served;
+
+    @Before
+    public void setUp() throws Exception {
+        blocked = new CountDownLatch(1);
+        unblock = new CountDownLatch(1);
+        served = new CopyOnWriteArrayList<>();
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/block")) {
+                    blocked.countDown();
+                    unblock.await(5, TimeUnit.SECONDS);
+                } else {
+                    served.add(request.getPath());
+                }
+                return new MockResponse().setResponseCode(204);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        server.shutdown();
+    }
+
+    private RequestFactory factory(PriorityDispatcher dispatcher) {
+        return new RequestFactory(new OkHttpClient.Builder()
+                .addInterceptor(dispatcher)
+                .build());
+    }
+
+    private TestCallback<Void> enqueue(RequestFactory factory, String path, Priority priority) {
+        TestCallback<Void> callback = new TestCallback<>();
+        factory.newRequest("POST", server.url(path), Void.class)
+                .setParameter("code", "123456")
+                .setPriority(priority)
+                .executeAsync(callback);
+        return callback;
+    }
+
+    private TestCallback<Void> block(RequestFactory factory) throws InterruptedException {
+        TestCallback<Void> callback = enqueue(factory, "/block", Priority.LOW);
+        blocked.await();
+        return callback;
+    }
+
+    private static void awaitQueueDepth(PriorityDispatcher dispatcher, Priority priority, int depth)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getQueueDepth(priority) != depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(dispatcher.getQueueDepth(priority), is(equalTo(depth)));
+    }
+
+    private static void assertShed(TestCallback<Void> callback) throws InterruptedException {
+        callback.await();
+        assertThat(callback.getError(), is(instanceOf(GuardianException.class)));
+        assertThat(((GuardianException) callback.getError()).isLoadShed(), is(true));
+    }
+
+    @Test
+    public void shouldNotQueueBelowLimit() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(2)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+        TestCallback<Void> callback = enqueue(factory, "/low", Priority.LOW).await();
+
+        assertThat(callback.getError(), is(nullValue()));
+        assertThat(dispatcher.getQueueDepth(Priority.LOW), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldNotQueueWarmingRequests() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxQueuedRequests(0)
+                .build();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(dispatcher)
+                .build();
+
+        block(new RequestFactory(client));
+        Response response = client.newCall(new okhttp3.Request.Builder()
+                .url(server.url("/ping"))
+                .head()
+                .tag(WarmingRequest.class, WarmingRequest.TAG)
+                .build()).execute();
+        response.close();
+
+        assertThat(response.code(), is(equalTo(204)));
+        assertThat(dispatcher.getInFlight(), is(equalTo(1)));
+        assertThat(dispatcher.getRejectedCount(Priority.LOW), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldNotShedWarmUpRequests() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxQueuedRequests(0)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+        int opened = factory.warmUp(server.url("/"), 2);
+
+        assertThat(opened, is(equalTo(2)));
+        assertThat(dispatcher.getRejectedCount(Priority.LOW), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldServeHighPriorityFirst() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxWait(5, TimeUnit.SECONDS)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        TestCallback<Void> blocking = block(factory);
+        TestCallback<Void> low = enqueue(factory, "/low", Priority.LOW);
+        awaitQueueDepth(dispatcher, Priority.LOW, 1);
+        TestCallback<Void> high = enqueue(factory, "/high", Priority.HIGH);
+        awaitQueueDepth(dispatcher, Priority.HIGH, 1);
+        assertThat(dispatcher.getInFlight(), is(equalTo(1)));
+
+        unblock.countDown();
+        blocking.await();
+        low.await();
+        high.await();
+
+        assertThat(low.getError(), is(nullValue()));
+        assertThat(high.getError(), is(nullValue()));
+        assertThat(served, contains("/high", "/low"));
+        assertThat(dispatcher.getInFlight(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldShedLowPriorityForHighPriorityWhenQueueIsFull() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxQueuedRequests(1)
+                .maxWait(5, TimeUnit.SECONDS)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+        TestCallback<Void> low = enqueue(factory, "/low", Priority.LOW);
+        awaitQueueDepth(dispatcher, Priority.LOW, 1);
+        TestCallback<Void> high = enqueue(factory, "/high", Priority.HIGH);
+
+        assertShed(low);
+        awaitQueueDepth(dispatcher, Priority.HIGH, 1);
+        assertThat(dispatcher.getQueueDepth(Priority.LOW), is(equalTo(0)));
+        assertThat(dispatcher.getRejectedCount(Priority.LOW), is(equalTo(1L)));
+
+        unblock.countDown();
+        high.await();
+        assertThat(high.getError(), is(nullValue()));
+        assertThat(served, contains("/high"));
+    }
+
+    @Test
+    public void shouldShedNewLowPriorityWhenQueueIsFull() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxQueuedRequests(1)
+                .maxWait(5, TimeUnit.SECONDS)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+        TestCallback<Void> high = enqueue(factory, "/high", Priority.HIGH);
+        awaitQueueDepth(dispatcher, Priority.HIGH, 1);
+
+        assertShed(enqueue(factory, "/low", Priority.LOW));
+        assertShed(enqueue(factory, "/other-high", Priority.HIGH));
+        assertThat(dispatcher.getRejectedCount(Priority.LOW), is(equalTo(1L)));
+        assertThat(dispatcher.getRejectedCount(Priority.HIGH), is(equalTo(1L)));
+
+        unblock.countDown();
+        assertThat(high.await().getError(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldShedAfterMaxWait() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxWait(50, TimeUnit.MILLISECONDS)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+
+        assertShed(enqueue(factory, "/high", Priority.HIGH));
+        assertThat(dispatcher.getQueueDepth(Priority.HIGH), is(equalTo(0)));
+        assertThat(dispatcher.getRejectedCount(Priority.HIGH), is(equalTo(1L)));
+    }
+
+    @Test
+    public void shouldTreatUntaggedRequestsAsLowPriority() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .maxConcurrentRequests(1)
+                .maxWait(5, TimeUnit.SECONDS)
+                .build();
+        RequestFactory factory = factory(dispatcher);
+
+        block(factory);
+        enqueue(factory, "/untagged", null);
+
+        awaitQueueDepth(dispatcher, Priority.LOW, 1);
+    }
+
+    @Test
+    public void shouldFailWithInvalidMaxConcurrentRequests() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+
+        PriorityDispatcher.newBuilder().maxConcurrentRequests(0);
+    }
+}
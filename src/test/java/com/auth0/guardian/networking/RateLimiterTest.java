@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import com.auth0.guardian.TestCallback;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RateLimiterTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private FakeTicker ticker;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        ticker = new FakeTicker();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private RequestFactory factory(RateLimiter limiter) {
+        return new RequestFactory(new OkHttpClient.Builder()
+                .addInterceptor(limiter)
+                .build());
+    }
+
+    private Request<Void> request(RequestFactory factory, Endpoint endpoint) {
+        return factory
+                .newRequest("POST", server.url("/api/" + endpoint.getName()), Void.class)
+                .setEndpoint(endpoint)
+                .setParameter("code", "123456");
+    }
+
+    private void enqueue(int times) {
+        for (int i = 0; i < times; i++) {
+            server.enqueue(new MockResponse().setResponseCode(204));
+        }
+    }
+
+    private GuardianException executeFailing(Request<Void> request) throws Exception {
+        try {
+            request.execute();
+        } catch (GuardianException e) {
+            return e;
+        }
+        fail("Expected a GuardianException");
+        return null;
+    }
+
+    @Test
+    public void shouldRejectWithoutSendingWhenLimitIsExceeded() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.SMS_ENROLL, 1, 2)
+                .ticker(ticker)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(2);
+
+        request(factory, Endpoint.SMS_ENROLL).execute();
+        request(factory, Endpoint.SMS_ENROLL).execute();
+        GuardianException exception = executeFailing(request(factory, Endpoint.SMS_ENROLL));
+
+        assertThat(exception.isRateLimited(), is(true));
+        assertThat(exception.getErrorCode(), is(equalTo("rate_limited")));
+        assertThat(exception.getMessage(), containsString("sms-enroll"));
+        assertThat(server.getRequestCount(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldAllowRequestsAfterRefill() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.SMS_ENROLL, 1, 1)
+                .ticker(ticker)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(2);
+
+        request(factory, Endpoint.SMS_ENROLL).execute();
+        ticker.advance(1, TimeUnit.SECONDS);
+        request(factory, Endpoint.SMS_ENROLL).execute();
+
+        assertThat(server.getRequestCount(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldLimitEndpointsSeparately() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.START_FLOW, 1, 1)
+                .limit(Endpoint.VERIFY_OTP, 1, 1)
+                .ticker(ticker)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(4);
+
+        request(factory, Endpoint.START_FLOW).execute();
+        request(factory, Endpoint.VERIFY_OTP).execute();
+        // no limit for sms-enroll
+        request(factory, Endpoint.SMS_ENROLL).execute();
+        request(factory, Endpoint.SMS_ENROLL).execute();
+
+        assertThat(executeFailing(request(factory, Endpoint.START_FLOW)).isRateLimited(), is(true));
+        assertThat(executeFailing(request(factory, Endpoint.VERIFY_OTP)).isRateLimited(), is(true));
+    }
+
+    @Test
+    public void shouldLimitTenantsSeparately() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.VERIFY_OTP, 1, 1)
+                .ticker(ticker)
+                .build();
+
+        TokenBucket tenant = limiter.getBucket("tenant.guardian.auth0.com", Endpoint.VERIFY_OTP);
+        TokenBucket other = limiter.getBucket("other.guardian.auth0.com", Endpoint.VERIFY_OTP);
+
+        assertThat(tenant.tryAcquire(), is(true));
+        assertThat(tenant.tryAcquire(), is(false));
+        assertThat(other.tryAcquire(), is(true));
+        assertThat(limiter.getBucket("tenant.guardian.auth0.com", Endpoint.VERIFY_OTP), is(sameInstance(tenant)));
+        assertThat(limiter.getBucket("tenant.guardian.auth0.com", Endpoint.START_FLOW), is(nullValue()));
+    }
+
+    @Test
+    public void shouldWaitForPermitUpToMaxWait() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.VERIFY_OTP, 20, 1)
+                .maxWait(1, TimeUnit.SECONDS)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(2);
+
+        request(factory, Endpoint.VERIFY_OTP).execute();
+        long start = System.nanoTime();
+        request(factory, Endpoint.VERIFY_OTP).execute();
+
+        assertThat(System.nanoTime() - start, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40))));
+        assertThat(server.getRequestCount(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldRejectAsyncCallsWithGuardianException() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.VERIFY_OTP, 1, 1)
+                .ticker(ticker)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(1);
+
+        request(factory, Endpoint.VERIFY_OTP).execute();
+        TestCallback<Void> callback = new TestCallback<>();
+        request(factory, Endpoint.VERIFY_OTP).executeAsync(callback);
+        callback.await();
+
+        assertThat(callback.getError(), is(instanceOf(GuardianException.class)));
+        assertThat(((GuardianException) callback.getError()).isRateLimited(), is(true));
+    }
+
+    @Test
+    public void shouldNotLimitUntaggedRequests() throws Exception {
+        RateLimiter limiter = RateLimiter.newBuilder()
+                .limit(Endpoint.VERIFY_OTP, 1, 1)
+                .ticker(ticker)
+                .build();
+        RequestFactory factory = factory(limiter);
+        enqueue(3);
+
+        for (int i = 0; i < 3; i++) {
+            factory.newRequest("POST", server.url("/api/verify-otp"), Void.class)
+                    .setParameter("code", "123456")
+                    .execute();
+        }
+
+        assertThat(server.getRequestCount(), is(equalTo(3)));
+    }
+
+    @Test
+    public void shouldFailWithInvalidLimit() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+
+        RateLimiter.newBuilder().limit(Endpoint.VERIFY_OTP, 0, 1);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A tracer that records its spans, with sequential ids
+ */
+public class RecordingTracer extends GuardianTracer {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private final AtomicInteger nextSpanId = new AtomicInteger(1);
+    private final List<RecordedSpan> spans = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Span startSpan(String name, Endpoint endpoint, Span parent) {
+        RecordedSpan span = new RecordedSpan(name, endpoint, (RecordedSpan) parent, nextSpanId.getAndIncrement());
+        spans.add(span);
+        return span;
+    }
+
+    public List<RecordedSpan> getSpans() {
+        return spans;
+    }
+
+    public static class RecordedSpan extends Span {
+
+        private final String name;
+        private final Endpoint endpoint;
+        private final RecordedSpan parent;
+        private final String spanId;
+        private volatile boolean ended;
+        private volatile int statusCode;
+        private volatile Exception error;
+
+        RecordedSpan(String name, Endpoint endpoint, RecordedSpan parent, int id) {
+            this.name = name;
+            this.endpoint = endpoint;
+            this.parent = parent;
+            this.spanId = String.format("%016x", id);
+        }
+
+        @Override
+        public String getTraceParent() {
+            return "00-" + TRACE_ID + "-" + spanId + "-01";
+        }
+
+        @Override
+        public String getTraceState() {
+            return "guardian=" + spanId;
+        }
+
+        @Override
+        public void end(int statusCode, Exception error) {
+            if (ended) {
+                throw new IllegalStateException("Span already ended");
+            }
+            this.statusCode = statusCode;
+            this.error = error;
+            this.ended = true;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        public RecordedSpan getParent() {
+            return parent;
+        }
+
+        public boolean isEnded() {
+            return ended;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+}
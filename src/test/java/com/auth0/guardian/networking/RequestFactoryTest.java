@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestFactoryTest {
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldOpenConnectionsOnWarmUp() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            // slow enough for the requests to be in flight at the same time, each one on its own connection
+            server.enqueue(new MockResponse().setResponseCode(404).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        }
+        RequestFactory factory = new RequestFactory(client);
+
+        int opened = factory.warmUp(server.url("/"), 3, Map.class);
+
+        assertThat(opened, is(equalTo(3)));
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertThat(request.getMethod(), is(equalTo("HEAD")));
+            assertThat(request.getPath(), is(equalTo("/")));
+            assertThat(request.getSequenceNumber(), is(equalTo(0)));
+        }
+        assertThat(client.connectionPool().idleConnectionCount(), is(equalTo(3)));
+    }
+
+    @Test
+    public void shouldReuseWarmConnections() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(201).setBody("{}"));
+        RequestFactory factory = new RequestFactory(client);
+
+        factory.warmUp(server.url("/"), 1);
+        factory.newRequest("POST", server.url("/api/start-flow"), Map.class)
+                .setParameter("state_transport", "polling")
+                .execute();
+
+        server.takeRequest();
+        assertThat(server.takeRequest().getSequenceNumber(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldReportWarmUpToMetrics() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        HistogramMetrics metrics = new HistogramMetrics();
+        RequestFactory factory = new RequestFactory(client, metrics);
+
+        factory.warmUp(server.url("/"), 1, Map.class);
+
+        assertThat(metrics.getWarmUpConnections(), is(equalTo(1)));
+        assertThat(metrics.getWarmUpNanos(), is(greaterThan(0L)));
+        // warm-up requests have no endpoint
+        for (Endpoint endpoint : Endpoint.values()) {
+            assertThat(metrics.getCallCount(endpoint), is(equalTo(0L)));
+        }
+    }
+
+    @Test
+    public void shouldNotCountFailedConnections() throws Exception {
+        MockWebServer closed = new MockWebServer();
+        closed.start();
+        closed.shutdown();
+        HistogramMetrics metrics = new HistogramMetrics();
+        RequestFactory factory = new RequestFactory(client, metrics);
+
+        int opened = factory.warmUp(closed.url("/"), 2, Map.class);
+
+        assertThat(opened, is(equalTo(0)));
+        assertThat(metrics.getWarmUpConnections(), is(equalTo(0)));
+        assertThat(metrics.getWarmUpNanos(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void shouldPrimeConverterWithoutConnections() throws Exception {
+        HistogramMetrics metrics = new HistogramMetrics();
+        RequestFactory factory = new RequestFactory(client, metrics);
+
+        int opened = factory.warmUp(server.url("/"), 0, Map.class);
+
+        assertThat(opened, is(equalTo(0)));
+        assertThat(server.getRequestCount(), is(equalTo(0)));
+        assertThat(metrics.getWarmUpNanos(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void shouldFailWarmUpWithNegativeConnections() throws Exception {
+        try {
+            new RequestFactory(client).warmUp(server.url("/"), -1);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is(equalTo("Invalid connections: -1")));
+        }
+    }
+}
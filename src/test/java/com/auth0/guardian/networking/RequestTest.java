@@ -29,10 +29,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Captor;
 import org.mockito.Mock;
 
-import java.io.Reader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -40,6 +42,7 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -105,6 +108,8 @@ public class RequestTest {
 
         when(converter.serialize(any(Object.class)))
                 .thenReturn("{}".getBytes());
+        when(converter.serialize(nullable(Endpoint.class), ArgumentMatchers.<Map<String, Object>>any()))
+                .thenReturn("{}".getBytes());
 
         when(client.newCall(any(okhttp3.Request.class)))
                 .thenReturn(call);
@@ -191,8 +196,8 @@ public class RequestTest {
                 .setParameter("some", "parameter")
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
-        verify(converter).parse(any(Class.class), any(Reader.class));
+        verify(converter).serialize(nullable(Endpoint.class), mapCaptor.capture());
+        verify(converter).parse(any(Class.class), any(InputStream.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
         assertThat(body, hasEntry("some", (Object) "parameter"));
@@ -272,7 +277,7 @@ public class RequestTest {
         getRequest("GET", getUrl("/user/123"))
                 .execute();
 
-        verify(converter).parse(any(Class.class), any(Reader.class));
+        verify(converter).parse(any(Class.class), any(InputStream.class));
         verifyNoMoreInteractions(converter);
 
         verify(client).newCall(requestCaptor.capture());
@@ -290,8 +295,8 @@ public class RequestTest {
                 .setParameter("boolean", true)
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
-        verify(converter).parse(any(Class.class), any(Reader.class));
+        verify(converter).serialize(nullable(Endpoint.class), mapCaptor.capture());
+        verify(converter).parse(any(Class.class), any(InputStream.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
         assertThat(body, hasEntry("string", (Object) "value"));
@@ -341,8 +346,8 @@ public class RequestTest {
                 .setParameter("string", null)
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
-        verify(converter).parse(any(Class.class), any(Reader.class));
+        verify(converter).serialize(nullable(Endpoint.class), mapCaptor.capture());
+        verify(converter).parse(any(Class.class), any(InputStream.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
         assertThat(body, hasEntry("number", (Object) 123));
@@ -435,14 +440,14 @@ public class RequestTest {
 
         Object parsedResponse = new Object();
 
-        when(converter.parse(any(Class.class), any(Reader.class)))
+        when(converter.parse(any(Class.class), any(InputStream.class)))
                 .thenReturn(parsedResponse);
 
         Object response = getRequest("GET", getUrl("/user/123"))
                 .execute();
         assertThat(response, is(sameInstance(parsedResponse)));
 
-        verify(converter).parse(any(Class.class), any(Reader.class));
+        verify(converter).parse(any(Class.class), any(InputStream.class));
     }
 
     @Test
@@ -453,7 +458,7 @@ public class RequestTest {
         Map<String, String> parsedErrorResponse = new HashMap<>();
         parsedErrorResponse.put("errorCode", "invalid_token");
 
-        when(converter.parse(any(Class.class), any(Reader.class)))
+        when(converter.parse(any(Class.class), any(InputStream.class)))
                 .thenReturn(parsedErrorResponse);
 
         Exception thrownException = null;
@@ -464,7 +469,7 @@ public class RequestTest {
             thrownException = error;
         }
 
-        verify(converter).parse(eq(Map.class), any(Reader.class));
+        verify(converter).parse(eq(Map.class), any(InputStream.class));
 
         assertThat(thrownException, is(notNullValue()));
         assertThat(thrownException, is(instanceOf(GuardianException.class)));
@@ -477,7 +482,7 @@ public class RequestTest {
         when(call.execute())
                 .thenReturn(successResponse);
 
-        when(converter.parse(any(Class.class), any(Reader.class)))
+        when(converter.parse(any(Class.class), any(InputStream.class)))
                 .thenThrow(new RuntimeException());
 
         getRequest("GET", getUrl("/something"))
@@ -491,14 +496,78 @@ public class RequestTest {
         when(call.execute())
                 .thenReturn(errorResponse);
 
-        when(converter.parse(any(Class.class), any(Reader.class)))
+        when(converter.parse(any(Class.class), any(InputStream.class)))
                 .thenThrow(new RuntimeException());
 
         getRequest("GET", getUrl("/something"))
                 .execute();
     }
 
+    @Test
+    public void shouldEnqueueCallWhenExecutingAsync() throws Exception {
+        getRequest("GET", getUrl("/user/123"))
+                .executeAsync(mock(Callback.class));
+
+        verify(call).enqueue(any(okhttp3.Callback.class));
+        verify(call, never()).execute();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldDeliverParsedResponseWhenExecutingAsync() throws Exception {
+        Object parsedResponse = new Object();
+        when(converter.parse(any(Class.class), any(InputStream.class)))
+                .thenReturn(parsedResponse);
+
+        Callback<Object> callback = mock(Callback.class);
+        getRequest("GET", getUrl("/user/123"))
+                .executeAsync(callback);
+
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(call, successResponse);
+
+        verify(callback).onSuccess(parsedResponse);
+        verify(callback, never()).onFailure(any(Exception.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldDeliverErrorResponseWhenExecutingAsync() throws Exception {
+        Map<String, String> parsedErrorResponse = new HashMap<>();
+        parsedErrorResponse.put("errorCode", "invalid_token");
+        when(converter.parse(any(Class.class), any(InputStream.class)))
+                .thenReturn(parsedErrorResponse);
+
+        Callback<Object> callback = mock(Callback.class);
+        getRequest("GET", getUrl("/user/123"))
+                .executeAsync(callback);
+
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(call, errorResponse);
+
+        ArgumentCaptor<Exception> captor = ArgumentCaptor.forClass(Exception.class);
+        verify(callback).onFailure(captor.capture());
+        verify(callback, never()).onSuccess(any());
+        assertThat(captor.getValue(), is(instanceOf(GuardianException.class)));
+        assertThat(((GuardianException) captor.getValue()).isInvalidToken(), is(equalTo(true)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldDeliverConnectionErrorWhenExecutingAsync() throws Exception {
+        Callback<Object> callback = mock(Callback.class);
+        getRequest("GET", getUrl("/user/123"))
+                .executeAsync(callback);
+
+        IOException connectionError = new IOException("connection refused");
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onFailure(call, connectionError);
+
+        verify(callback).onFailure(connectionError);
+        verify(callback, never()).onSuccess(any());
+    }
+
     static class DummyBody {
         String someString = "someString";
     }
-}
\ No newline at end of file
+}
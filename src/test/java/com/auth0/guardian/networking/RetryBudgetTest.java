@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RetryBudgetTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldStartFull() throws Exception {
+        RetryBudget budget = new RetryBudget(3, 0.1);
+
+        assertThat(budget.availableRetries(), is(equalTo(3)));
+        assertThat(budget.tryAcquireRetry(), is(true));
+        assertThat(budget.tryAcquireRetry(), is(true));
+        assertThat(budget.tryAcquireRetry(), is(true));
+        assertThat(budget.tryAcquireRetry(), is(false));
+    }
+
+    @Test
+    public void shouldRefillWithRequests() throws Exception {
+        RetryBudget budget = new RetryBudget(1, 0.25);
+        budget.tryAcquireRetry();
+
+        for (int i = 0; i < 3; i++) {
+            budget.onRequest();
+        }
+        assertThat(budget.tryAcquireRetry(), is(false));
+
+        budget.onRequest();
+        assertThat(budget.tryAcquireRetry(), is(true));
+    }
+
+    @Test
+    public void shouldNotRefillAboveMaxTokens() throws Exception {
+        RetryBudget budget = new RetryBudget(2, 0.5);
+
+        for (int i = 0; i < 10; i++) {
+            budget.onRequest();
+        }
+
+        assertThat(budget.availableRetries(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldFailWithInvalidMaxTokens() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid max tokens: 0");
+
+        new RetryBudget(0, 0.1);
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import com.auth0.guardian.GuardianException;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MockWebServer server;
+    private AtomicInteger attempts;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        attempts = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private RetryPolicy.Builder policy() {
+        return RetryPolicy.newBuilder()
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .maxBackoff(10, TimeUnit.MILLISECONDS);
+    }
+
+    private OkHttpClient client(RetryPolicy policy) {
+        return clientBuilder(policy)
+                .addNetworkInterceptor(policy.networkInterceptor())
+                .build();
+    }
+
+    private OkHttpClient.Builder clientBuilder(RetryPolicy policy) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(policy)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        attempts.incrementAndGet();
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .readTimeout(200, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates sockets that time out connecting while the number of timeouts is positive, running the action first
+     */
+    private static SocketFactory timingOutSocketFactory(final AtomicInteger timeouts, final Runnable onTimeout) {
+        return new SocketFactory() {
+            @Override
+            public Socket createSocket() {
+                return new Socket() {
+                    @Override
+                    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                        if (timeouts.getAndDecrement() > 0) {
+                            onTimeout.run();
+                            throw new SocketTimeoutException("connect timed out");
+                        }
+                        super.connect(endpoint, timeout);
+                    }
+                };
+            }
+
+            @Override
+            public Socket createSocket(String host, int port) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Socket createSocket(String host, int port, InetAddress localHost, int localPort) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Socket createSocket(InetAddress host, int port) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private String localUrl() {
+        // a single route, so OkHttp doesn't try another address by itself
+        return "http://127.0.0.1:" + server.getPort() + "/api/verify-otp";
+    }
+
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private Response post(OkHttpClient client, String url) throws IOException {
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(url)
+                .post(RequestBody.create(MEDIA_TYPE, "{}"))
+                .build();
+        return client.newCall(request).execute();
+    }
+
+    private Response post(OkHttpClient client) throws IOException {
+        return post(client, server.url("/api/verify-otp").toString());
+    }
+
+    @Test
+    public void shouldRetryServiceUnavailable() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        Response response = post(client(policy().build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(204)));
+        assertThat(attempts.get(), is(equalTo(3)));
+    }
+
+    @Test
+    public void shouldStopAfterMaxRetries() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        Response response = post(client(policy().maxRetries(1).build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(503)));
+        assertThat(attempts.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldRetryTooManyRequestsHonoringRetryAfter() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).addHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        Response response = post(client(policy().build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(204)));
+        assertThat(attempts.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldNotRetryWhenRetryAfterIsLongerThanMaxBackoff() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).addHeader("Retry-After", "60"));
+
+        Response response = post(client(policy().build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(429)));
+        assertThat(attempts.get(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldNotRetryInternalServerError() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = post(client(policy().build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(500)));
+        assertThat(attempts.get(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldRetryConfiguredStatusCodes() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        Response response = post(client(policy().retryOnStatusCodes(502).build()));
+        response.close();
+
+        assertThat(response.code(), is(equalTo(204)));
+        assertThat(attempts.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void shouldRetryConnectFailures() throws Exception {
+        exception.expect(ConnectException.class);
+
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        try {
+            post(client(policy().maxRetries(2).build()), "http://127.0.0.1:" + port + "/api/verify-otp");
+        } finally {
+            assertThat(attempts.get(), is(equalTo(3)));
+        }
+    }
+
+    @Test
+    public void shouldNotRetryTimeoutAfterRequestWasSent() throws Exception {
+        exception.expect(SocketTimeoutException.class);
+
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        try {
+            post(client(policy().build()));
+        } finally {
+            assertThat(attempts.get(), is(equalTo(1)));
+            assertThat(server.getRequestCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void shouldRetryConnectTimeouts() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(204));
+        RetryPolicy policy = policy().build();
+        OkHttpClient client = clientBuilder(policy)
+                .addNetworkInterceptor(policy.networkInterceptor())
+                .socketFactory(timingOutSocketFactory(new AtomicInteger(2), NOTHING))
+                .build();
+
+        Response response = post(client, localUrl());
+        response.close();
+
+        assertThat(response.code(), is(equalTo(204)));
+        assertThat(attempts.get(), is(equalTo(3)));
+        assertThat(server.getRequestCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldNotRetryTimeoutsWithoutNetworkInterceptor() throws Exception {
+        exception.expect(SocketTimeoutException.class);
+
+        RetryPolicy policy = policy().build();
+        OkHttpClient client = clientBuilder(policy)
+                .socketFactory(timingOutSocketFactory(new AtomicInteger(1), NOTHING))
+                .build();
+
+        try {
+            post(client, localUrl());
+        } finally {
+            assertThat(attempts.get(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void shouldNotRetryTimeoutAfterRequestWasSentWithoutNetworkInterceptor() throws Exception {
+        exception.expect(SocketTimeoutException.class);
+
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        try {
+            post(clientBuilder(policy().build()).build());
+        } finally {
+            assertThat(attempts.get(), is(equalTo(1)));
+            assertThat(server.getRequestCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void shouldNotRetryCanceledCall() throws Exception {
+        exception.expect(IOException.class);
+
+        final AtomicReference<Call> call = new AtomicReference<>();
+        RetryPolicy policy = policy().build();
+        OkHttpClient client = clientBuilder(policy)
+                .addNetworkInterceptor(policy.networkInterceptor())
+                .socketFactory(timingOutSocketFactory(new AtomicInteger(2), new Runnable() {
+                    @Override
+                    public void run() {
+                        call.get().cancel();
+                    }
+                }))
+                .build();
+        call.set(client.newCall(new okhttp3.Request.Builder()
+                .url(localUrl())
+                .post(RequestBody.create(MEDIA_TYPE, "{}"))
+                .build()));
+
+        try {
+            call.get().execute();
+        } finally {
+            assertThat(attempts.get(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void shouldStopWaitingWhenCanceledDuringBackoff() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(204));
+        final Call call = client(RetryPolicy.newBuilder()
+                .initialBackoff(10, TimeUnit.SECONDS)
+                .maxBackoff(10, TimeUnit.SECONDS)
+                .jitter(0)
+                .build())
+                .newCall(new okhttp3.Request.Builder()
+                        .url(server.url("/api/verify-otp"))
+                        .post(RequestBody.create(MEDIA_TYPE, "{}"))
+                        .build());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.takeRequest();
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                call.cancel();
+            }
+        }).start();
+
+        exception.expect(IOException.class);
+        exception.expectMessage("Canceled");
+
+        long start = System.nanoTime();
+        try {
+            call.execute();
+        } finally {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5000L)));
+            assertThat(attempts.get(), is(equalTo(1)));
+            assertThat(server.getRequestCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void shouldNotRetryCallRejectedByCircuitBreaker() throws Exception {
+        RetryBudget budget = new RetryBudget(10, 0);
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .initialBackoff(200, TimeUnit.MILLISECONDS)
+                .budget(budget)
+                .build();
+        CircuitBreaker breaker = CircuitBreaker.newBuilder()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build();
+        OkHttpClient client = clientBuilder(policy)
+                .addInterceptor(breaker)
+                .addNetworkInterceptor(policy.networkInterceptor())
+                .build();
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(server.url("/api/verify-otp"))
+                .post(RequestBody.create(MEDIA_TYPE, "{}"))
+                .tag(Endpoint.class, Endpoint.VERIFY_OTP)
+                .build();
+
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        client.newCall(request).execute().close();
+        client.newCall(request).execute().close();
+        assertThat(breaker.getState(Endpoint.VERIFY_OTP), is(CircuitBreaker.State.OPEN));
+
+        long start = System.nanoTime();
+        try {
+            client.newCall(request).execute();
+            fail("Expected a RejectedCallException");
+        } catch (RejectedCallException e) {
+            assertThat(e.getErrorCode(), is(equalTo(GuardianException.ERROR_CIRCUIT_OPEN)));
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(200L)));
+        assertThat(attempts.get(), is(equalTo(3)));
+        assertThat(server.getRequestCount(), is(equalTo(2)));
+        assertThat(budget.availableRetries(), is(equalTo(10)));
+    }
+
+    @Test
+    public void shouldNotRetryWhenBudgetIsExhausted() throws Exception {
+        RetryBudget budget = new RetryBudget(1, 0);
+        OkHttpClient client = client(policy().budget(budget).build());
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(204));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        post(client).close();
+        Response response = post(client);
+        response.close();
+
+        assertThat(response.code(), is(equalTo(503)));
+        assertThat(attempts.get(), is(equalTo(3)));
+        assertThat(budget.availableRetries(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldLimitBackoffToMaxBackoff() throws Exception {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .initialBackoff(100, TimeUnit.MILLISECONDS)
+                .maxBackoff(1, TimeUnit.SECONDS)
+                .jitter(0)
+                .build();
+
+        assertThat(policy.backoffMillis(0), is(equalTo(100L)));
+        assertThat(policy.backoffMillis(1), is(equalTo(200L)));
+        assertThat(policy.backoffMillis(3), is(equalTo(800L)));
+        assertThat(policy.backoffMillis(4), is(equalTo(1000L)));
+        assertThat(policy.backoffMillis(100), is(equalTo(1000L)));
+    }
+
+    @Test
+    public void shouldApplyJitterToBackoff() throws Exception {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .initialBackoff(100, TimeUnit.MILLISECONDS)
+                .jitter(0.5)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.backoffMillis(0), is(both(greaterThanOrEqualTo(50L)).and(lessThanOrEqualTo(100L))));
+        }
+    }
+
+    @Test
+    public void shouldFailWithInvalidJitter() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid jitter: 1.5");
+
+        RetryPolicy.newBuilder().jitter(1.5);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.net.ssl.X509TrustManager;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TlsSessionCacheTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldUsePlatformTrustManagerByDefault() throws Exception {
+        TlsSessionCache cache = TlsSessionCache.newBuilder().build();
+
+        assertThat(cache.getTrustManager(), is(notNullValue()));
+        assertThat(cache.getTrustManager().getAcceptedIssuers().length, is(greaterThan(0)));
+    }
+
+    @Test
+    public void shouldShareSocketFactoryOfSameCache() throws Exception {
+        TlsSessionCache cache = TlsSessionCache.newBuilder().build();
+
+        assertThat(cache.getSslSocketFactory(), is(sameInstance(cache.getSslSocketFactory())));
+    }
+
+    @Test
+    public void shouldUseConfiguredTrustManager() throws Exception {
+        X509TrustManager trustManager = TlsSessionCache.newBuilder().build().getTrustManager();
+
+        TlsSessionCache cache = TlsSessionCache.newBuilder()
+                .trustManager(trustManager)
+                .sessionCacheSize(10)
+                .sessionTimeout(1, TimeUnit.HOURS)
+                .build();
+
+        assertThat(cache.getTrustManager(), is(sameInstance(trustManager)));
+    }
+
+    @Test
+    public void shouldFailWithNullTrustManager() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid trust manager");
+
+        TlsSessionCache.newBuilder().trustManager(null);
+    }
+
+    @Test
+    public void shouldFailWithInvalidSessionCacheSize() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid session cache size: 0");
+
+        TlsSessionCache.newBuilder().sessionCacheSize(0);
+    }
+
+    @Test
+    public void shouldFailWithSessionTimeoutUnderOneSecond() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid session timeout: 500");
+
+        TlsSessionCache.newBuilder().sessionTimeout(500, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.guardian.networking;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TokenBucketTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private FakeTicker ticker;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+    }
+
+    @Test
+    public void shouldAllowBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 3, ticker);
+
+        assertThat(bucket.availablePermits(), is(equalTo(3)));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(false));
+        assertThat(bucket.availablePermits(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldRefillAtRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1, ticker);
+
+        assertThat(bucket.tryAcquire(), is(true));
+        ticker.advance(50, TimeUnit.MILLISECONDS);
+        assertThat(bucket.tryAcquire(), is(false));
+        ticker.advance(50, TimeUnit.MILLISECONDS);
+        assertThat(bucket.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void shouldNotAccumulateMoreThanBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 2, ticker);
+
+        ticker.advance(10, TimeUnit.SECONDS);
+
+        assertThat(bucket.availablePermits(), is(equalTo(2)));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(false));
+    }
+
+    @Test
+    public void shouldReserveWithinMaxWait() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1, ticker);
+
+        assertThat(bucket.reserve(0), is(equalTo(0L)));
+        assertThat(bucket.reserve(TimeUnit.MILLISECONDS.toNanos(99)), is(equalTo(-1L)));
+        assertThat(bucket.reserve(TimeUnit.MILLISECONDS.toNanos(100)),
+                is(equalTo(TimeUnit.MILLISECONDS.toNanos(100))));
+        // waiting callers are served in order
+        assertThat(bucket.reserve(TimeUnit.SECONDS.toNanos(1)), is(equalTo(TimeUnit.MILLISECONDS.toNanos(200))));
+    }
+
+    @Test
+    public void shouldWaitForPermit() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 1);
+
+        assertThat(bucket.tryAcquire(), is(true));
+        long start = System.nanoTime();
+        assertThat(bucket.tryAcquire(1, TimeUnit.SECONDS), is(true));
+
+        assertThat(System.nanoTime() - start, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40))));
+    }
+
+    @Test
+    public void shouldNotWaitWhenPermitIsBeyondTimeout() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1);
+
+        assertThat(bucket.tryAcquire(), is(true));
+        long start = System.nanoTime();
+        assertThat(bucket.tryAcquire(10, TimeUnit.MILLISECONDS), is(false));
+
+        assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.MILLISECONDS.toNanos(500))));
+    }
+
+    @Test
+    public void shouldNotGrantMorePermitsThanBurstUnderContention() throws Exception {
+        final TokenBucket bucket = new TokenBucket(0.001, 100, ticker);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int acquired = 0;
+                        for (int j = 0; j < 1000; j++) {
+                            if (bucket.tryAcquire()) {
+                                acquired++;
+                            }
+                        }
+                        return acquired;
+                    }
+                }));
+            }
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertThat(total, is(equalTo(100)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldFailWithInvalidRate() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+
+        new TokenBucket(0, 1);
+    }
+
+    @Test
+    public void shouldFailWithInvalidBurst() throws Exception {
+        exception.expect(IllegalArgumentException.class);
+
+        new TokenBucket(1, 0);
+    }
+}